@@ -1,5 +1,9 @@
 package dev.amrw.clovelang.interpreter;
 
+import java.util.ArrayList;
+
+import dev.amrw.clovelang.parser.ast.SimpleNode;
+
 /**
  * This is the base class for every AST node.
  * 
@@ -27,6 +31,44 @@ public class BaseASTNode {
 	// on every execution.
 	public Object optimised = null;
 
+	/**
+	 * Compile-time address of the variable, constant or parameter referenced by
+	 * the node. Set by the Resolver before execution.
+	 */
+	public SlotAddress address = null;
+
+	/**
+	 * Slot layout of the frame of the program or function defined by the node.
+	 * Set by the Resolver before execution.
+	 */
+	public FrameLayout frameLayout = null;
+
+	/**
+	 * Addresses of the variables and names of the functions defined directly in
+	 * the block scope of the node, which are removed when the scope is exited.
+	 * Computed by the Parser on the first exit.
+	 */
+	public Object[] definitions = null;
+
+	/**
+	 * Loop-invariant expression cached by a dereference made up by the Optimiser.
+	 * It's evaluated on the first read, while the slot of the dereference is
+	 * empty, and the value in the slot is read after that.
+	 */
+	public SimpleNode invariant = null;
+
+	/**
+	 * Definitions of the slots caching the invariants of a loop. They're removed
+	 * together with the definitions of the block the loop is in.
+	 */
+	public ArrayList<SimpleNode> invariants = null;
+
+	/**
+	 * Operand types seen by an arithmetic or comparison node, as one of the
+	 * states of Specialisation. Updated at run-time.
+	 */
+	public int specialisation = Specialisation.UNINITIALISED;
+
 	/**
 	 * Stores the short operator used in the node. E.g. '+=', '++', etc.
 	 */
@@ -0,0 +1,257 @@
+package dev.amrw.clovelang.interpreter;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import dev.amrw.clovelang.utils.NumberUtils;
+import dev.amrw.clovelang.values.*;
+
+/**
+ * Implementations of the builtin functions, shared by the execution engines.
+ * The arguments are evaluated by the engine before calling them.
+ *
+ * @author amrwc
+ */
+public class Builtins {
+
+	/**
+	 * Sends an HTTP request and returns the response.
+	 * 
+	 * @param {String} method -- upper-case HTTP method
+	 * @param {String} url
+	 * @param {Value}  body -- request body; null if there isn't one
+	 * @returns {ValueObject} HTTP response code and body
+	 */
+	public static ValueObject http(String method, String url, Value body) {
+		switch (method) {
+		case "GET":
+		case "DELETE": {
+			return doHttpReq(method, url);
+		}
+		case "POST":
+		case "PUT": {
+			if (body == null)
+				throw new ExceptionSemantic(
+						"The \"" + method + "\" HTTP method needs a request body.");
+
+			// If the request body is an anonymous object, turn the key-value pairs
+			// into url-encoded pairs.
+			return doHttpReq(method, url, (body instanceof ValueObject)
+					? ((ValueObject) body).toUrlString()
+					: body.toString());
+		}
+		default:
+			throw new ExceptionSemantic(
+					"The http function doesn't support \"" + method + "\" method.");
+		}
+	}
+
+	/**
+	 * Sends an HTTP request and returns its response in a ValueObject.
+	 * 
+	 * @read https://docs.oracle.com/javase/tutorial/networking/urls/readingWriting.html
+	 * @param method
+	 * @param requestURL
+	 * @param data
+	 * @returns {ValueObject} response code and body
+	 */
+	private static ValueObject doHttpReq(String method, String requestURL, String data) {
+		URL url;
+		String responseBody = "";
+		final ValueObject res = new ValueObject();
+		res.add("code", null);
+		res.add("body", null);
+
+		try {
+			url = new URL(requestURL);
+			final HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+			conn.setReadTimeout(15000);
+			conn.setConnectTimeout(15000);
+
+			switch (method) {
+			case "GET":
+			case "DELETE":
+				break;
+			case "POST":
+			case "PUT": {
+				if (data == null)
+					throw new ExceptionSemantic("The \"" + method
+							+ "\" method's request body cannot evaluate to null.");
+
+				conn.setRequestMethod(method);
+				conn.setDoOutput(true);
+
+				final OutputStreamWriter out = new OutputStreamWriter(
+						conn.getOutputStream());
+				out.write(data);
+				out.flush();
+				out.close();
+				break;
+			}
+			default:
+				throw new ExceptionSemantic("The \"" + method
+						+ "\" method is not supported by the http function.");
+			}
+			final int responseCode = conn.getResponseCode();
+			res.set("code", ValueInteger.valueOf(responseCode));
+
+			if (responseCode == 200 || responseCode == 201) {
+				String line;
+				final BufferedReader br = new BufferedReader(
+						new InputStreamReader(conn.getInputStream()));
+				while ((line = br.readLine()) != null)
+					responseBody += line.strip() + "\n";
+				br.close();
+			}
+		} catch (final Exception e) {
+			e.printStackTrace();
+		} finally {
+			res.set("body", new ValueString(responseBody));
+		}
+
+		return res;
+	}
+
+	private static ValueObject doHttpReq(String method, String requestURL) {
+		return doHttpReq(method, requestURL, null);
+	}
+
+	/**
+	 * Writes text content to a file.
+	 * 
+	 * Example usage: file("append", "file.txt", content) ...where content can be
+	 * any Value type.
+	 * 
+	 * @read https://stackoverflow.com/a/23221771/10620237
+	 * @param {String} option -- "create"/"overwrite"|"open"/"append"
+	 * @param {String} pathStr -- path to the file
+	 * @param {Value}  content
+	 * @returns path to the file
+	 */
+	public static ValueString file(String option, String pathStr, Value content) {
+		final Path path = Paths.get(pathStr);
+		final Path parentDir = path.getParent();
+
+		// Transform the content to an Iterable; end it with a new line.
+		final List<String> lines = Arrays.asList(content.toString(), "");
+		final Charset utf8 = StandardCharsets.UTF_8;
+
+		try {
+			if (parentDir != null && Files.notExists(parentDir))
+				Files.createDirectory(parentDir);
+
+			switch (option) {
+			case "create":
+			case "overwrite":
+				Files.write(path, lines, utf8);
+				break;
+			case "open":
+			case "append":
+				Files.write(path, lines, utf8, StandardOpenOption.CREATE,
+						StandardOpenOption.APPEND);
+				break;
+			default:
+				throw new ExceptionSemantic(
+						"There is no \"" + option + "\" option in the file function.");
+			}
+		} catch (final Exception e) {
+			System.err.println("Problem writing to the \"" + pathStr + "\" file.");
+			e.printStackTrace();
+		}
+
+		return new ValueString(pathStr);
+	}
+
+	/**
+	 * Returns command-line arguments as a ValueList.
+	 * 
+	 * @param {String[]} argv
+	 * @returns {ValueList} args
+	 */
+	public static ValueList args(String[] argv) {
+		final ValueList args = new ValueList();
+		for (final String arg : argv)
+			args.append(new ValueString(arg));
+		if (args.size() == 0)
+			System.out.println("Warning: The program asked for command-line arguments, "
+					+ "but none were passed in.");
+		return args;
+	}
+
+	/**
+	 * Returns a random value between min inclusive and max exclusive.
+	 * 
+	 * @param {Value} min
+	 * @param {Value} max
+	 * @returns {Value} random value in range
+	 */
+	public static Value random(Value min, Value max) {
+		// If both arguments are either int or long...
+		if ((min instanceof ValueInteger || min instanceof ValueLong)
+				&& (max instanceof ValueInteger || max instanceof ValueLong)) {
+			final long minLong = Long.parseLong(min.stringValue());
+			final long maxLong = Long.parseLong(max.stringValue());
+			final long result = ThreadLocalRandom.current().nextLong(minLong, maxLong);
+			return NumberUtils.tryInt(result);
+		}
+
+		// If one of the arguments is either float or double...
+		else if (min instanceof ValueFloat || min instanceof ValueDouble
+				|| max instanceof ValueFloat || max instanceof ValueDouble) {
+			final double minDouble = Double.parseDouble(min.stringValue());
+			final double maxDouble = Double.parseDouble(max.stringValue());
+			final double result = ThreadLocalRandom.current().nextDouble(minDouble,
+					maxDouble);
+			return NumberUtils.tryInt(result);
+		}
+
+		else
+			throw new ExceptionSemantic("The random() function requires the"
+					+ " arguments to be integer, long, float or double type.");
+	}
+
+	/**
+	 * Instantiates a class requested at run-time and stores it in the
+	 * ValueReflection type.
+	 * 
+	 * @param {String}    className
+	 * @param {ValueList} ctorArgsValue -- constructor arguments; null if there
+	 *                    aren't any
+	 */
+	public static ValueReflection reflect(String className, ValueList ctorArgsValue) {
+		// If there's only a class name...
+		if (ctorArgsValue == null)
+			return new ValueReflection(className);
+
+		// ...or if there's a class name and constructor arguments.
+		final Value[] ctorArgs = new Value[ctorArgsValue.size()];
+		for (int i = 0; i < ctorArgsValue.size(); i++)
+			ctorArgs[i] = ctorArgsValue.get(i);
+
+		return new ValueReflection(className, ctorArgs);
+	}
+
+	/**
+	 * A cast of a ValueReflection.
+	 */
+	public static ValueReflection cast(String targetClassName, Value objToCast) {
+		if (objToCast instanceof ValueReflection)
+			return ValueReflection.cast(targetClassName, (ValueReflection) objToCast);
+
+		else
+			throw new ExceptionSemantic(
+					"The object to cast must be of ValueReflection type.");
+	}
+}
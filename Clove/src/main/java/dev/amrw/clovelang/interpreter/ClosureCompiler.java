@@ -0,0 +1,1061 @@
+package dev.amrw.clovelang.interpreter;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+
+import dev.amrw.clovelang.parser.ast.*;
+import dev.amrw.clovelang.values.*;
+
+/**
+ * An alternative execution engine. It compiles the AST once into a tree of
+ * CompiledNodes, that have their children linked in directly, instead of
+ * dispatching every node through the visitor on every execution.
+ *
+ * The frequently executed nodes are compiled. The rest of them -- builtins,
+ * reflection, function definitions, etc. -- are delegated to a Parser that
+ * shares the same Display, therefore both engines behave the same way.
+ *
+ * @author amrwc
+ */
+public class ClosureCompiler implements CloveVisitor {
+	private static final CompiledNode NOTHING = () -> null;
+	private static final ValueInteger ONE = ValueInteger.valueOf(1);
+
+	private final Parser parser;
+	private Display scope;
+
+	// Compiled function bodies, shared by all FunctionDefinitions of the same node.
+	private final IdentityHashMap<SimpleNode, CompiledNode> functionBodies = new IdentityHashMap<SimpleNode, CompiledNode>();
+
+	public ClosureCompiler(String[] args) {
+		parser = new Parser(args);
+	}
+
+	/** Compile and execute a resolved Clove program. */
+	public void execute(ASTCode code) {
+		scope = parser.openDisplay(code.frameLayout);
+		compile(code).execute();
+	}
+
+	// Compile a given node.
+	private CompiledNode compile(Node node) {
+		return (CompiledNode) node.jjtAccept(this, null);
+	}
+
+	// Compile a given child of the given node.
+	private CompiledNode compileChild(SimpleNode node, int childIndex) {
+		return compile(node.jjtGetChild(childIndex));
+	}
+
+	// Compile the children of the given node, from the given index onwards.
+	private CompiledNode[] compileChildren(SimpleNode node, int from) {
+		final CompiledNode[] children = new CompiledNode[node.jjtGetNumChildren() - from];
+		for (int i = 0; i < children.length; i++)
+			children[i] = compileChild(node, from + i);
+		return children;
+	}
+
+	// Compile the children of the given node into a sequence of statements.
+	private CompiledNode compileSequence(SimpleNode node) {
+		final CompiledNode[] statements = compileChildren(node, 0);
+		if (statements.length == 1)
+			return statements[0];
+		return () -> {
+			for (final CompiledNode statement : statements)
+				statement.execute();
+			return null;
+		};
+	}
+
+	// Delegate the node to the Parser.
+	private CompiledNode delegate(SimpleNode node) {
+		return () -> (Value) node.jjtAccept(parser, null);
+	}
+
+	/**
+	 * Precompute the definitions removed by Parser.removeDefinitions() at the end
+	 * of the given scope.
+	 */
+	private CompiledNode compileCleanup(SimpleNode node, SimpleNode init) {
+		final ArrayList<SimpleNode> definitions = Parser.collectDefinitions(node, init);
+		if (definitions.isEmpty())
+			return NOTHING;
+
+		final Object[] removals = new Object[definitions.size()];
+		for (int i = 0; i < removals.length; i++) {
+			final SimpleNode definition = definitions.get(i);
+			removals[i] = (definition instanceof ASTDefinition) ? definition.address
+					: Parser.getTokenOfChild(definition, 0);
+		}
+
+		return () -> {
+			for (final Object removal : removals) {
+				if (removal instanceof SlotAddress)
+					scope.setValue((SlotAddress) removal, null);
+				else
+					scope.removeFunction((String) removal);
+			}
+			return null;
+		};
+	}
+
+	// Throw if the assigned variable isn't defined at run-time.
+	private void checkDefined(SlotAddress address, String name) {
+		if (!scope.isDefined(address))
+			throw new ExceptionSemantic("Variable or constant \"" + name + "\" is undefined.");
+	}
+
+	// Get the value of an addressed variable. Throw if it's undefined.
+	private Value getValue(SlotAddress address, String name) {
+		final Value value = (address != null) ? scope.getValue(address) : null;
+		if (value == null)
+			throw new ExceptionSemantic("Variable or parameter \"" + name + "\" is undefined.");
+		return value;
+	}
+
+	// Test value of an if statement or a loop.
+	private static boolean test(CompiledNode test, String statement) {
+		try {
+			return test.executeBoolean();
+		} catch (final UnexpectedResultException e) {
+			throw new ExceptionSemantic(
+					"The test expression of " + statement + " must be boolean.");
+		}
+	}
+
+	// Index of a list or array. Indices that aren't integers fail the cast, as
+	// they do in the Parser.
+	private static int index(CompiledNode key) {
+		try {
+			return key.executeInt();
+		} catch (final UnexpectedResultException e) {
+			return ((ValueInteger) e.getResult()).intValue();
+		}
+	}
+
+	/** One of Specialisation's comparisons. */
+	private interface Comparison {
+		boolean test(BaseASTNode node, Value left, Value right);
+	}
+
+	/** A comparison of unboxed integers. */
+	private interface IntComparison {
+		boolean test(int left, int right);
+	}
+
+	// Compile a comparison, that executes to a boolean without creating a Value.
+	// In the int state, it compares unboxed integers.
+	private CompiledNode compileComparison(SimpleNode node, Comparison comparison,
+			IntComparison intComparison) {
+		final CompiledNode left = compileChild(node, 0);
+		final CompiledNode right = compileChild(node, 1);
+		return new CompiledNode() {
+			@Override
+			public Value execute() {
+				return ValueBoolean.of(executeBoolean());
+			}
+
+			@Override
+			public boolean executeBoolean() {
+				if (node.specialisation != Specialisation.INT)
+					return comparison.test(node, left.execute(), right.execute());
+
+				final int leftInt;
+				try {
+					leftInt = left.executeInt();
+				} catch (final UnexpectedResultException e) {
+					return comparison.test(node, e.getResult(), right.execute());
+				}
+				try {
+					return intComparison.test(leftInt, right.executeInt());
+				} catch (final UnexpectedResultException e) {
+					return comparison.test(node, ValueInteger.valueOf(leftInt), e.getResult());
+				}
+			}
+		};
+	}
+
+	/** One of Specialisation's arithmetic operations. */
+	private interface Arithmetic {
+		Value apply(BaseASTNode node, Value left, Value right);
+	}
+
+	/** One of Specialisation's operations on unboxed integers. */
+	private interface IntArithmetic {
+		long apply(int left, int right);
+	}
+
+	// Compile arithmetic, that executes to an unboxed integer in the int state.
+	private CompiledNode compileArithmetic(SimpleNode node, Arithmetic arithmetic,
+			IntArithmetic intArithmetic) {
+		final CompiledNode left = compileChild(node, 0);
+		final CompiledNode right = compileChild(node, 1);
+		return new CompiledNode() {
+			@Override
+			public Value execute() {
+				return arithmetic.apply(node, left.execute(), right.execute());
+			}
+
+			@Override
+			public int executeInt() {
+				if (node.specialisation != Specialisation.INT)
+					return CompiledNode.super.executeInt();
+
+				final int leftInt;
+				try {
+					leftInt = left.executeInt();
+				} catch (final UnexpectedResultException e) {
+					throw new UnexpectedResultException(
+							arithmetic.apply(node, e.getResult(), right.execute()));
+				}
+				final int rightInt;
+				try {
+					rightInt = right.executeInt();
+				} catch (final UnexpectedResultException e) {
+					throw new UnexpectedResultException(arithmetic.apply(node,
+							ValueInteger.valueOf(leftInt), e.getResult()));
+				}
+
+				final long result = intArithmetic.apply(leftInt, rightInt);
+				if (Specialisation.isInt(result))
+					return (int) result;
+				throw new UnexpectedResultException(arithmetic.apply(node,
+						ValueInteger.valueOf(leftInt), ValueInteger.valueOf(rightInt)));
+			}
+		};
+	}
+
+	@Override
+	public Object visit(SimpleNode node, Object data) {
+		return delegate(node);
+	}
+
+	@Override
+	public Object visit(ASTCode node, Object data) {
+		return compileSequence(node);
+	}
+
+	/**************
+	 * Statements *
+	 **************/
+
+	@Override
+	public Object visit(ASTStatement node, Object data) {
+		return compileSequence(node);
+	}
+
+	/**
+	 * Function call.
+	 */
+	@Override
+	public Object visit(ASTCall node, Object data) {
+		final CompiledNode invocation = compileInvocation(node, false);
+		return (CompiledNode) () -> {
+			invocation.execute();
+			return null;
+		};
+	}
+
+	/**
+	 * Compile a function call or invocation. It mirrors the Parser, including
+	 * keeping the resolved FunctionDefinition in node.optimised.
+	 *
+	 * A call by the function's name counts its calls, and once there's enough of
+	 * them, it inlines the function if it's small enough.
+	 */
+	private CompiledNode compileInvocation(SimpleNode node, boolean needsReturn) {
+		final SimpleNode fnnameNode = (SimpleNode) node.jjtGetChild(0);
+		final CompiledNode callee = compile(fnnameNode);
+		final CompiledNode[] arguments = compileChildren((SimpleNode) node.jjtGetChild(1),
+				0);
+
+		// If there's more than 1 child in the left child, then it's not just an
+		// identifier.
+		final boolean isDereference = fnnameNode.jjtGetNumChildren() > 0;
+
+		return new CompiledNode() {
+			private int callCount = 0;
+			private CompiledNode inlined = null;
+
+			@Override
+			public Value execute() {
+				if (inlined != null)
+					return inlined.execute();
+
+				FunctionDefinition fndef;
+				if (isDereference) {
+					// Check for and invoke a method on the Reflection object.
+					final Value perhapsReflection = callee.execute();
+					if (perhapsReflection instanceof ValueReflection)
+						return (Value) ((ValueReflection) perhapsReflection).invoke(node,
+								parser);
+
+					fndef = getValueFunction(callee);
+					node.optimised = fndef;
+				}
+
+				if (node.optimised == null) {
+					fndef = scope.findFunction(fnnameNode.tokenValue);
+					if (fndef == null)
+						fndef = findValueFunction(fnnameNode);
+
+					if (needsReturn && !fndef.hasReturn())
+						throw new ExceptionSemantic("Function " + fnnameNode.tokenValue
+								+ " is being"
+								+ " invoked in an expression but does not have a return value.");
+
+					node.optimised = fndef; // Save it for next time
+				} else
+					fndef = (FunctionDefinition) node.optimised;
+
+				// The function called by its name is resolved once, so it can be inlined.
+				if (!isDereference && ++callCount == Inliner.THRESHOLD
+						&& arguments.length == fndef.getParameterCount()
+						&& Inliner.isInlinable(fndef))
+					inlined = compileInlined(fndef, arguments);
+
+				final FunctionInvocation newInvocation = fndef.newInvocation();
+				if (arguments.length == fndef.getParameterCount()) {
+					for (int i = 0; i < arguments.length; i++)
+						newInvocation.setArgument(i, arguments[i].execute());
+				} else {
+					// Report the wrong number of arguments as the Parser does.
+					for (final CompiledNode argument : arguments)
+						newInvocation.setArgument(argument.execute());
+					newInvocation.checkArgumentCount();
+				}
+
+				final Value returnValue = scope.execute(newInvocation, getCompiledBody(fndef));
+				fndef.releaseInvocation(newInvocation);
+				return returnValue;
+			}
+		};
+	}
+
+	/**
+	 * Compile a copy of the function's body into the caller, executed by the
+	 * current invocation. The slots of the function follow the caller's own, and
+	 * they're cleared after every call, as if the invocation had been released.
+	 */
+	private CompiledNode compileInlined(FunctionDefinition fndef,
+			CompiledNode[] arguments) {
+		final int depth = scope.getLevel();
+		final int base = scope.getLocalCount(depth);
+		final int end = base + fndef.getLocalCount();
+		final Inliner inliner = new Inliner(fndef.getLevel(), depth, base);
+
+		final CompiledNode statements = compile(inliner.copy(fndef.getFunctionBody()));
+		final CompiledNode returnExpression = fndef.hasReturn()
+				? compile(inliner.copy(fndef.getFunctionReturnExpression()).jjtGetChild(0))
+				: NOTHING;
+
+		return () -> {
+			final Value[] values = new Value[arguments.length];
+			for (int i = 0; i < arguments.length; i++)
+				values[i] = arguments[i].execute();
+
+			scope.reserve(depth, end);
+			for (int i = 0; i < values.length; i++) {
+				if (values[i] != null)
+					scope.setValue(depth, base + i, values[i]);
+				else
+					scope.declare(depth, base + i);
+			}
+			statements.execute();
+			final Value returnValue = returnExpression.execute();
+			scope.clear(depth, base, end);
+			return returnValue;
+		};
+	}
+
+	/**
+	 * Get the compiled body of the function, compiling it on the first
+	 * invocation.
+	 */
+	private CompiledNode getCompiledBody(FunctionDefinition fndef) {
+		CompiledNode body = fndef.getCompiledBody();
+		if (body != null)
+			return body;
+
+		final SimpleNode bodyNode = fndef.getFunctionBody();
+		body = functionBodies.get(bodyNode);
+		if (body == null) {
+			final CompiledNode statements = compile(bodyNode);
+			final CompiledNode returnExpression = fndef.hasReturn()
+					? compileChild(fndef.getFunctionReturnExpression(), 0)
+					: NOTHING;
+			// Clean up the definitions after the invocation is finished.
+			final CompiledNode cleanup = compileCleanup(bodyNode, null);
+
+			body = () -> {
+				statements.execute();
+				final Value returnValue = returnExpression.execute();
+				cleanup.execute();
+				return returnValue;
+			};
+			functionBodies.put(bodyNode, body);
+		}
+
+		fndef.setCompiledBody(body);
+		return body;
+	}
+
+	/**
+	 * Try finding the ValueFunction inside the scope and extract its
+	 * FunctionDefinition.
+	 */
+	private FunctionDefinition findValueFunction(SimpleNode fnnameNode) {
+		final SlotAddress address = fnnameNode.address;
+		if (address == null || scope.getValue(address) == null)
+			throw new ExceptionSemantic(
+					"Function " + fnnameNode.tokenValue + " is undefined.");
+
+		return ((ValueFunction) scope.getValue(address)).get();
+	}
+
+	/**
+	 * Retrieves ValueFunction from a dereference and returns its
+	 * FunctionDefinition.
+	 */
+	private FunctionDefinition getValueFunction(CompiledNode callee) {
+		final ValueFunction valueFunction = (ValueFunction) callee.execute();
+		if (valueFunction == null)
+			throw new ExceptionSemantic(
+					"The value function you are trying" + " to invoke is undefined.");
+
+		final FunctionDefinition fndef = valueFunction.get();
+		if (fndef == null)
+			throw new ExceptionSemantic(
+					"Function " + valueFunction.getName() + " is undefined.");
+
+		return fndef;
+	}
+
+	/**
+	 * Definition using the <LET> and <CONST> keywords.
+	 */
+	@Override
+	public Object visit(ASTDefinition node, Object data) {
+		final SlotAddress address = node.address;
+		final CompiledNode initialisation = compileChild(node, 0);
+		return (CompiledNode) () -> {
+			if (scope.exists(address))
+				throw new ExceptionSemantic(
+						"Variable or constant \"" + address.getName() + "\" already exists.");
+
+			scope.declare(address);
+			initialisation.execute();
+			return null;
+		};
+	}
+
+	@Override
+	public Object visit(ASTDeclaration node, Object data) {
+		return delegate(node);
+	}
+
+	/**
+	 * Assignment statement.
+	 */
+	@Override
+	public Object visit(ASTAssignment node, Object data) {
+		final SlotAddress address = node.address;
+		final String name = Parser.getTokenOfChild(node, 0);
+		final String operator = node.shorthandOperator;
+		final int numChildren = node.jjtGetNumChildren();
+		final CompiledNode right = compileChild(node, numChildren - 1);
+
+		// Assignment of a normal variable, that stores integer arithmetic unboxed.
+		final Node rightNode = node.jjtGetChild(numChildren - 1);
+		if (numChildren <= 2 && operator == null && address != null
+				&& !address.isConstant() && Parser.isArithmetic(rightNode)) {
+			return (CompiledNode) () -> {
+				if (((SimpleNode) rightNode).specialisation != Specialisation.INT) {
+					final Value rightVal = right.execute();
+					checkDefined(address, name);
+					scope.setValue(address, (rightVal != null) ? rightVal : new ValueString(""));
+					return null;
+				}
+				final int result;
+				try {
+					result = right.executeInt();
+				} catch (final UnexpectedResultException e) {
+					checkDefined(address, name);
+					scope.setValue(address, e.getResult());
+					return null;
+				}
+				checkDefined(address, name);
+				scope.setInt(address, result);
+				return null;
+			};
+		}
+
+		// Normal variable (1 child in L-value).
+		if (numChildren <= 2) {
+			return (CompiledNode) () -> {
+				Value rightVal = right.execute();
+				if (rightVal == null)
+					// Fake the null object with an empty String.
+					rightVal = new ValueString("");
+
+				if (address == null)
+					throw new ExceptionSemantic(
+							"Variable or constant \"" + name + "\" is undefined.");
+				if (address.isConstant())
+					throw new ExceptionSemantic(
+							"\"" + name + "\" is a constant and cannot be reassigned.");
+
+				if (operator != null)
+					rightVal = Parser.doShorthand(operator, getValue(address, name), rightVal);
+				checkDefined(address, name);
+				scope.setValue(address, rightVal);
+				return null;
+			};
+		}
+
+		// -2 := the parent of the rightmost value to the left of the assignment
+		// operator.
+		final int limit = numChildren - 2;
+		final boolean isIdentifierKey = node.jjtGetChild(limit) instanceof ASTIdentifier;
+		final String identifierKey = Parser.getTokenOfChild(node, limit);
+		final InlineCache keyCache = isIdentifierKey
+				? InlineCache.of((SimpleNode) node.jjtGetChild(limit))
+				: null;
+		final CompiledNode key = compileChild(node, limit);
+
+		return (CompiledNode) () -> {
+			Value rightVal = right.execute();
+			if (rightVal == null)
+				rightVal = new ValueString("");
+
+			if (address == null)
+				throw new ExceptionSemantic(
+						"Variable or constant \"" + name + "\" is undefined.");
+
+			// Traverse through the dereference to find the parent of the rightmost
+			// value to the left of the assignment operator.
+			Value value = getValue(address, name);
+			int currChild = 1;
+			for (; currChild < limit; currChild++)
+				value = value.dereference(node, value, currChild, parser);
+
+			// Handle a shorthand operator on a dereferenced variable.
+			if (operator != null) {
+				final Value v = value.dereference(node, value, currChild, parser);
+				rightVal = Parser.doShorthand(operator, v, rightVal);
+			}
+
+			// Reassign the value of the list, array, object or map's key.
+			if (value instanceof ValueList)
+				((ValueList) value).set(index(key), rightVal);
+			else if (value instanceof ValueArray)
+				((ValueArray) value).set(index(key), rightVal);
+			else if (value instanceof ValueObject)
+				((ValueObject) value).set(
+						isIdentifierKey ? identifierKey : key.execute().toString(), rightVal,
+						keyCache);
+			else if (value instanceof ValueMap)
+				((ValueMap) value).set(
+						isIdentifierKey ? new ValueString(identifierKey) : key.execute(),
+						rightVal);
+			else
+				Parser.checkNotPersistent(value);
+			return null;
+		};
+	}
+
+	@Override
+	public Object visit(ASTFunctionDefinition node, Object data) {
+		return delegate(node);
+	}
+
+	@Override
+	public Object visit(ASTBlock node, Object data) {
+		final CompiledNode statements = compileSequence(node);
+		final CompiledNode cleanup = compileCleanup(node, null);
+		return (CompiledNode) () -> {
+			statements.execute();
+			cleanup.execute();
+			return null;
+		};
+	}
+
+	@Override
+	public Object visit(ASTIfStatement node, Object data) {
+		final CompiledNode test = compileChild(node, 0);
+		final CompiledNode ifBranch = compileChild(node, 1);
+		final CompiledNode elseBranch = node.ifHasElse ? compileChild(node, 2) : NOTHING;
+		final CompiledNode cleanup = compileCleanup(node, null);
+		return (CompiledNode) () -> {
+			if (test(test, "an if statement"))
+				ifBranch.execute();
+			else
+				elseBranch.execute();
+			cleanup.execute();
+			return null;
+		};
+	}
+
+	@Override
+	public Object visit(ASTForLoop node, Object data) {
+		final CompiledNode initialisation = compileChild(node, 0);
+		final CompiledNode test = compileChild(node, 1);
+		final CompiledNode update = compileUpdate((SimpleNode) node.jjtGetChild(2));
+		final CompiledNode body = compileChild(node, 3);
+		final CompiledNode bodyCleanup = compileCleanup(node, null);
+		final CompiledNode loopCleanup = compileCleanup(node,
+				(SimpleNode) node.jjtGetChild(0));
+
+		// Iterations of the loop, after the initialisation.
+		final CompiledNode iterations = () -> {
+			while (test(test, "a for loop")) {
+				body.execute();
+				bodyCleanup.execute();
+				update.execute();
+			}
+			return null;
+		};
+
+		if (node.optimised == null)
+			node.optimised = CountedLoop.analyse(node);
+		final CountedLoop countedLoop = (CountedLoop) node.optimised;
+		final CompiledNode loop = countedLoop.isCounted()
+				? compileCountedLoop(node, countedLoop, body, bodyCleanup, iterations)
+				: iterations;
+
+		return (CompiledNode) () -> {
+			initialisation.execute();
+			loop.execute();
+			loopCleanup.execute();
+			return null;
+		};
+	}
+
+	/**
+	 * Compile the iterations of a counted for loop, that run on a primitive
+	 * counter. If the induction variable or the bound isn't an integer, they're
+	 * the normal iterations instead.
+	 */
+	private CompiledNode compileCountedLoop(SimpleNode node, CountedLoop loop,
+			CompiledNode body, CompiledNode bodyCleanup, CompiledNode iterations) {
+		final SlotAddress induction = loop.getInduction();
+		final int step = loop.getStep();
+		final boolean isInductionRead = loop.isInductionRead();
+		final CompiledNode bound = compileChild((SimpleNode) node.jjtGetChild(1), 1);
+		return () -> {
+			final int start;
+			if (scope.isInt(induction))
+				start = scope.getInt(induction);
+			else if (scope.getValue(induction) instanceof ValueInteger)
+				start = ((ValueInteger) scope.getValue(induction)).intValue();
+			else
+				return iterations.execute();
+
+			final int limit;
+			try {
+				limit = bound.executeInt();
+			} catch (final UnexpectedResultException e) {
+				return iterations.execute();
+			}
+
+			for (long i = start; loop.test(i, limit); i += step) {
+				if (isInductionRead)
+					scope.setInt(induction, (int) i);
+				body.execute();
+				bodyCleanup.execute();
+			}
+			return null;
+		};
+	}
+
+	// Compile the update expression of a for loop, whose value is unused. An
+	// increment/decrement of an integer doesn't create a Value.
+	private CompiledNode compileUpdate(SimpleNode node) {
+		final CompiledNode update = compile(node);
+		if (!(node instanceof ASTIncrementDecrement) || node.jjtGetNumChildren() > 1)
+			return update;
+		return () -> parser.incDecInt(node) ? null : update.execute();
+	}
+
+	@Override
+	public Object visit(ASTWhileLoop node, Object data) {
+		final CompiledNode test = compileChild(node, 0);
+		final CompiledNode body = compileChild(node, 1);
+		final CompiledNode cleanup = compileCleanup(node, null);
+		return (CompiledNode) () -> {
+			while (test(test, "a while loop")) {
+				body.execute();
+				cleanup.execute();
+			}
+			return null;
+		};
+	}
+
+	@Override
+	public Object visit(ASTLog node, Object data) {
+		final CompiledNode[] arguments = compileChildren(node, 0);
+		return (CompiledNode) () -> {
+			for (final CompiledNode argument : arguments)
+				System.out.print(argument.execute());
+			System.out.println();
+			return null;
+		};
+	}
+
+	@Override
+	public Object visit(ASTQuit node, Object data) {
+		return delegate(node);
+	}
+
+	@Override
+	public Object visit(ASTProtoInvoke node, Object data) {
+		final CompiledNode target = compileChild(node, 0);
+		final CompiledNode[] arguments = compileChildren(node, 1);
+		final String protoFunc = node.tokenValue;
+		return (CompiledNode) () -> {
+			final Value value = target.execute();
+			ArrayList<Value> protoArgs = null;
+			if (arguments.length > 0) {
+				protoArgs = new ArrayList<Value>(arguments.length);
+				for (final CompiledNode argument : arguments)
+					protoArgs.add(argument.execute());
+			}
+			return value.execProto(protoFunc, protoArgs);
+		};
+	}
+
+	/**
+	 * Increment/decrement of a normal variable. Compound values are delegated to
+	 * the Parser.
+	 */
+	@Override
+	public Object visit(ASTIncrementDecrement node, Object data) {
+		if (node.jjtGetNumChildren() > 1)
+			return delegate(node);
+
+		final SlotAddress address = node.address;
+		final String name = Parser.getTokenOfChild(node, 0);
+		final String operator = node.shorthandOperator;
+		return (CompiledNode) () -> {
+			final Value value = (address != null) ? scope.getValue(address) : null;
+			if (value == null)
+				throw new ExceptionSemantic("Variable \"" + name + "\" is undefined.");
+
+			switch (operator) {
+			case "pre++":
+				scope.setValue(address, value.add(ONE));
+				return scope.getValue(address);
+			case "pre--":
+				scope.setValue(address, value.subtract(ONE));
+				return scope.getValue(address);
+			case "post++":
+				scope.setValue(address, value.add(ONE));
+				return value;
+			case "post--":
+				scope.setValue(address, value.subtract(ONE));
+				return value;
+			default:
+				throw new ExceptionSemantic("Operator \"" + operator
+						+ "\" cannot be used on " + value + " and " + ONE + ".");
+			}
+		};
+	}
+
+	@Override
+	public Object visit(ASTHttp node, Object data) {
+		return delegate(node);
+	}
+
+	@Override
+	public Object visit(ASTFile node, Object data) {
+		return delegate(node);
+	}
+
+	/******************
+	 * Sub-statements *
+	 ******************/
+
+	@Override
+	public Object visit(ASTIdentifier node, Object data) {
+		return NOTHING;
+	}
+
+	@Override
+	public Object visit(ASTConstInit node, Object data) {
+		final SlotAddress address = node.address;
+		final CompiledNode right = compileChild(node, 1);
+		return (CompiledNode) () -> {
+			final Value rightVal = right.execute();
+			if (rightVal == null)
+				throw new ExceptionSemantic(
+						"Right value of the constant's initialisation cannot resolve to null.");
+
+			scope.setValue(address, rightVal);
+			return null;
+		};
+	}
+
+	@Override
+	public Object visit(ASTArrayInit node, Object data) {
+		return delegate(node);
+	}
+
+	@Override
+	public Object visit(ASTArgumentList node, Object data) {
+		return delegate(node);
+	}
+
+	@Override
+	public Object visit(ASTParameterList node, Object data) {
+		return delegate(node);
+	}
+
+	@Override
+	public Object visit(ASTFunctionBody node, Object data) {
+		return compileSequence(node);
+	}
+
+	@Override
+	public Object visit(ASTReturnExpression node, Object data) {
+		return delegate(node);
+	}
+
+	/***************
+	 * Expressions *
+	 ***************/
+
+	@Override
+	public Object visit(ASTOr node, Object data) {
+		final CompiledNode left = compileChild(node, 0);
+		final CompiledNode right = compileChild(node, 1);
+		return (CompiledNode) () -> left.execute().or(right.execute());
+	}
+
+	@Override
+	public Object visit(ASTAnd node, Object data) {
+		final CompiledNode left = compileChild(node, 0);
+		final CompiledNode right = compileChild(node, 1);
+		return (CompiledNode) () -> left.execute().and(right.execute());
+	}
+
+	@Override
+	public Object visit(ASTCompEqual node, Object data) {
+		return compileComparison(node, Specialisation::isEqual,
+				(left, right) -> left == right);
+	}
+
+	@Override
+	public Object visit(ASTCompNequal node, Object data) {
+		return compileComparison(node, Specialisation::isNotEqual,
+				(left, right) -> left != right);
+	}
+
+	@Override
+	public Object visit(ASTCompGTE node, Object data) {
+		return compileComparison(node, Specialisation::isGreaterOrEqual,
+				(left, right) -> left >= right);
+	}
+
+	@Override
+	public Object visit(ASTCompLTE node, Object data) {
+		return compileComparison(node, Specialisation::isLessOrEqual,
+				(left, right) -> left <= right);
+	}
+
+	@Override
+	public Object visit(ASTCompGT node, Object data) {
+		return compileComparison(node, Specialisation::isGreater,
+				(left, right) -> left > right);
+	}
+
+	@Override
+	public Object visit(ASTCompLT node, Object data) {
+		return compileComparison(node, Specialisation::isLess,
+				(left, right) -> left < right);
+	}
+
+	@Override
+	public Object visit(ASTAdd node, Object data) {
+		return compileArithmetic(node, Specialisation::add, Specialisation::addInt);
+	}
+
+	@Override
+	public Object visit(ASTSubtract node, Object data) {
+		return compileArithmetic(node, Specialisation::subtract, Specialisation::subtractInt);
+	}
+
+	@Override
+	public Object visit(ASTTimes node, Object data) {
+		return compileArithmetic(node, Specialisation::mult, Specialisation::multInt);
+	}
+
+	@Override
+	public Object visit(ASTDivide node, Object data) {
+		final CompiledNode left = compileChild(node, 0);
+		final CompiledNode right = compileChild(node, 1);
+		return (CompiledNode) () -> Specialisation.div(node, left.execute(),
+				right.execute());
+	}
+
+	@Override
+	public Object visit(ASTModulo node, Object data) {
+		return compileArithmetic(node, Specialisation::mod, Specialisation::modInt);
+	}
+
+	@Override
+	public Object visit(ASTUnaryNot node, Object data) {
+		final CompiledNode operand = compileChild(node, 0);
+		return (CompiledNode) () -> operand.execute().not();
+	}
+
+	@Override
+	public Object visit(ASTUnaryPlus node, Object data) {
+		final CompiledNode operand = compileChild(node, 0);
+		return (CompiledNode) () -> operand.execute().unary_plus();
+	}
+
+	@Override
+	public Object visit(ASTUnaryMinus node, Object data) {
+		final CompiledNode operand = compileChild(node, 0);
+		return (CompiledNode) () -> operand.execute().unary_minus();
+	}
+
+	@Override
+	public Object visit(ASTFunctionInvocation node, Object data) {
+		return compileInvocation(node, true);
+	}
+
+	@Override
+	public Object visit(ASTDereference node, Object data) {
+		final SlotAddress address = node.address;
+		final String name = node.tokenValue;
+		final int numChildren = node.jjtGetNumChildren();
+
+		// Loop invariant cached in the slot on the first read.
+		if (node.invariant != null) {
+			final CompiledNode invariant = compile(node.invariant);
+			return (CompiledNode) () -> {
+				Value value = scope.getValue(address);
+				if (value == null) {
+					value = invariant.execute();
+					scope.setValue(address, value);
+				}
+				return value;
+			};
+		}
+
+		if (numChildren == 0) {
+			return new CompiledNode() {
+				@Override
+				public Value execute() {
+					return getValue(address, name);
+				}
+
+				@Override
+				public int executeInt() {
+					if (address != null && scope.isInt(address))
+						return scope.getInt(address);
+					return CompiledNode.super.executeInt();
+				}
+			};
+		}
+
+		// Traverse through the chain of dereferences.
+		return (CompiledNode) () -> {
+			Value value = getValue(address, name);
+			for (int currChild = 0; currChild < numChildren; currChild++)
+				value = value.dereference(node, value, currChild, parser);
+			return value;
+		};
+	}
+
+	@Override
+	public Object visit(ASTGetArgs node, Object data) {
+		return delegate(node);
+	}
+
+	@Override
+	public Object visit(ASTRandom node, Object data) {
+		return delegate(node);
+	}
+
+	@Override
+	public Object visit(ASTReflect node, Object data) {
+		return delegate(node);
+	}
+
+	@Override
+	public Object visit(ASTValueReflectionCast node, Object data) {
+		return delegate(node);
+	}
+
+	/************
+	 * Literals *
+	 ************/
+
+	// Literals are evaluated once, by the Parser, so that they're cached the same
+	// way.
+	private CompiledNode compileLiteral(SimpleNode node) {
+		final Value literal = (Value) node.jjtAccept(parser, null);
+		return () -> literal;
+	}
+
+	@Override
+	public Object visit(ASTInteger node, Object data) {
+		return compileLiteral(node);
+	}
+
+	@Override
+	public Object visit(ASTCharacter node, Object data) {
+		return compileLiteral(node);
+	}
+
+	@Override
+	public Object visit(ASTRational node, Object data) {
+		return compileLiteral(node);
+	}
+
+	@Override
+	public Object visit(ASTTrue node, Object data) {
+		return compileLiteral(node);
+	}
+
+	@Override
+	public Object visit(ASTFalse node, Object data) {
+		return compileLiteral(node);
+	}
+
+	@Override
+	public Object visit(ASTValueFunction node, Object data) {
+		return delegate(node);
+	}
+
+	@Override
+	public Object visit(ASTValueObject node, Object data) {
+		final int numPairs = node.jjtGetNumChildren() / 2;
+		final String[] keyNames = new String[numPairs];
+		final CompiledNode[] values = new CompiledNode[numPairs];
+		for (int i = 0; i < numPairs; i++) {
+			keyNames[i] = Parser.getTokenOfChild(node, 2 * i);
+			values[i] = compileChild(node, 2 * i + 1);
+		}
+
+		return (CompiledNode) () -> {
+			final ValueObject valueObject = new ValueObject();
+			for (int i = 0; i < numPairs; i++)
+				valueObject.add(keyNames[i], values[i].execute());
+			return valueObject;
+		};
+	}
+
+	@Override
+	public Object visit(ASTValueList node, Object data) {
+		final CompiledNode[] values = compileChildren(node, 0);
+		return (CompiledNode) () -> {
+			final ValueList valueList = new ValueList();
+			for (final CompiledNode value : values)
+				valueList.append(value.execute());
+			return valueList;
+		};
+	}
+}
@@ -0,0 +1,55 @@
+package dev.amrw.clovelang.interpreter;
+
+import dev.amrw.clovelang.values.*;
+
+/**
+ * An AST node compiled by the ClosureCompiler, the VM or the JIT. Its children
+ * are linked in directly, so executing it doesn't go through the visitor.
+ *
+ * Expressions can also be executed to unboxed primitives. By default, these
+ * unwrap the Value of execute(), and throw UnexpectedResultException if it's of
+ * another type. Nodes that can compute a primitive without creating a Value
+ * override them.
+ *
+ * @author amrwc
+ */
+@FunctionalInterface
+public interface CompiledNode {
+	/** Execute the node. Statements return null. */
+	Value execute();
+
+	/** Execute the expression to a boolean. */
+	default boolean executeBoolean() {
+		final Value value = execute();
+		if (value instanceof ValueBoolean)
+			return ((ValueBoolean) value).booleanValue();
+		throw new UnexpectedResultException(value);
+	}
+
+	/** Execute the expression to an integer. */
+	default int executeInt() {
+		final Value value = execute();
+		if (value instanceof ValueInteger)
+			return ((ValueInteger) value).intValue();
+		throw new UnexpectedResultException(value);
+	}
+
+	/** Execute the expression to an integer or a long. */
+	default long executeLong() {
+		final Value value = execute();
+		if (value instanceof ValueInteger)
+			return ((ValueInteger) value).intValue();
+		if (value instanceof ValueLong)
+			return ((ValueLong) value).longValue();
+		throw new UnexpectedResultException(value);
+	}
+
+	/** Execute the expression to any number, as a double. */
+	default double executeDouble() {
+		final Value value = execute();
+		if (value instanceof ValueInteger || value instanceof ValueLong
+				|| value instanceof ValueFloat || value instanceof ValueDouble)
+			return value.doubleValue();
+		throw new UnexpectedResultException(value);
+	}
+}
@@ -0,0 +1,194 @@
+package dev.amrw.clovelang.interpreter;
+
+import dev.amrw.clovelang.parser.ast.*;
+import dev.amrw.clovelang.utils.NumberUtils;
+import dev.amrw.clovelang.values.Value;
+import dev.amrw.clovelang.values.ValueInteger;
+
+/**
+ * Shape of a for loop that counts an integer up or down to a bound, e.g.
+ * 'for (let i = 0; i < n; i++)'. Such loops can run on a primitive counter,
+ * instead of executing the test and the update on Values in every iteration.
+ *
+ * The loop is counted when:
+ * - the initialisation defines the induction variable, so it's removed after
+ * the loop, and its final value is never seen;
+ * - the test compares the induction variable to the bound with <, <=, > or >=;
+ * - the update adds an integer literal to the induction variable, in the
+ * direction of the bound, and nothing else writes to it;
+ * - the bound is an integer literal, or a variable that nothing in the loop
+ * writes to, and the body doesn't invoke anything that could. That includes
+ * constants, which can be incremented and decremented.
+ *
+ * The types of the induction variable and the bound are only known at
+ * run-time, therefore the engines must still check that they're integers.
+ *
+ * @author amrwc
+ */
+public final class CountedLoop {
+	/** For loops that aren't counted. */
+	public static final CountedLoop UNCOUNTED = new CountedLoop(null, 0, 0, false);
+
+	private static final int LT = 0;
+	private static final int LTE = 1;
+	private static final int GT = 2;
+	private static final int GTE = 3;
+
+	private final SlotAddress induction;
+	private final int comparison;
+	private final int step;
+	private final boolean isInductionRead;
+
+	private CountedLoop(SlotAddress induction, int comparison, int step,
+			boolean isInductionRead) {
+		this.induction = induction;
+		this.comparison = comparison;
+		this.step = step;
+		this.isInductionRead = isInductionRead;
+	}
+
+	/** True if the loop can run on a primitive counter. */
+	public boolean isCounted() {
+		return induction != null;
+	}
+
+	/** Get the address of the induction variable. */
+	public SlotAddress getInduction() {
+		return induction;
+	}
+
+	/** Get the number added to the counter in every iteration. */
+	public int getStep() {
+		return step;
+	}
+
+	/**
+	 * True if the body reads the induction variable, so the counter must be
+	 * written to its slot in every iteration.
+	 */
+	public boolean isInductionRead() {
+		return isInductionRead;
+	}
+
+	/** Test of the loop on the counter and the bound. */
+	public boolean test(long counter, int bound) {
+		switch (comparison) {
+		case LT:
+			return counter < bound;
+		case LTE:
+			return counter <= bound;
+		case GT:
+			return counter > bound;
+		default:
+			return counter >= bound;
+		}
+	}
+
+	/**
+	 * Analyse a resolved for loop. The bound is the right operand of its test.
+	 * Return UNCOUNTED if the loop doesn't have the shape of a counted loop.
+	 */
+	public static CountedLoop analyse(SimpleNode node) {
+		final Node init = node.jjtGetChild(0);
+		final Node test = node.jjtGetChild(1);
+		final Node update = node.jjtGetChild(2);
+		final Node body = node.jjtGetChild(3);
+		if (!(init instanceof ASTDefinition))
+			return UNCOUNTED;
+
+		final SlotAddress induction = ((SimpleNode) init).address;
+		final int comparison = comparisonOf(test);
+		if (induction == null || comparison < 0
+				|| !isVariable(test.jjtGetChild(0), induction))
+			return UNCOUNTED;
+
+		final int step = stepOf(update, induction);
+		if (step == 0 || (step > 0) != (comparison == LT || comparison == LTE))
+			return UNCOUNTED;
+
+		// Nothing else may write to the induction variable...
+		if (Purity.writes(test, induction) || Purity.writes(body, induction))
+			return UNCOUNTED;
+
+		// ...nor to the bound.
+		final Node bound = test.jjtGetChild(1);
+		if (!(bound instanceof ASTInteger)) {
+			if (!isVariable(bound, ((SimpleNode) bound).address))
+				return UNCOUNTED;
+			final SlotAddress boundAddress = ((SimpleNode) bound).address;
+			if (Purity.writes(test, boundAddress) || Purity.writes(update, boundAddress)
+					|| Purity.writes(body, boundAddress) || Purity.invokes(body))
+				return UNCOUNTED;
+		}
+
+		return new CountedLoop(induction, comparison, step, Purity.reads(body, induction));
+	}
+
+	private static int comparisonOf(Node test) {
+		if (test instanceof ASTCompLT)
+			return LT;
+		if (test instanceof ASTCompLTE)
+			return LTE;
+		if (test instanceof ASTCompGT)
+			return GT;
+		if (test instanceof ASTCompGTE)
+			return GTE;
+		return -1;
+	}
+
+	// A plain dereference of the addressed variable.
+	private static boolean isVariable(Node node, SlotAddress address) {
+		return node instanceof ASTDereference && node.jjtGetNumChildren() == 0
+				&& address != null && ((SimpleNode) node).address == address;
+	}
+
+	// Integer literal that isn't too big to be an integer. Null if it's not one.
+	private static Integer integerOf(Node node) {
+		if (!(node instanceof ASTInteger))
+			return null;
+		final Value value = NumberUtils.tryInt(((SimpleNode) node).tokenValue);
+		return (value instanceof ValueInteger) ? ((ValueInteger) value).intValue()
+				: null;
+	}
+
+	/**
+	 * Number added to the induction variable by the update: 'i++', '++i', 'i--',
+	 * '--i', 'i += k', 'i -= k', 'i = i + k', 'i = k + i' or 'i = i - k'. Return 0
+	 * if it's none of them.
+	 */
+	private static int stepOf(Node update, SlotAddress induction) {
+		final SimpleNode node = (SimpleNode) update;
+		if (node.address != induction)
+			return 0;
+
+		if (node instanceof ASTIncrementDecrement) {
+			if (node.jjtGetNumChildren() > 1)
+				return 0;
+			return node.shorthandOperator.endsWith("++") ? 1 : -1;
+		}
+		if (!(node instanceof ASTAssignment) || node.jjtGetNumChildren() != 2
+				|| induction.isConstant())
+			return 0;
+
+		final Node right = node.jjtGetChild(1);
+		Integer step = null;
+		if (node.shorthandOperator != null) {
+			step = integerOf(right);
+			if (step != null && node.shorthandOperator.equals("-="))
+				step = -step;
+			else if (!"+=".equals(node.shorthandOperator))
+				step = null;
+		} else if (right instanceof ASTAdd) {
+			if (isVariable(right.jjtGetChild(0), induction))
+				step = integerOf(right.jjtGetChild(1));
+			else if (isVariable(right.jjtGetChild(1), induction))
+				step = integerOf(right.jjtGetChild(0));
+		} else if (right instanceof ASTSubtract
+				&& isVariable(right.jjtGetChild(0), induction)) {
+			step = integerOf(right.jjtGetChild(1));
+			if (step != null)
+				step = -step;
+		}
+		return (step != null) ? step : 0;
+	}
+}
@@ -1,5 +1,7 @@
 package dev.amrw.clovelang.interpreter;
 
+import java.util.Arrays;
+
 import dev.amrw.clovelang.values.Value;
 
 /**
@@ -8,85 +10,150 @@ import dev.amrw.clovelang.values.Value;
  * 
  * @author dave
  */
-class Display {
-	private final int maximumFunctionNesting = 64;
-	private final FunctionInvocation[] display = new FunctionInvocation[maximumFunctionNesting];
+public class Display {
+	private FunctionInvocation[] display = new FunctionInvocation[16]; // Grows as needed.
 	private int currentLevel;
 
-	/** Reference to a slot. */
-	class Reference {
-		private final int displayDepth;
-		private final int slotNumber;
-
-		/** Ctor */
-		Reference(int depth, int slot) {
-			displayDepth = depth;
-			slotNumber = slot;
-		}
-
-		/** Set value pointed to by this reference. */
-		void setValue(Value v) {
-			display[displayDepth].setValue(slotNumber, v);
-		}
-
-		/** Get value pointed to by this reference. */
-		Value getValue() {
-			return display[displayDepth].getValue(slotNumber);
-		}
-	}
-
 	/** Ctor */
-	Display() {
+	public Display(FrameLayout mainLayout) {
 		// root or 0th scope
 		currentLevel = 0;
 		display[currentLevel] = new FunctionInvocation(
-				new FunctionDefinition("%main", currentLevel));
+				new FunctionDefinition("%main", currentLevel, mainLayout));
 	}
 
 	/** Execute a function in its scope, using a specified parser. */
 	Value execute(FunctionInvocation fn, Parser p) {
+		final int oldLevel = currentLevel;
+		final FunctionInvocation oldContext = enter(fn);
+		final Value v = fn.execute(p);
+		leave(fn, oldContext, oldLevel);
+		return v;
+	}
+
+	/** Execute a function in its scope, using its compiled body. */
+	public Value execute(FunctionInvocation fn, CompiledNode body) {
+		final int oldLevel = currentLevel;
+		final FunctionInvocation oldContext = enter(fn);
+		final Value v = body.execute();
+		leave(fn, oldContext, oldLevel);
+		return v;
+	}
+
+	/**
+	 * Enter the scope of a function invocation, without executing it. Return the
+	 * invocation it replaces, that must be passed to leave() along with the level
+	 * before entering.
+	 */
+	public FunctionInvocation enter(FunctionInvocation fn) {
 		final int changeLevel = fn.getLevel();
+		if (changeLevel >= display.length)
+			display = Arrays.copyOf(display, Math.max(changeLevel + 1, display.length * 2));
+
 		final FunctionInvocation oldContext = display[changeLevel];
-		final int oldLevel = currentLevel;
 		display[changeLevel] = fn;
 		currentLevel = changeLevel;
-		final Value v = display[currentLevel].execute(p);
-		display[changeLevel] = oldContext;
+		return oldContext;
+	}
+
+	/** Leave the scope of a function invocation entered by enter(). */
+	public void leave(FunctionInvocation fn, FunctionInvocation oldContext, int oldLevel) {
+		display[fn.getLevel()] = oldContext;
 		currentLevel = oldLevel;
-		return v;
 	}
 
 	/** Get the current scope nesting level. */
-	int getLevel() {
+	public int getLevel() {
 		return currentLevel;
 	}
 
+	/** Get the value of a variable or parameter given its address. */
+	public Value getValue(SlotAddress address) {
+		return getValue(address.getDepth(), address.getSlot());
+	}
+
+	/** Get the value of a variable or parameter given its depth and slot. */
+	public Value getValue(int depth, int slot) {
+		return display[depth].getValue(slot);
+	}
+
+	/** Given an address of a variable or parameter, set its value. */
+	public void setValue(SlotAddress address, Value v) {
+		setValue(address.getDepth(), address.getSlot(), v);
+	}
+
+	/** Given a depth and slot of a variable or parameter, set its value. */
+	public void setValue(int depth, int slot, Value v) {
+		display[depth].setValue(slot, v);
+	}
+
+	/** Get the number of slots in the layout of the function at the given depth. */
+	int getLocalCount(int depth) {
+		return display[depth].getFunction().getLocalCount();
+	}
+
+	/** Make sure the invocation at the given depth has the given number of slots. */
+	void reserve(int depth, int size) {
+		display[depth].reserve(size);
+	}
+
+	/** Clear the given range of slots of the invocation at the given depth. */
+	void clear(int depth, int from, int to) {
+		display[depth].clear(from, to);
+	}
+
+	/** True if the variable or parameter holds an unboxed integer. */
+	public boolean isInt(SlotAddress address) {
+		return display[address.getDepth()].isInt(address.getSlot());
+	}
+
+	/** Get the unboxed integer of a variable or parameter that holds one. */
+	public int getInt(SlotAddress address) {
+		return display[address.getDepth()].getInt(address.getSlot());
+	}
+
+	/** Given an address of a variable or parameter, set it to an unboxed integer. */
+	public void setInt(SlotAddress address, int v) {
+		display[address.getDepth()].setInt(address.getSlot(), v);
+	}
+
 	/**
-	 * Return a Reference to a variable or parameter. Return null if it doesn't
-	 * exist.
+	 * True if the variable or parameter is currently defined, even if it's only
+	 * declared and holds no value.
 	 */
-	Reference findReference(String name) {
-		int level = currentLevel;
-		while (level >= 0) {
-			final int offset = display[level].findSlotNumber(name);
-			if (offset >= 0)
-				return new Reference(level, offset);
-			level--;
-		}
-		return null;
+	public boolean isDefined(SlotAddress address) {
+		return isDefined(address.getDepth(), address.getSlot());
+	}
+
+	/** True if the variable or parameter at the given depth and slot is defined. */
+	public boolean isDefined(int depth, int slot) {
+		return display[depth].isDefined(slot);
 	}
 
-	/** Create a variable in the current level and return its Reference. */
-	Reference defineVariable(String name) {
-		return new Reference(currentLevel, display[currentLevel].defineVariable(name));
+	/**
+	 * True if the variable, or the one it would shadow in an outer function, is
+	 * currently defined, so it can't be defined again.
+	 */
+	public boolean exists(SlotAddress address) {
+		if (isDefined(address))
+			return true;
+		final SlotAddress shadows = address.getShadows();
+		return shadows != null && shadows.getDepth() < display.length
+				&& display[shadows.getDepth()] != null && isDefined(shadows);
 	}
 
-	Reference defineConstant(String name) {
-		return new Reference(currentLevel, display[currentLevel].defineConstant(name));
+	/** Define a variable without a value, e.g. with 'let x;'. */
+	public void declare(SlotAddress address) {
+		declare(address.getDepth(), address.getSlot());
+	}
+
+	/** Define the variable at the given depth and slot without a value. */
+	public void declare(int depth, int slot) {
+		display[depth].declare(slot);
 	}
 
 	/** Find a function. Return null if it doesn't exist. */
-	FunctionDefinition findFunction(String name) {
+	public FunctionDefinition findFunction(String name) {
 		int level = currentLevel;
 		while (level >= 0) {
 			final FunctionDefinition definition = display[level].findFunction(name);
@@ -98,30 +165,21 @@ class Display {
 	}
 
 	/** Find a function in the current level. Return null if it doesn't exist. */
-	FunctionDefinition findFunctionInCurrentLevel(String name) {
+	public FunctionDefinition findFunctionInCurrentLevel(String name) {
 		return display[currentLevel].findFunction(name);
 	}
 
 	/** Add a function to the current level. */
-	void addFunction(FunctionDefinition definition) {
+	public void addFunction(FunctionDefinition definition) {
 		display[currentLevel].addFunction(definition);
 	}
 
-	// The methods below this point are here for scope management
-	// in order to accommodate variables declared outside of functions.
+	// The method below this point is here for scope management
+	// in order to accommodate functions defined outside of functions.
 	// NOTE: It's a hack for scoped operations, such as loops,
 	// to make them inaccessible outside of their scope
 	// -- a functionality not offered by this Display
 	// implementation by default.
-	/**
-	 * Remove a scoped variable.
-	 * 
-	 * @author amrwc
-	 */
-	public void removeVariable(String name) {
-		display[currentLevel].removeVariable(name);
-	}
-
 	/**
 	 * Remove a scoped function.
 	 * 
@@ -0,0 +1,37 @@
+package dev.amrw.clovelang.interpreter;
+
+import java.util.Arrays;
+
+/**
+ * Immutable slot layout of a function's frame. It's computed once by the
+ * Resolver, and extended by the Optimiser, so that every invocation of the
+ * function can allocate its slots in one go, without growing or mutating
+ * anything at run-time.
+ *
+ * @author amrwc
+ */
+public class FrameLayout {
+	private final String[] slotNames;
+
+	/** Ctor */
+	FrameLayout(String[] slotNames) {
+		this.slotNames = slotNames;
+	}
+
+	/** Get the number of slots, parameters included. */
+	public int getSize() {
+		return slotNames.length;
+	}
+
+	/** Get the name of the variable stored in the ith slot. */
+	public String getSlotName(int i) {
+		return slotNames[i];
+	}
+
+	/** Get a copy of the layout with another slot after the existing ones. */
+	FrameLayout withSlot(String name) {
+		final String[] names = Arrays.copyOf(slotNames, slotNames.length + 1);
+		names[slotNames.length] = name;
+		return new FrameLayout(names);
+	}
+}
@@ -1,6 +1,6 @@
 package dev.amrw.clovelang.interpreter;
 
-import java.util.Vector;
+import java.util.ArrayList;
 
 import dev.amrw.clovelang.parser.ast.SimpleNode;
 
@@ -17,21 +17,32 @@ public class FunctionDefinition implements Comparable<Object>, Serializable {
 
 	private String name;
 	private String parmSignature = "";
-	private final Vector<String> parameters = new Vector<String>();
-	private final HashMap<String, Integer> slots = new HashMap<String, Integer>();
+	// Not a Vector, whose synchronised size() is paid on every invocation.
+	private final ArrayList<String> parameters = new ArrayList<String>();
+	private final FrameLayout layout;
 	private final HashMap<String, FunctionDefinition> functions = new HashMap<String, FunctionDefinition>();
 	private SimpleNode ASTFunctionBody = null;
 	private SimpleNode ASTFunctionReturnExpression = null;
+	private transient CompiledNode compiledBody = null;
+	private transient int invocationCount = 0;
+
+	// Invocations that have returned, ready to be reused. Frames never outlive
+	// their invocation, since the display is the only reference to them.
+	private static final int POOL_SIZE = 64;
+	private transient FunctionInvocation[] pool = null;
+	private transient int pooled = 0;
 	private final int depth;
 
 	/** Ctor for function definition. */
-	FunctionDefinition(String functionName, int level) {
+	public FunctionDefinition(String functionName, int level, FrameLayout frameLayout) {
 		name = functionName;
 		depth = level;
+		layout = frameLayout;
 	}
 
-	FunctionDefinition(int level) {
+	public FunctionDefinition(int level, FrameLayout frameLayout) {
 		depth = level;
+		layout = frameLayout;
 	}
 
 	/**
@@ -43,37 +54,74 @@ public class FunctionDefinition implements Comparable<Object>, Serializable {
 	}
 
 	/** Get the name of this function. */
-	String getName() {
+	public String getName() {
 		return name;
 	}
 
 	/** Set the function body of this function. */
-	void setFunctionBody(SimpleNode node) {
+	public void setFunctionBody(SimpleNode node) {
 		ASTFunctionBody = node;
 	}
 
 	/** Get the function body of this function. */
-	SimpleNode getFunctionBody() {
+	public SimpleNode getFunctionBody() {
 		return ASTFunctionBody;
 	}
 
 	/** Set the return expression of this function. */
-	void setFunctionReturnExpression(SimpleNode node) {
+	public void setFunctionReturnExpression(SimpleNode node) {
 		ASTFunctionReturnExpression = node;
 	}
 
 	/** Get the return expression of this function. */
-	SimpleNode getFunctionReturnExpression() {
+	public SimpleNode getFunctionReturnExpression() {
 		return ASTFunctionReturnExpression;
 	}
 
+	/** Set the body and return expression compiled by an execution engine. */
+	public void setCompiledBody(CompiledNode body) {
+		compiledBody = body;
+	}
+
+	/** Get the compiled body. Return null if it hasn't been compiled yet. */
+	public CompiledNode getCompiledBody() {
+		return compiledBody;
+	}
+
+	/** Count an invocation of this function, and return the count so far. */
+	public int countInvocation() {
+		return ++invocationCount;
+	}
+
+	/**
+	 * Get a new invocation of this function, reusing one that has returned if
+	 * there is one.
+	 */
+	public FunctionInvocation newInvocation() {
+		if (pooled == 0)
+			return new FunctionInvocation(this);
+		final FunctionInvocation invocation = pool[--pooled];
+		pool[pooled] = null;
+		return invocation;
+	}
+
+	/** Release an invocation that has returned, so that it can be reused. */
+	public void releaseInvocation(FunctionInvocation invocation) {
+		if (pool == null)
+			pool = new FunctionInvocation[POOL_SIZE];
+		else if (pooled == POOL_SIZE)
+			return;
+		invocation.clear();
+		pool[pooled++] = invocation;
+	}
+
 	/** Get the signature of this function. */
 	String getSignature() {
 		return (hasReturn() ? "value " : "") + getName() + "(" + parmSignature + ")";
 	}
 
 	/** True if this function has a return value. */
-	boolean hasReturn() {
+	public boolean hasReturn() {
 		return (ASTFunctionReturnExpression != null);
 	}
 
@@ -84,7 +132,7 @@ public class FunctionDefinition implements Comparable<Object>, Serializable {
 	}
 
 	/** Get count of parameters. */
-	int getParameterCount() {
+	public int getParameterCount() {
 		return parameters.size();
 	}
 
@@ -94,50 +142,17 @@ public class FunctionDefinition implements Comparable<Object>, Serializable {
 	}
 
 	/** Define a parameter. */
-	void defineParameter(String name) {
+	public void defineParameter(String name) {
 		if (parameters.contains(name))
 			throw new ExceptionSemantic(
 					"Parameter " + name + " already exists in function " + getName());
 		parameters.add(name);
 		parmSignature += ((parmSignature.length() == 0) ? name : (", " + name));
-		defineVariable(name);
 	}
 
 	/** Get count of local variables and parameters. */
 	int getLocalCount() {
-		return slots.size();
-	}
-
-	/**
-	 * Get the storage slot number of a given variable or parm. Return -1 if it
-	 * doesn't exist.
-	 */
-	int getLocalSlotNumber(String name) {
-		final Integer slot = slots.get(name);
-		if (slot == null)
-			return -1;
-		return slot.intValue();
-	}
-
-	/** Define a variable. Return its slot number. */
-	int defineVariable(String name) {
-		final Integer slot = slots.get(name);
-		if (slot != null)
-			return slot.intValue();
-		final int slotNumber = slots.size();
-		slots.put(name, Integer.valueOf(slotNumber));
-		return slotNumber;
-	}
-
-	/**
-	 * Define a constant.
-	 * 
-	 * @param name
-	 * @return slot number
-	 * @author amrwc
-	 */
-	int defineConstant(String name) {
-		return defineVariable("constant" + name);
+		return layout.getSize();
 	}
 
 	/** Add an inner function definition. */
@@ -150,16 +165,6 @@ public class FunctionDefinition implements Comparable<Object>, Serializable {
 		return functions.get(name);
 	}
 
-	/**
-	 * Remove previously defined variable.
-	 * 
-	 * @param name
-	 * @author amrwc
-	 */
-	void removeVariable(String name) {
-		slots.remove(name);
-	}
-
 	/**
 	 * Remove previously defined function.
 	 * 
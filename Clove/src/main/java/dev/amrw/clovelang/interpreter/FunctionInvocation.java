@@ -1,29 +1,39 @@
 package dev.amrw.clovelang.interpreter;
 
-import java.util.Vector;
+import java.util.Arrays;
 
 import dev.amrw.clovelang.values.Value;
+import dev.amrw.clovelang.values.ValueInteger;
 
 /**
  * Function invocation context.
  * 
  * @author dave
  */
-class FunctionInvocation {
+public class FunctionInvocation {
 	private final FunctionDefinition function;
 	private int argumentCount = 0;
-	private final Vector<Value> slots;
-
-	private final void setSlot(int n, Value v) {
-		if (n >= slots.size())
-			slots.setSize(n + 1);
-		slots.set(n, v);
-	}
+	private Value[] slots; // Grows for the functions inlined into this one.
+
+	// Slots tagged INT hold an unboxed integer in 'ints'. Their Value is created
+	// only when it's read, and kept in 'slots' until the integer changes. Slots
+	// tagged DECLARED are defined, e.g. by 'let x;', but hold no value yet. Both
+	// arrays are allocated when the first integer is set, or slot declared.
+	private static final byte BOXED = 0;
+	private static final byte INT = 1;
+	private static final byte DECLARED = 2;
+	private byte[] tags = null;
+	private int[] ints = null;
 
 	/** Ctor for user-defined function. */
-	FunctionInvocation(FunctionDefinition fndef) {
+	public FunctionInvocation(FunctionDefinition fndef) {
 		function = fndef;
-		slots = new Vector<Value>(function.getLocalCount());
+		slots = new Value[function.getLocalCount()];
+	}
+
+	/** Get the associated function. */
+	FunctionDefinition getFunction() {
+		return function;
 	}
 
 	/** Get the level of the associated function. */
@@ -32,17 +42,27 @@ class FunctionInvocation {
 	}
 
 	/** Set an argument value. */
-	void setArgument(Value v) {
+	public void setArgument(Value v) {
 		if (argumentCount >= function.getParameterCount())
 			throw new ExceptionSemantic("Function " + function.getSignature()
 					+ " expected " + function.getParameterCount() + " arguments but got "
 					+ (argumentCount + 1) + ".");
 		// First slots are always arguments
-		setSlot(argumentCount++, v);
+		setArgument(argumentCount++, v);
+	}
+
+	/**
+	 * Set the argument of the given index. The number of arguments must already
+	 * be checked against the parameters.
+	 */
+	public void setArgument(int index, Value v) {
+		slots[index] = v;
+		if (v == null)
+			declare(index);
 	}
 
 	/** Check argument count. */
-	void checkArgumentCount() {
+	public void checkArgumentCount() {
 		if (argumentCount < function.getParameterCount())
 			throw new ExceptionSemantic("Function " + function.getSignature()
 					+ " expected " + function.getParameterCount() + " arguments but got "
@@ -52,9 +72,7 @@ class FunctionInvocation {
 	/** Execute this invocation. */
 	Value execute(Parser parser) {
 		parser.doChildren(function.getFunctionBody(), null);
-		final Value returnValue = function.hasReturn()
-				? parser.doChild(function.getFunctionReturnExpression(), 0)
-				: null;
+		final Value returnValue = function.hasReturn() ? parser.doReturn(function) : null;
 
 		// Clean up the definitions after the invocation is finished.
 		parser.removeDefinitions(function.getFunctionBody());
@@ -62,30 +80,87 @@ class FunctionInvocation {
 	}
 
 	/**
-	 * Get the slot number of a given variable or parameter name. Return -1 if not
-	 * found.
+	 * Get a variable or parameter value given a slot number. Return null if it
+	 * hasn't been set yet.
 	 */
-	int findSlotNumber(String name) {
-		return function.getLocalSlotNumber(name);
-	}
-
-	/** Get a variable or parameter value given a slot number. */
 	Value getValue(int slotNumber) {
-		return slots.get(slotNumber);
+		if (slots[slotNumber] == null && isInt(slotNumber))
+			slots[slotNumber] = ValueInteger.valueOf(ints[slotNumber]);
+		return slots[slotNumber];
 	}
 
 	/** Given a slot number, set its value. */
 	void setValue(int slotNumber, Value value) {
-		setSlot(slotNumber, value);
+		if (tags != null)
+			tags[slotNumber] = BOXED;
+		slots[slotNumber] = value;
+	}
+
+	/**
+	 * True if the slot is defined, i.e. it holds a value, or it's been declared
+	 * and not cleared since.
+	 */
+	boolean isDefined(int slotNumber) {
+		return slots[slotNumber] != null || (tags != null && tags[slotNumber] != BOXED);
+	}
+
+	/** Define the slot without a value, unless it already holds one. */
+	void declare(int slotNumber) {
+		if (slots[slotNumber] != null || isInt(slotNumber))
+			return;
+		allocateTags();
+		tags[slotNumber] = DECLARED;
 	}
 
-	/** Define a variable in the function definition. Return its slot number. */
-	int defineVariable(String name) {
-		return function.defineVariable(name);
+	/** True if the slot holds an unboxed integer. */
+	boolean isInt(int slotNumber) {
+		return tags != null && tags[slotNumber] == INT;
 	}
 
-	int defineConstant(String name) {
-		return function.defineConstant(name);
+	/** Get the unboxed integer of a slot that holds one. */
+	int getInt(int slotNumber) {
+		return ints[slotNumber];
+	}
+
+	/** Given a slot number, set it to an unboxed integer. */
+	void setInt(int slotNumber, int value) {
+		allocateTags();
+		tags[slotNumber] = INT;
+		ints[slotNumber] = value;
+		slots[slotNumber] = null;
+	}
+
+	private void allocateTags() {
+		if (tags == null) {
+			tags = new byte[slots.length];
+			ints = new int[slots.length];
+		}
+	}
+
+	/** Make sure there are at least the given number of slots. */
+	void reserve(int size) {
+		if (size <= slots.length)
+			return;
+		slots = Arrays.copyOf(slots, size);
+		if (tags != null) {
+			tags = Arrays.copyOf(tags, size);
+			ints = Arrays.copyOf(ints, size);
+		}
+	}
+
+	/** Clear the slots from the first given one to the second one, exclusive. */
+	void clear(int from, int to) {
+		Arrays.fill(slots, from, to, null);
+		if (tags != null)
+			Arrays.fill(tags, from, to, BOXED);
+	}
+
+	/** Clear the slots, so that the invocation can be reused. */
+	void clear() {
+		argumentCount = 0;
+		Arrays.fill(slots, null);
+		if (tags != null)
+			Arrays.fill(tags, BOXED);
 	}
 
 	/** Add a function definition. */
@@ -98,16 +173,6 @@ class FunctionInvocation {
 		return function.findFunction(name);
 	}
 
-	/**
-	 * Remove previously defined variable.
-	 * 
-	 * @param name
-	 * @author amrwc
-	 */
-	void removeVariable(String name) {
-		function.removeVariable(name);
-	}
-
 	/**
 	 * Remove previously defined function.
 	 * 
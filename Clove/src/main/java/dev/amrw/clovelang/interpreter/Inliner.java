@@ -0,0 +1,127 @@
+package dev.amrw.clovelang.interpreter;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+
+import dev.amrw.clovelang.parser.ast.*;
+
+/**
+ * Inline expansion of small functions at the call sites that call them often.
+ * The body of the function is copied into the caller, with the slots of the
+ * function renamed to free slots after the caller's own, so that it runs
+ * without an invocation of its own.
+ *
+ * A function is inlined when it's small, and it neither defines nor invokes
+ * functions. Its body then can't reach anything through the display but the
+ * variables of its outer functions, which are the same with or without its
+ * invocation, and an inlined body can't be executed while another one is, so
+ * they can all share the same slots of the caller.
+ *
+ * @author amrwc
+ */
+public final class Inliner {
+	/** Number of calls through a call site, after which its function is inlined. */
+	public static final int THRESHOLD = 100;
+
+	// Largest body and return expression of an inlined function, in AST nodes.
+	private static final int MAX_SIZE = 48;
+
+	private final int level;
+	private final int depth;
+	private final int base;
+
+	// Renamed addresses, so that the copied nodes share them like the originals.
+	private final IdentityHashMap<SlotAddress, SlotAddress> renamed = new IdentityHashMap<SlotAddress, SlotAddress>();
+
+	/**
+	 * Ctor
+	 *
+	 * @param level -- level of the inlined function
+	 * @param depth -- depth of the caller
+	 * @param base  -- first free slot in the caller's frame
+	 */
+	Inliner(int level, int depth, int base) {
+		this.level = level;
+		this.depth = depth;
+		this.base = base;
+	}
+
+	/** True if the function can be inlined. */
+	public static boolean isInlinable(FunctionDefinition fndef) {
+		final SimpleNode body = fndef.getFunctionBody();
+		final SimpleNode returnExpression = fndef.getFunctionReturnExpression();
+		if (body == null)
+			return false;
+		final int size = sizeOf(body)
+				+ ((returnExpression != null) ? sizeOf(returnExpression) : 0);
+		return size <= MAX_SIZE && !definesOrInvokes(body)
+				&& (returnExpression == null || !definesOrInvokes(returnExpression));
+	}
+
+	private static int sizeOf(Node node) {
+		int size = 1;
+		for (int i = 0; i < node.jjtGetNumChildren(); i++)
+			size += sizeOf(node.jjtGetChild(i));
+		return size;
+	}
+
+	// True if anything in the subtree defines or invokes a function.
+	private static boolean definesOrInvokes(Node node) {
+		if (node instanceof ASTFunctionDefinition || node instanceof ASTValueFunction
+				|| node instanceof ASTFunctionInvocation || node instanceof ASTCall)
+			return true;
+		for (int i = 0; i < node.jjtGetNumChildren(); i++) {
+			if (definesOrInvokes(node.jjtGetChild(i)))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Copy a node of the inlined function, with its descendants. The addresses of
+	 * the function's slots are renamed, and the state collected at run-time,
+	 * e.g. specialisations, starts afresh.
+	 */
+	SimpleNode copy(SimpleNode node) {
+		final SimpleNode copy;
+		try {
+			copy = node.getClass().getConstructor(int.class).newInstance(node.getId());
+		} catch (ReflectiveOperationException e) {
+			throw new ExceptionSemantic("Node " + node + " cannot be inlined.");
+		}
+
+		copy.tokenValue = node.tokenValue;
+		copy.ifHasElse = node.ifHasElse;
+		copy.fnHasReturn = node.fnHasReturn;
+		copy.address = rename(node.address);
+		copy.shorthandOperator = node.shorthandOperator;
+		copy.defType = node.defType;
+		copy.isArrayDeclaration = node.isArrayDeclaration;
+		copy.isArrayWithCap = node.isArrayWithCap;
+		if (node.invariant != null) {
+			copy.invariant = copy(node.invariant);
+			copy.invariant.jjtSetParent(copy);
+		}
+		if (node.invariants != null) {
+			copy.invariants = new ArrayList<SimpleNode>();
+			for (final SimpleNode definition : node.invariants)
+				copy.invariants.add(copy(definition));
+		}
+
+		for (int i = 0; i < node.jjtGetNumChildren(); i++) {
+			final SimpleNode child = copy((SimpleNode) node.jjtGetChild(i));
+			child.jjtSetParent(copy);
+			copy.jjtAddChild(child, i);
+		}
+		return copy;
+	}
+
+	// Rename an address of the function's slot to the caller's slot.
+	private SlotAddress rename(SlotAddress address) {
+		if (address == null || address.getDepth() != level)
+			return address;
+		return renamed.computeIfAbsent(address,
+				a -> new SlotAddress(a.getName(), depth, base + a.getSlot(), a.isConstant(),
+						a.getShadows()));
+	}
+}
@@ -1,16 +1,26 @@
 package dev.amrw.clovelang.interpreter;
 
+import java.util.Arrays;
+
 import dev.amrw.clovelang.parser.ast.ASTCode;
 import dev.amrw.clovelang.parser.ast.Clove;
-import dev.amrw.clovelang.parser.ast.CloveVisitor;
+import dev.amrw.clovelang.vm.VirtualMachine;
 
 /**
  * @author dave
  */
 public class Interpreter {
+	private static final String ENGINE_FLAG = "--engine=";
+
 	private static void usage() {
 		System.out.println("\nUsage: Clove [flags] < <file_name>\n" + "\nFlags:\n"
 				+ "\t-d1: debug; print the full AST.\n"
+				+ "\t-d2: debug; report the number of AST nodes removed by the optimiser.\n"
+				+ "\t--engine=<tree|jit|closure|vm|stackless>: execution engine; tree by"
+				+ " default.\n"
+				+ "\t\tjit is the tree walker compiling hot functions to JVM bytecode.\n"
+				+ "\t\tstackless is the vm keeping the call stack on the heap, for deep"
+				+ " recursion.\n"
 				+ "\t-h, --help: print this message.\n");
 	}
 
@@ -23,15 +33,46 @@ public class Interpreter {
 			return;
 		}
 
+		// Report the work of the optimiser, and don't pass the flag on to the program.
+		final boolean reportOptimiser = args.length > 0 && args[0].equals("-d2");
+		if (reportOptimiser)
+			args = Arrays.copyOfRange(args, 1, args.length);
+
+		// Pick the execution engine, and don't pass the flag on to the program.
+		String engine = "tree";
+		if (args.length > 0 && args[0].startsWith(ENGINE_FLAG)) {
+			engine = args[0].substring(ENGINE_FLAG.length());
+			args = Arrays.copyOfRange(args, 1, args.length);
+			if (!engine.equals("tree") && !engine.equals("jit")
+					&& !engine.equals("closure") && !engine.equals("vm")
+					&& !engine.equals("stackless")) {
+				System.out.println("Unknown engine \"" + engine + "\".");
+				usage();
+				return;
+			}
+		}
+
 		final Clove language = new Clove(System.in);
 		try {
 			final ASTCode parser = language.code();
-			CloveVisitor nodeVisitor;
-			if (debugAST)
-				nodeVisitor = new ParserDebugger();
+			if (debugAST) {
+				parser.jjtAccept(new ParserDebugger(), null);
+				return;
+			}
+
+			new Resolver().resolve(parser);
+			final int removedCount = new Optimiser().optimise(parser);
+			if (reportOptimiser)
+				System.out.println("Optimiser removed " + removedCount + " AST nodes.");
+
+			if (engine.equals("closure"))
+				new ClosureCompiler(args).execute(parser);
+			else if (engine.equals("vm"))
+				new VirtualMachine(args).execute(parser);
+			else if (engine.equals("stackless"))
+				new VirtualMachine(args, true).execute(parser);
 			else
-				nodeVisitor = new Parser(args);
-			parser.jjtAccept(nodeVisitor, null);
+				parser.jjtAccept(new Parser(args, engine.equals("jit")), null);
 		} catch (final Throwable e) {
 			System.out.println(e.getMessage());
 		}
@@ -0,0 +1,352 @@
+package dev.amrw.clovelang.interpreter;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+
+import dev.amrw.clovelang.parser.ast.*;
+import dev.amrw.clovelang.values.*;
+
+/**
+ * Optimises the resolved AST before execution. Expressions whose operands are
+ * all literals, e.g. '60 * 60 * 24' or "'a' + 'b'", are folded into a single
+ * literal, and constants initialised with a literal are inlined into the
+ * expressions that read them, so that they can be folded too.
+ *
+ * Folded expressions are evaluated by the Parser, therefore they give exactly
+ * the same Values as at run-time. An expression is left as it is if it fails,
+ * e.g. a division by zero, so that it still fails at run-time, or if its value
+ * can't be written as a literal that gives the same Value, e.g. a double that
+ * would be read back as a float.
+ *
+ * A constant is inlined into the reads that follow its definition in the
+ * source. They include the bodies of the functions defined after it, which
+ * can't be invoked before the definition has been executed. It isn't inlined
+ * at all if anything else in the program writes to it, e.g. 'x++', which is
+ * allowed on a constant, as the write may run before a read that precedes it
+ * in the source, e.g. in a loop or in a function defined earlier.
+ *
+ * If statements whose test is folded into a literal are replaced by the branch
+ * that's always taken.
+ *
+ * Pure expressions that don't change while a loop runs, e.g. 'len - 1' in the
+ * test of a for loop, are replaced by a dereference of a slot that caches
+ * their value. The expression is still evaluated where it was, on the first
+ * read, so it fails in the same place if it fails, and it's never evaluated if
+ * the loop doesn't read it. The slot is emptied when the block the loop is in
+ * is exited, or when the invocation of the function is released.
+ *
+ * @author amrwc
+ */
+public class Optimiser {
+	private final Parser evaluator = new Parser();
+
+	// Values of the constants initialised with a literal, by their addresses.
+	private final HashMap<SlotAddress, Value> constants = new HashMap<SlotAddress, Value>();
+
+	// Addresses written anywhere in the program other than by a single definition.
+	// A redefinition in a block shares the slot of the visible one, and it may
+	// never be executed.
+	private final HashSet<SlotAddress> rewritten = new HashSet<SlotAddress>();
+
+	private int removedCount = 0;
+
+	// Loops enclosing the node being hoisted from, outermost first. Only the ones in
+	// the frame of the program or function being optimised.
+	private ArrayList<SimpleNode> loops = new ArrayList<SimpleNode>();
+
+	// Program or function owning the slots of the invariants, and its depth.
+	private SimpleNode frame;
+	private int depth = 0;
+
+	private int invariantCount = 0;
+
+	/** Optimise the whole program. Return the number of nodes removed. */
+	public int optimise(ASTCode code) {
+		collectRewrites(code, new HashSet<SlotAddress>());
+		optimise((SimpleNode) code);
+		frame = code;
+		hoist(code);
+		return removedCount;
+	}
+
+	/**
+	 * Optimise the children of the node, in the order of the source, and replace
+	 * the ones that can be written as a literal, or as the branch always taken.
+	 */
+	private void optimise(SimpleNode node) {
+		for (int i = 0; i < node.jjtGetNumChildren(); i++) {
+			final SimpleNode child = (SimpleNode) node.jjtGetChild(i);
+			optimise(child);
+
+			final SimpleNode replacement;
+			if (child instanceof ASTDereference)
+				replacement = inline(node, i);
+			else if (child instanceof ASTIfStatement)
+				replacement = prune(child);
+			else
+				replacement = fold(child);
+			if (replacement != null) {
+				replacement.jjtSetParent(node);
+				node.jjtAddChild(replacement, i);
+			}
+		}
+
+		if (node instanceof ASTDefinition && node.jjtGetChild(0) instanceof ASTConstInit) {
+			final SimpleNode initialisation = (SimpleNode) node.jjtGetChild(0).jjtGetChild(1);
+			if (!rewritten.contains(node.address) && Purity.isLiteral(initialisation))
+				constants.put(node.address,
+						(Value) initialisation.jjtAccept(evaluator, null));
+		}
+	}
+
+	/**
+	 * Collect the addresses that are written by anything but their definition, or
+	 * that are defined more than once, before any constant is inlined.
+	 */
+	private void collectRewrites(Node node, HashSet<SlotAddress> definitions) {
+		final SlotAddress address = ((SimpleNode) node).address;
+		if (node instanceof ASTDefinition) {
+			if (!definitions.add(address))
+				rewritten.add(address);
+		} else if (address != null
+				&& !(node instanceof ASTDereference || node instanceof ASTConstInit))
+			rewritten.add(address);
+
+		for (int i = 0; i < node.jjtGetNumChildren(); i++)
+			collectRewrites(node.jjtGetChild(i), definitions);
+	}
+
+	/**
+	 * Get the literal of the constant read by the given child. Return null if it
+	 * isn't a read of a constant initialised with a literal.
+	 */
+	private SimpleNode inline(SimpleNode parent, int childIndex) {
+		final SimpleNode node = (SimpleNode) parent.jjtGetChild(childIndex);
+		if (node.jjtGetNumChildren() > 0 || !isRead(parent, childIndex))
+			return null;
+
+		final Value value = constants.get(node.address);
+		return (value != null) ? literalOf(value) : null;
+	}
+
+	/**
+	 * Evaluate an operator whose operands are all literals, and return its value
+	 * as a literal. Return null if it can't be folded.
+	 */
+	private SimpleNode fold(SimpleNode node) {
+		if (!Purity.isOperator(node))
+			return null;
+		for (int i = 0; i < node.jjtGetNumChildren(); i++) {
+			if (!Purity.isLiteral(node.jjtGetChild(i)))
+				return null;
+		}
+
+		final Value value;
+		try {
+			value = (Value) node.jjtAccept(evaluator, null);
+		} catch (ExceptionSemantic | RuntimeException e) {
+			return null; // Leave the error to the run-time.
+		}
+
+		final SimpleNode literal = literalOf(value);
+		if (literal != null)
+			removedCount += node.jjtGetNumChildren();
+		return literal;
+	}
+
+	/**
+	 * Get the statement that replaces an if statement with a literal test: the
+	 * branch that's always taken, or an empty block if there's none. Return null
+	 * if the test isn't a literal, or if the if statement or the branch defines
+	 * anything outside of a block, which would change the scope of definition.
+	 */
+	private SimpleNode prune(SimpleNode node) {
+		final Node test = node.jjtGetChild(0);
+		if (!(test instanceof ASTTrue || test instanceof ASTFalse)
+				|| !Parser.collectDefinitions(node, null).isEmpty())
+			return null;
+
+		final SimpleNode branch;
+		if (test instanceof ASTTrue)
+			branch = (SimpleNode) node.jjtGetChild(1).jjtGetChild(0);
+		else if (node.ifHasElse)
+			branch = (SimpleNode) node.jjtGetChild(2).jjtGetChild(0);
+		else
+			branch = new ASTBlock(CloveTreeConstants.JJTBLOCK);
+		if (branch instanceof ASTDefinition || branch instanceof ASTFunctionDefinition)
+			return null;
+
+		removedCount += sizeOf(node) - sizeOf(branch);
+		return branch;
+	}
+
+	/**
+	 * Replace the loop-invariant expressions among the descendants of the node by
+	 * dereferences caching their values. The outermost expressions are replaced,
+	 * and they're cached for the outermost loop they don't change in.
+	 */
+	private void hoist(SimpleNode node) {
+		if (node instanceof ASTHttp || node instanceof ASTFile || node instanceof ASTReflect)
+			return;
+
+		for (int i = 0; i < node.jjtGetNumChildren(); i++) {
+			final SimpleNode child = (SimpleNode) node.jjtGetChild(i);
+			final SimpleNode loop = isRead(node, i) ? invariantLoop(child) : null;
+			if (loop != null) {
+				final SimpleNode dereference = cache(child, loop);
+				dereference.jjtSetParent(node);
+				node.jjtAddChild(dereference, i);
+			} else if (child instanceof ASTFunctionDefinition
+					|| child instanceof ASTValueFunction) {
+				final ArrayList<SimpleNode> outerLoops = loops;
+				final SimpleNode outerFrame = frame;
+				loops = new ArrayList<SimpleNode>();
+				frame = child;
+				depth++;
+				hoist(child);
+				loops = outerLoops;
+				frame = outerFrame;
+				depth--;
+			} else if (isCacheable(node, child)) {
+				loops.add(child);
+				hoist(child);
+				loops.remove(loops.size() - 1);
+			} else
+				hoist(child);
+		}
+	}
+
+	/**
+	 * True if the child is a loop whose invariants can be cached. The block or
+	 * function body it's in must be exited before the loop is executed again,
+	 * so that the slots are emptied in between.
+	 */
+	private static boolean isCacheable(SimpleNode statement, SimpleNode child) {
+		final Node scope = statement.jjtGetParent();
+		return (child instanceof ASTForLoop || child instanceof ASTWhileLoop)
+				&& statement instanceof ASTStatement
+				&& (scope instanceof ASTBlock || scope instanceof ASTCode
+						|| scope instanceof ASTFunctionBody);
+	}
+
+	/**
+	 * Get the outermost enclosing loop, in which the expression doesn't change.
+	 * Return null if it's not a pure expression reading a variable, or if it may
+	 * change in all of them.
+	 *
+	 * The expression doesn't change if nothing in the loop writes to the variables
+	 * it reads, nor invokes a function that could. If it may read the contents
+	 * of a container, nothing in the loop may write to a container either.
+	 */
+	private SimpleNode invariantLoop(SimpleNode node) {
+		if (loops.isEmpty() || (node instanceof ASTDereference
+				&& node.jjtGetNumChildren() == 0) || !Purity.isPure(node))
+			return null;
+
+		final ArrayList<SlotAddress> addresses = new ArrayList<SlotAddress>();
+		if (!collectReads(node, addresses) || addresses.isEmpty())
+			return null;
+
+		final boolean readsContainers = Purity.readsContainers(node);
+		for (final SimpleNode loop : loops) {
+			if (Purity.invokes(loop) || (readsContainers && Purity.writesContainers(loop)))
+				continue;
+			boolean isInvariant = true;
+			for (final SlotAddress address : addresses)
+				isInvariant = isInvariant && !Purity.writes(loop, address);
+			if (isInvariant)
+				return loop;
+		}
+		return null;
+	}
+
+	// Collect the addresses of the variables read by the expression. Return false
+	// if any of them isn't resolved.
+	private static boolean collectReads(Node node, ArrayList<SlotAddress> addresses) {
+		if (node instanceof ASTDereference) {
+			final SlotAddress address = ((SimpleNode) node).address;
+			if (address == null)
+				return false;
+			addresses.add(address);
+		}
+		for (int i = 0; i < node.jjtGetNumChildren(); i++) {
+			if (!collectReads(node.jjtGetChild(i), addresses))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Make up a dereference of a new slot in the frame, that caches the value of
+	 * the expression. The slot is defined by the loop, so that it's emptied with
+	 * the definitions of the block the loop is in.
+	 */
+	private SimpleNode cache(SimpleNode node, SimpleNode loop) {
+		final String name = "$invariant" + invariantCount++;
+		frame.frameLayout = frame.frameLayout.withSlot(name);
+		final SlotAddress address = new SlotAddress(name, depth,
+				frame.frameLayout.getSize() - 1, false, null);
+
+		final SimpleNode dereference = new ASTDereference(CloveTreeConstants.JJTDEREFERENCE);
+		dereference.tokenValue = name;
+		dereference.address = address;
+		dereference.invariant = node;
+		node.jjtSetParent(dereference);
+
+		final SimpleNode definition = new ASTDefinition(CloveTreeConstants.JJTDEFINITION);
+		definition.address = address;
+		if (loop.invariants == null)
+			loop.invariants = new ArrayList<SimpleNode>();
+		loop.invariants.add(definition);
+		return dereference;
+	}
+
+	/**
+	 * Write the value as a literal node. Return null if it can't be written as
+	 * one that gives the same Value.
+	 */
+	private SimpleNode literalOf(Value value) {
+		final SimpleNode literal;
+		if (value instanceof ValueBoolean) {
+			literal = ((ValueBoolean) value).booleanValue()
+					? new ASTTrue(CloveTreeConstants.JJTTRUE)
+					: new ASTFalse(CloveTreeConstants.JJTFALSE);
+		} else if (value instanceof ValueInteger || value instanceof ValueLong) {
+			literal = new ASTInteger(CloveTreeConstants.JJTINTEGER);
+			literal.tokenValue = String.valueOf((Object) value.getRawValue());
+		} else if (value instanceof ValueFloat || value instanceof ValueDouble) {
+			literal = new ASTRational(CloveTreeConstants.JJTRATIONAL);
+			literal.tokenValue = String.valueOf((Object) value.getRawValue());
+		} else if (value instanceof ValueString) {
+			literal = new ASTCharacter(CloveTreeConstants.JJTCHARACTER);
+			literal.tokenValue = "\"" + value.getRawValue() + "\"";
+		} else
+			return null;
+
+		// Every engine reads a literal from its token.
+		final Value read = (Value) literal.jjtAccept(evaluator, null);
+		return (read.getClass() == value.getClass()
+				&& read.getRawValue().equals(value.getRawValue())) ? literal : null;
+	}
+
+	private static int sizeOf(Node node) {
+		int size = 1;
+		for (int i = 0; i < node.jjtGetNumChildren(); i++)
+			size += sizeOf(node.jjtGetChild(i));
+		return size;
+	}
+
+	/**
+	 * False if the parent doesn't evaluate the child as an expression, e.g. the
+	 * name of an invoked function, or the value of a prototype function, which
+	 * could change it.
+	 */
+	private static boolean isRead(SimpleNode parent, int childIndex) {
+		if (childIndex == 0 && (parent instanceof ASTCall
+				|| parent instanceof ASTFunctionInvocation || parent instanceof ASTProtoInvoke))
+			return false;
+		return !(parent instanceof ASTHttp || parent instanceof ASTFile
+				|| parent instanceof ASTReflect);
+	}
+}
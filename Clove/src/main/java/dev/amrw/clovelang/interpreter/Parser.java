@@ -1,30 +1,21 @@
 package dev.amrw.clovelang.interpreter;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.nio.charset.Charset;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
-import java.util.concurrent.ThreadLocalRandom;
-import java.util.function.Consumer;
 
-import dev.amrw.clovelang.interpreter.Display.Reference;
+import dev.amrw.clovelang.jit.JitCompiler;
 import dev.amrw.clovelang.parser.ast.*;
 import dev.amrw.clovelang.utils.NumberUtils;
 import dev.amrw.clovelang.values.*;
 
 public class Parser implements CloveVisitor {
 	private String[] argv;
-	private final Display scope = new Display(); // Scope display handler
+	private Display scope; // Scope display handler
+	private boolean jitEnabled = false;
+	private JitCompiler jit = null;
+
+	// Tail call made by the return expression of the invocation being executed,
+	// left for invoke() to execute in its place. Null if there isn't one.
+	private FunctionInvocation tailCall = null;
 
 	public Parser() {
 	}
@@ -33,6 +24,14 @@ public class Parser implements CloveVisitor {
 		argv = args;
 	}
 
+	/**
+	 * @param jitEnabled -- compile hot functions to JVM bytecode
+	 */
+	public Parser(String[] args, boolean jitEnabled) {
+		argv = args;
+		this.jitEnabled = jitEnabled;
+	}
+
 	// Get the ith child of a given node.
 	private static SimpleNode getChild(SimpleNode node, int childIndex) {
 		return (SimpleNode) node.jjtGetChild(childIndex);
@@ -54,6 +53,219 @@ public class Parser implements CloveVisitor {
 		return (Value) doChild(node, childIndex, null);
 	}
 
+	// Execute a given child of a given node, and return its value as an unboxed
+	// boolean. Comparisons don't create a ValueBoolean. Throw
+	// UnexpectedResultException if the value isn't a boolean.
+	public boolean executeBoolean(SimpleNode node, int childIndex) {
+		final SimpleNode child = getChild(node, childIndex);
+		if (isComparison(child))
+			return (child.specialisation == Specialisation.INT)
+					? executeIntComparison(child)
+					: compare(child, doChild(child, 0), doChild(child, 1));
+
+		final Value value = doChild(node, childIndex);
+		if (value instanceof ValueBoolean)
+			return ((ValueBoolean) value).booleanValue();
+		throw new UnexpectedResultException(value);
+	}
+
+	// Execute a given child of a given node, and return its value as an unboxed
+	// integer. Variables holding unboxed integers, and arithmetic in the int
+	// state, don't create a ValueInteger. Throw UnexpectedResultException if the
+	// value isn't an integer.
+	public int executeInt(SimpleNode node, int childIndex) {
+		final SimpleNode child = getChild(node, childIndex);
+		if (child instanceof ASTDereference) {
+			final SlotAddress address = child.address;
+			if (child.jjtGetNumChildren() == 0 && address != null && scope.isInt(address))
+				return scope.getInt(address);
+		} else if (isArithmetic(child) && child.specialisation == Specialisation.INT)
+			return executeIntArithmetic(child);
+
+		final Value value = doChild(node, childIndex);
+		if (value instanceof ValueInteger)
+			return ((ValueInteger) value).intValue();
+		throw new UnexpectedResultException(value);
+	}
+
+	private static boolean isComparison(SimpleNode node) {
+		return node instanceof ASTCompEqual || node instanceof ASTCompNequal
+				|| node instanceof ASTCompGTE || node instanceof ASTCompLTE
+				|| node instanceof ASTCompGT || node instanceof ASTCompLT;
+	}
+
+	// Arithmetic that can be done on unboxed integers.
+	static boolean isArithmetic(Node node) {
+		return node instanceof ASTAdd || node instanceof ASTSubtract
+				|| node instanceof ASTTimes || node instanceof ASTModulo;
+	}
+
+	// Comparison of Values by a comparison node.
+	private static boolean compare(SimpleNode node, Value left, Value right) {
+		if (node instanceof ASTCompEqual)
+			return Specialisation.isEqual(node, left, right);
+		if (node instanceof ASTCompNequal)
+			return Specialisation.isNotEqual(node, left, right);
+		if (node instanceof ASTCompGTE)
+			return Specialisation.isGreaterOrEqual(node, left, right);
+		if (node instanceof ASTCompLTE)
+			return Specialisation.isLessOrEqual(node, left, right);
+		if (node instanceof ASTCompGT)
+			return Specialisation.isGreater(node, left, right);
+		return Specialisation.isLess(node, left, right);
+	}
+
+	// Arithmetic on Values by an arithmetic node.
+	private static Value calculate(SimpleNode node, Value left, Value right) {
+		if (node instanceof ASTAdd)
+			return Specialisation.add(node, left, right);
+		if (node instanceof ASTSubtract)
+			return Specialisation.subtract(node, left, right);
+		if (node instanceof ASTTimes)
+			return Specialisation.mult(node, left, right);
+		return Specialisation.mod(node, left, right);
+	}
+
+	// Execute a comparison in the int state on unboxed operands. An operand that
+	// isn't an integer makes the node compare Values, and leave the int state.
+	private boolean executeIntComparison(SimpleNode node) {
+		final int left;
+		try {
+			left = executeInt(node, 0);
+		} catch (final UnexpectedResultException e) {
+			return compare(node, e.getResult(), doChild(node, 1));
+		}
+		final int right;
+		try {
+			right = executeInt(node, 1);
+		} catch (final UnexpectedResultException e) {
+			return compare(node, ValueInteger.valueOf(left), e.getResult());
+		}
+
+		if (node instanceof ASTCompEqual)
+			return left == right;
+		if (node instanceof ASTCompNequal)
+			return left != right;
+		if (node instanceof ASTCompGTE)
+			return left >= right;
+		if (node instanceof ASTCompLTE)
+			return left <= right;
+		if (node instanceof ASTCompGT)
+			return left > right;
+		return left < right;
+	}
+
+	// Execute arithmetic in the int state on unboxed operands. If an operand or
+	// the result isn't an integer, the node is done on Values instead, and the
+	// result is thrown in UnexpectedResultException.
+	private int executeIntArithmetic(SimpleNode node) {
+		final int left;
+		try {
+			left = executeInt(node, 0);
+		} catch (final UnexpectedResultException e) {
+			throw new UnexpectedResultException(
+					calculate(node, e.getResult(), doChild(node, 1)));
+		}
+		final int right;
+		try {
+			right = executeInt(node, 1);
+		} catch (final UnexpectedResultException e) {
+			throw new UnexpectedResultException(
+					calculate(node, ValueInteger.valueOf(left), e.getResult()));
+		}
+
+		final long result;
+		if (node instanceof ASTAdd)
+			result = Specialisation.addInt(left, right);
+		else if (node instanceof ASTSubtract)
+			result = Specialisation.subtractInt(left, right);
+		else if (node instanceof ASTTimes)
+			result = Specialisation.multInt(left, right);
+		else
+			result = Specialisation.modInt(left, right);
+
+		if (Specialisation.isInt(result))
+			return (int) result;
+		throw new UnexpectedResultException(
+				calculate(node, ValueInteger.valueOf(left), ValueInteger.valueOf(right)));
+	}
+
+	// Assign the value of an expression to a variable. Integer arithmetic is
+	// stored unboxed.
+	private void assign(SlotAddress address, SimpleNode node, int childIndex) {
+		final SimpleNode child = getChild(node, childIndex);
+		if (isArithmetic(child) && child.specialisation == Specialisation.INT) {
+			final int result;
+			try {
+				result = executeIntArithmetic(child);
+			} catch (final UnexpectedResultException e) {
+				checkDefined(address, node);
+				scope.setValue(address, e.getResult());
+				return;
+			}
+			checkDefined(address, node);
+			scope.setInt(address, result);
+			return;
+		}
+
+		final Value value = doChild(node, childIndex);
+		checkDefined(address, node);
+		// Fake the null object with an empty String.
+		scope.setValue(address, (value != null) ? value : new ValueString(""));
+	}
+
+	// Throw if the assigned variable isn't defined at run-time, e.g. because the
+	// assignment runs before its definition.
+	private void checkDefined(SlotAddress address, SimpleNode node) {
+		if (!scope.isDefined(address))
+			throw new ExceptionSemantic("Variable or constant \""
+					+ getTokenOfChild(node, 0) + "\" is undefined.");
+	}
+
+	// Increment/decrement a normal variable holding an integer, without creating
+	// a Value. Return false if it's not one, leaving it untouched.
+	boolean incDecInt(SimpleNode node) {
+		final SlotAddress address = node.address;
+		if (node.jjtGetNumChildren() > 1 || address == null)
+			return false;
+
+		final int value;
+		if (scope.isInt(address))
+			value = scope.getInt(address);
+		else if (scope.getValue(address) instanceof ValueInteger)
+			value = ((ValueInteger) scope.getValue(address)).intValue();
+		else
+			return false;
+
+		final long result = node.shorthandOperator.endsWith("++")
+				? Specialisation.addInt(value, 1)
+				: Specialisation.subtractInt(value, 1);
+		if (!Specialisation.isInt(result))
+			return false;
+		scope.setInt(address, (int) result);
+		return true;
+	}
+
+	// Execute an index of a list, array or string. Indices that aren't integers
+	// fail the cast, as they always did.
+	public int executeIndex(SimpleNode node, int childIndex) {
+		try {
+			return executeInt(node, childIndex);
+		} catch (final UnexpectedResultException e) {
+			return ((ValueInteger) e.getResult()).intValue();
+		}
+	}
+
+	// Execute the test expression of an if statement or a loop.
+	private boolean test(SimpleNode node, int childIndex, String statement) {
+		try {
+			return executeBoolean(node, childIndex);
+		} catch (final UnexpectedResultException e) {
+			throw new ExceptionSemantic(
+					"The test expression of " + statement + " must be boolean.");
+		}
+	}
+
 	// Execute all children of the given node
 	Object doChildren(SimpleNode node, Object data) {
 		return node.childrenAccept(this, data);
@@ -69,9 +281,18 @@ public class Parser implements CloveVisitor {
 	// Execute a Clove program
 	@Override
 	public Object visit(ASTCode node, Object data) {
+		openDisplay(node.frameLayout);
+		if (jitEnabled)
+			jit = new JitCompiler(this, scope);
 		return doChildren(node, data);
 	}
 
+	// Set up the display of the main scope, and return it.
+	Display openDisplay(FrameLayout mainLayout) {
+		scope = new Display(mainLayout);
+		return scope;
+	}
+
 	/**************
 	 * Statements *
 	 **************/
@@ -102,22 +323,10 @@ public class Parser implements CloveVisitor {
 
 			fndef = getValueFunction(node);
 			node.optimised = fndef;
-		}
-
-		if (node.optimised == null) {
-			// Child 0 - identifier (fnname)
-			final String fnname = getTokenOfChild(node, 0);
-			fndef = scope.findFunction(fnname);
-			if (fndef == null)
-				fndef = findValueFunction(fnname);
-
-			node.optimised = fndef; // Save it for next time
 		} else
-			fndef = (FunctionDefinition) node.optimised;
+			fndef = resolveFunction(node, false);
 
-		final FunctionInvocation newInvocation = new FunctionInvocation(fndef);
-		doChild(node, 1, newInvocation); // Child 1 - arglist
-		scope.execute(newInvocation, this); // Execute
+		invoke(fndef, newInvocation(node, fndef)); // Execute
 
 		return data;
 	}
@@ -127,23 +336,12 @@ public class Parser implements CloveVisitor {
 	 */
 	@Override
 	public Object visit(ASTDefinition node, Object data) {
-		final Node initialisation = node.jjtGetChild(0);
-		final String name = getTokenOfChild((SimpleNode) initialisation, 0);
-
-		if (scope.findReference(name) == null
-				&& scope.findReference("constant" + name) == null) {
-			switch (node.defType) {
-			case "variable":
-				scope.defineVariable(name);
-				break;
-			case "constant":
-				scope.defineConstant(name);
-			}
-			initialisation.jjtAccept(this, data); // Do the initialisation.
-		} else
-			throw new ExceptionSemantic(
-					"Variable or constant \"" + name + "\" already exists.");
+		if (scope.exists(node.address))
+			throw new ExceptionSemantic("Variable or constant \""
+					+ node.address.getName() + "\" already exists.");
 
+		scope.declare(node.address);
+		doChild(node, 0, data); // Do the initialisation.
 		return data;
 	}
 
@@ -159,23 +357,21 @@ public class Parser implements CloveVisitor {
 					+ " Change the \"const\" keyword before \"" + name
 					+ "\" to \"let\".");
 
-		if (scope.findReference(name) != null)
+		if (scope.exists(node.address))
 			throw new ExceptionSemantic("Variable \"" + name + "\" already exists.");
-
-		// Define the variable and get the reference.
-		final Display.Reference ref = scope.defineVariable(name);
+		scope.declare(node.address);
 
 		// If the declaration has an add_expression() in brackets,
 		// it's a ValueArray declaration with an explicit capacity.
 		if (node.isArrayWithCap == true) {
 			final int capacity = (int) doChild(node, 1).getRawValue();
-			ref.setValue(new ValueArray(capacity));
+			scope.setValue(node.address, new ValueArray(capacity));
 		}
 
 		// Otherwise, if it's just an array declaration, set an empty ValueArray
 		// with 0 capacity.
 		else if (node.isArrayDeclaration == true)
-			ref.setValue(new ValueArray(0));
+			scope.setValue(node.address, new ValueArray(0));
 
 		return data;
 	}
@@ -185,37 +381,33 @@ public class Parser implements CloveVisitor {
 	 */
 	@Override
 	public Object visit(ASTAssignment node, Object data) {
-		Display.Reference reference;
+		final SlotAddress address = node.address;
 		final int numChildren = node.jjtGetNumChildren();
 
+		// Assignment of a normal variable, that may be stored unboxed.
+		if (numChildren <= 2 && node.shorthandOperator == null && address != null
+				&& !address.isConstant()) {
+			assign(address, node, numChildren - 1);
+			return data;
+		}
+
 		Value rightVal = doChild(node, numChildren - 1);
 		if (rightVal == null)
 			// Fake the null object with an empty String.
 			rightVal = new ValueString("");
 
-		// Get the reference of the parent value.
-		if (node.optimised == null) {
-			final String name = getTokenOfChild(node, 0);
-			reference = scope.findReference(name);
-			if (reference == null) {
-				// Try finding a constant.
-				reference = scope.findReference("constant" + name);
-				if (reference == null)
-					throw new ExceptionSemantic(
-							"Variable or constant \"" + name + "\" is undefined.");
-
-				// If it's a constant but it's not a dereference into a const obj or list.
-				if (reference != null && numChildren <= 2)
-					throw new ExceptionSemantic(
-							"\"" + name + "\" is a constant and cannot be reassigned.");
-			}
-			node.optimised = reference;
-		} else
-			reference = (Display.Reference) node.optimised;
+		if (address == null)
+			throw new ExceptionSemantic("Variable or constant \""
+					+ getTokenOfChild(node, 0) + "\" is undefined.");
+
+		// If it's a constant but it's not a dereference into a const obj or list.
+		if (address.isConstant() && numChildren <= 2)
+			throw new ExceptionSemantic(
+					"\"" + address.getName() + "\" is a constant and cannot be reassigned.");
 
 		// If it's not a normal dereference of a variable...
 		if (numChildren > 2) {
-			Value value = reference.getValue();
+			Value value = getValue(node, address);
 			int currChild = 1; // Keep track of how far it traversed.
 
 			// -2 := the parent of the rightmost value to the left
@@ -239,43 +431,59 @@ public class Parser implements CloveVisitor {
 
 			// ...and reassign the value of the list...
 			if (value instanceof ValueList) {
-				final int index = ((ValueInteger) doChild(node, numChildren - 2))
-						.getRawValue();
+				final int index = executeIndex(node, numChildren - 2);
 				((ValueList) value).set(index, rightVal);
 			}
 			// ...or an array's value...
 			else if (value instanceof ValueArray) {
-				final int index = ((ValueInteger) doChild(node, numChildren - 2))
-						.getRawValue();
+				final int index = executeIndex(node, numChildren - 2);
 				((ValueArray) value).set(index, rightVal);
 			}
 			// ...or an object's key.
 			else if (value instanceof ValueObject) {
-				final String keyName = node
-						.jjtGetChild(numChildren - 2) instanceof ASTIdentifier
-								? getTokenOfChild(node, numChildren - 2)
-								: doChild(node, numChildren - 2).toString();
-				((ValueObject) value).set(keyName, rightVal);
+				final SimpleNode key = getChild(node, numChildren - 2);
+				if (key instanceof ASTIdentifier)
+					((ValueObject) value).set(key.tokenValue, rightVal, InlineCache.of(key));
+				else
+					((ValueObject) value).set(doChild(node, numChildren - 2).toString(),
+							rightVal);
 			}
+			// ...or a map's key...
+			else if (value instanceof ValueMap)
+				((ValueMap) value).set(ValueMap.keyOf(node, numChildren - 2, this), rightVal);
+			// ...unless it's persistent.
+			else
+				checkNotPersistent(value);
 		}
 
 		// Normal variable (1 child in L-value).
 		else {
 			// Handle a shorthand operator on a normal variable.
 			if (node.shorthandOperator != null) {
-				final Value value = reference.getValue();
+				final Value value = getValue(node, address);
 				final Value result = doShorthand(node.shorthandOperator, value, rightVal);
-				reference.setValue(result);
+				scope.setValue(address, result);
 				return data;
 			}
 
 			// Assignment of a normal variable (no dereference).
-			reference.setValue(rightVal);
+			checkDefined(address, node);
+			scope.setValue(address, rightVal);
 		}
 
 		return data;
 	}
 
+	/**
+	 * Throw if the value is a persistent list or object, whose elements can't be
+	 * reassigned, but only replaced in a new version.
+	 */
+	public static void checkNotPersistent(Value value) {
+		if (value instanceof ValuePersistentList || value instanceof ValuePersistentObject)
+			throw new ExceptionSemantic("The elements of " + value.getName()
+					+ " cannot be reassigned. Use the 'with' prototype function instead.");
+	}
+
 	/**
 	 * Executes a shorthand reassignment between L-value and R-value.
 	 * 
@@ -284,7 +492,7 @@ public class Parser implements CloveVisitor {
 	 * @param val      -- base value (operand)
 	 * @param rightVal -- second operand
 	 */
-	private Value doShorthand(String operator, Value val, Value rightVal) {
+	public static Value doShorthand(String operator, Value val, Value rightVal) {
 		switch (operator) {
 		case "+=":
 			return val.add(rightVal);
@@ -313,7 +521,7 @@ public class Parser implements CloveVisitor {
 		if (scope.findFunctionInCurrentLevel(fnname) != null)
 			throw new ExceptionSemantic("Function " + fnname + " already exists.");
 		final FunctionDefinition currentFunctionDefinition = new FunctionDefinition(
-				fnname, scope.getLevel() + 1);
+				fnname, scope.getLevel() + 1, node.frameLayout);
 		// Child 1 - function definition parameter list
 		doChild(node, 1, currentFunctionDefinition);
 		// Add to available functions
@@ -344,27 +552,36 @@ public class Parser implements CloveVisitor {
 	 * @param init -- initialisation node in for-loops.
 	 */
 	public void removeDefinitions(SimpleNode node, SimpleNode init) {
-		final ArrayList<SimpleNode> definitions = collectDefinitions(node, init);
-
-		final Consumer<SimpleNode> removeDefinition = definition -> {
-			if (definition instanceof ASTDefinition) {
-				final SimpleNode initNode = (SimpleNode) definition.jjtGetChild(0);
-				final String variableName = getTokenOfChild(initNode, 0);
-				if (scope.findReference("constant" + variableName) != null)
-					scope.removeVariable("constant" + variableName);
-				else
-					scope.removeVariable(variableName);
-			} else if (definition instanceof ASTFunctionDefinition) {
-				final String fnName = getTokenOfChild(definition, 0);
-				scope.removeFunction(fnName);
-			}
-		};
-
-		definitions.forEach(removeDefinition);
+		if (init instanceof ASTDefinition)
+			scope.setValue(init.address, null);
+		removeDefinitions(node);
 	}
 
 	public void removeDefinitions(SimpleNode node) {
-		removeDefinitions(node, null);
+		if (node.definitions == null)
+			node.definitions = definitionsOf(node);
+
+		for (final Object definition : node.definitions) {
+			if (definition instanceof SlotAddress)
+				scope.setValue((SlotAddress) definition, null);
+			else
+				scope.removeFunction((String) definition);
+		}
+	}
+
+	/**
+	 * Addresses of the variables and names of the functions defined in the scope,
+	 * as stored in BaseASTNode.definitions.
+	 */
+	public static Object[] definitionsOf(SimpleNode node) {
+		final ArrayList<SimpleNode> definitions = collectDefinitions(node, null);
+		final Object[] removals = new Object[definitions.size()];
+		for (int i = 0; i < removals.length; i++) {
+			final SimpleNode definition = definitions.get(i);
+			removals[i] = (definition instanceof ASTDefinition) ? definition.address
+					: getTokenOfChild(definition, 0);
+		}
+		return removals;
 	}
 
 	/**
@@ -373,17 +590,20 @@ public class Parser implements CloveVisitor {
 	 * @param node
 	 * @param init -- initialisation node in for-loops.
 	 */
-	private ArrayList<SimpleNode> collectDefinitions(SimpleNode node, SimpleNode init) {
+	public static ArrayList<SimpleNode> collectDefinitions(SimpleNode node,
+			SimpleNode init) {
 		final ArrayList<SimpleNode> definitions = new ArrayList<SimpleNode>();
 
 		// Handle raw block() that occurs without any preceding statement such as
 		// for()/if().
 		if (node instanceof ASTBlock) {
 			for (int i = 0; i < node.jjtGetNumChildren(); i++) {
-				final Node innerNode = node.jjtGetChild(i).jjtGetChild(0);
+				final SimpleNode innerNode = (SimpleNode) node.jjtGetChild(i).jjtGetChild(0);
 				if (innerNode instanceof ASTDefinition
 						|| innerNode instanceof ASTFunctionDefinition)
-					definitions.add((SimpleNode) innerNode);
+					definitions.add(innerNode);
+				else if (innerNode.invariants != null)
+					definitions.addAll(innerNode.invariants);
 			}
 			return definitions;
 		}
@@ -414,12 +634,7 @@ public class Parser implements CloveVisitor {
 	 */
 	@Override
 	public Object visit(ASTIfStatement node, Object data) {
-		final Value test = doChild(node, 0);
-		if (!(test instanceof ValueBoolean))
-			throw new ExceptionSemantic(
-					"The test expression of an if statement must be boolean.");
-
-		if (((ValueBoolean) test).getRawValue()) // If test evaluated to true...
+		if (test(node, 0, "an if statement")) // If test evaluated to true...
 			doChild(node, 1); // ...do 'if'. Or...
 		else if (node.ifHasElse) // ...if it evaluated to false and has 'else'...
 			doChild(node, 2); // ...do 'else'.
@@ -435,14 +650,17 @@ public class Parser implements CloveVisitor {
 	public Object visit(ASTForLoop node, Object data) {
 		doChild(node, 0); // Initialise the loop (usually 'let i = 0').
 
-		while (true) {
-			final Value loopTest = doChild(node, 1);
-			if (!(loopTest instanceof ValueBoolean))
-				throw new ExceptionSemantic(
-						"The test expression of a for loop must be boolean.");
+		// Analyse the loop once, after the whole program has been resolved.
+		if (node.optimised == null)
+			node.optimised = CountedLoop.analyse(node);
+		final CountedLoop countedLoop = (CountedLoop) node.optimised;
+		if (countedLoop.isCounted() && doCountedLoop(node, countedLoop)) {
+			removeDefinitions(node, (SimpleNode) node.jjtGetChild(0));
+			return data;
+		}
 
-			if (!((ValueBoolean) loopTest).getRawValue()) // If loopTest evaluated to
-															// false, break.
+		while (true) {
+			if (!test(node, 1, "a for loop")) // If loopTest evaluated to false, break.
 				break;
 
 			doChild(node, 3); // Do the loop statement()/body().
@@ -450,7 +668,10 @@ public class Parser implements CloveVisitor {
 			// Remove the definitions made inside a statement() without block().
 			removeDefinitions(node);
 
-			doChild(node, 2); // Evaluate the loop expression (usually 'i++').
+			// Evaluate the loop expression (usually 'i++'), whose value is unused.
+			final SimpleNode update = getChild(node, 2);
+			if (!(update instanceof ASTIncrementDecrement) || !incDecInt(update))
+				doChild(node, 2);
 		}
 
 		// Remove all definitions in this scope, including the initialisation.
@@ -458,19 +679,45 @@ public class Parser implements CloveVisitor {
 		return data;
 	}
 
+	/**
+	 * Execute a counted for loop on a primitive counter. The induction variable is
+	 * written only if the body reads it. Return false, before the first iteration,
+	 * if the induction variable or the bound isn't an integer.
+	 */
+	private boolean doCountedLoop(SimpleNode node, CountedLoop loop) {
+		final SlotAddress induction = loop.getInduction();
+		final long start;
+		if (scope.isInt(induction))
+			start = scope.getInt(induction);
+		else if (scope.getValue(induction) instanceof ValueInteger)
+			start = ((ValueInteger) scope.getValue(induction)).intValue();
+		else
+			return false;
+
+		final int bound;
+		try {
+			bound = executeInt(getChild(node, 1), 1);
+		} catch (final UnexpectedResultException e) {
+			return false;
+		}
+
+		for (long i = start; loop.test(i, bound); i += loop.getStep()) {
+			if (loop.isInductionRead())
+				scope.setInt(induction, (int) i);
+
+			doChild(node, 3); // Do the loop statement()/body().
+			removeDefinitions(node);
+		}
+		return true;
+	}
+
 	/**
 	 * Execute a while loop.
 	 */
 	@Override
 	public Object visit(ASTWhileLoop node, Object data) {
 		while (true) {
-			final Value loopTest = doChild(node, 0);
-			if (!(loopTest instanceof ValueBoolean))
-				throw new ExceptionSemantic(
-						"The test expression of a while loop must be boolean.");
-
-			if (!((ValueBoolean) loopTest).getRawValue()) // If loopTest evaluated to
-															// false, break.
+			if (!test(node, 0, "a while loop")) // If loopTest evaluated to false, break.
 				break;
 
 			doChild(node, 1); // Do loop statement()/block().
@@ -537,18 +784,15 @@ public class Parser implements CloveVisitor {
 	 */
 	@Override
 	public Object visit(ASTIncrementDecrement node, Object data) {
-		Display.Reference ref;
-		final String name = getTokenOfChild(node, 0);
+		final SlotAddress address = node.address;
 		final int numChildren = node.jjtGetNumChildren();
-		final ValueInteger one = new ValueInteger(1);
+		final ValueInteger one = ValueInteger.valueOf(1);
 
-		// Try finding a variable or a constant.
-		if ((ref = scope.findReference(name)) == null)
-			ref = scope.findReference("constant" + name);
-		if (ref == null)
-			throw new ExceptionSemantic("Variable \"" + name + "\" is undefined.");
+		if (address == null || scope.getValue(address) == null)
+			throw new ExceptionSemantic(
+					"Variable \"" + getTokenOfChild(node, 0) + "\" is undefined.");
 
-		Value value = ref.getValue();
+		Value value = scope.getValue(address);
 
 		// If it's a compound value...
 		if (numChildren > 1) {
@@ -582,16 +826,16 @@ public class Parser implements CloveVisitor {
 		// Handle a normal variable.
 		switch (node.shorthandOperator) {
 		case "pre++":
-			ref.setValue(value.add(one));
-			return ref.getValue();
+			scope.setValue(address, value.add(one));
+			return scope.getValue(address);
 		case "pre--":
-			ref.setValue(value.subtract(one));
-			return ref.getValue();
+			scope.setValue(address, value.subtract(one));
+			return scope.getValue(address);
 		case "post++":
-			ref.setValue(value.add(one));
+			scope.setValue(address, value.add(one));
 			return value;
 		case "post--":
-			ref.setValue(value.subtract(one));
+			scope.setValue(address, value.subtract(one));
 			return value;
 		default:
 			throw new ExceptionSemantic("Operator \"" + node.shorthandOperator
@@ -612,13 +856,12 @@ public class Parser implements CloveVisitor {
 	private Value doIncDecNested(SimpleNode node, int numChildren, Value value,
 			String operation) {
 		Value old = null;
-		final ValueInteger one = new ValueInteger(1);
+		final ValueInteger one = ValueInteger.valueOf(1);
 
 		if (value instanceof ValueList) {
 			final ValueList list = (ValueList) value; // Cast value to an appropriate
 														// class.
-			final int index = ((ValueInteger) doChild(node, numChildren - 1))
-					.getRawValue();
+			final int index = executeIndex(node, numChildren - 1);
 			old = list.get(index);
 
 			if (operation.contains("++"))
@@ -633,8 +876,7 @@ public class Parser implements CloveVisitor {
 
 		else if (value instanceof ValueArray) {
 			final ValueArray array = (ValueArray) value;
-			final int index = ((ValueInteger) doChild(node, numChildren - 1))
-					.getRawValue();
+			final int index = executeIndex(node, numChildren - 1);
 			old = array.get(index);
 
 			if (operation.contains("++"))
@@ -648,21 +890,39 @@ public class Parser implements CloveVisitor {
 
 		else if (value instanceof ValueObject) {
 			final ValueObject object = (ValueObject) value;
-			final String keyName = node
-					.jjtGetChild(numChildren - 1) instanceof ASTIdentifier
-							? getTokenOfChild(node, numChildren - 1)
-							: doChild(node, numChildren - 1).toString();
-			old = object.get(keyName);
+			final SimpleNode key = getChild(node, numChildren - 1);
+			final String keyName = (key instanceof ASTIdentifier) ? key.tokenValue
+					: doChild(node, numChildren - 1).toString();
+			final InlineCache cache = (key instanceof ASTIdentifier) ? InlineCache.of(key)
+					: null;
+			old = object.get(keyName, cache);
 
 			if (operation.contains("++"))
-				object.set(keyName, old.add(one));
+				object.set(keyName, old.add(one), cache);
 			else
-				object.set(keyName, old.subtract(one));
+				object.set(keyName, old.subtract(one), cache);
 
 			if (operation.equals("pre++") || operation.equals("pre--"))
-				return object.get(keyName);
+				return object.get(keyName, cache);
 		}
 
+		else if (value instanceof ValueMap) {
+			final ValueMap map = (ValueMap) value;
+			final Value key = ValueMap.keyOf(node, numChildren - 1, this);
+			old = map.get(key);
+
+			if (operation.contains("++"))
+				map.set(key, old.add(one));
+			else
+				map.set(key, old.subtract(one));
+
+			if (operation.equals("pre++") || operation.equals("pre--"))
+				return map.get(key);
+		}
+
+		else
+			checkNotPersistent(value);
+
 		return old;
 	}
 
@@ -675,105 +935,11 @@ public class Parser implements CloveVisitor {
 	public Object visit(ASTHttp node, Object data) {
 		final String method = doChild(node, 0).toString().toUpperCase();
 		final String url = doChild(node, 1).toString();
-		String body = null;
-
-		switch (method) {
-		case "GET":
-		case "DELETE": {
-			return doHttpReq(method, url);
-		}
-		case "POST":
-		case "PUT": {
-			if (node.jjtGetNumChildren() < 3) {
-				throw new ExceptionSemantic(
-						"The \"" + method + "\" HTTP method needs a request body.");
-			} else {
-				final var tryBody = doChild(node, 2); // String/ValueObject
-
-				// If the third (request body) argument is an anonymous object...
-				if (tryBody instanceof ValueObject) {
-					// ...turn the key-value pairs into url-encoded pairs.
-					body = ((ValueObject) tryBody).toUrlString();
-				} else {
-					body = tryBody.toString();
-				}
-			}
-			return doHttpReq(method, url, body);
-		}
-		default:
-			throw new ExceptionSemantic(
-					"The http function doesn't support \"" + method + "\" method.");
-		}
-	}
-
-	/**
-	 * Sends an HTTP request and returns its response in a ValueObject.
-	 * 
-	 * @read https://docs.oracle.com/javase/tutorial/networking/urls/readingWriting.html
-	 * @param method
-	 * @param requestURL
-	 * @param data
-	 * @returns {ValueObject} response code and body
-	 */
-	private ValueObject doHttpReq(String method, String requestURL, String data) {
-		URL url;
-		String responseBody = "";
-		final ValueObject res = new ValueObject();
-		res.add("code", null);
-		res.add("body", null);
 
-		try {
-			url = new URL(requestURL);
-			final HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-			conn.setReadTimeout(15000);
-			conn.setConnectTimeout(15000);
-
-			switch (method) {
-			case "GET":
-			case "DELETE":
-				break;
-			case "POST":
-			case "PUT": {
-				if (data == null)
-					throw new ExceptionSemantic("The \"" + method
-							+ "\" method's request body cannot evaluate to null.");
-
-				conn.setRequestMethod(method);
-				conn.setDoOutput(true);
-
-				final OutputStreamWriter out = new OutputStreamWriter(
-						conn.getOutputStream());
-				out.write(data);
-				out.flush();
-				out.close();
-				break;
-			}
-			default:
-				throw new ExceptionSemantic("The \"" + method
-						+ "\" method is not supported by the http function.");
-			}
-			final int responseCode = conn.getResponseCode();
-			res.set("code", new ValueInteger(responseCode));
-
-			if (responseCode == 200 || responseCode == 201) {
-				String line;
-				final BufferedReader br = new BufferedReader(
-						new InputStreamReader(conn.getInputStream()));
-				while ((line = br.readLine()) != null)
-					responseBody += line.strip() + "\n";
-				br.close();
-			}
-		} catch (final Exception e) {
-			e.printStackTrace();
-		} finally {
-			res.set("body", new ValueString(responseBody));
-		}
-
-		return res;
-	}
-
-	private ValueObject doHttpReq(String method, String requestURL) {
-		return doHttpReq(method, requestURL, null);
+		// Only POST and PUT requests have the request body.
+		final boolean hasBody = (method.equals("POST") || method.equals("PUT"))
+				&& node.jjtGetNumChildren() > 2;
+		return Builtins.http(method, url, hasBody ? doChild(node, 2) : null);
 	}
 
 	/**
@@ -782,7 +948,6 @@ public class Parser implements CloveVisitor {
 	 * Example usage: file("append", "file.txt", content) ...where content can be
 	 * any Value type.
 	 * 
-	 * @read https://stackoverflow.com/a/23221771/10620237
 	 * @param (child0) {String} option ("create"/"overwrite"|"open"/"append")
 	 * @param (child1) {String/ValueString} path
 	 * @param (child2) {String/Value} content
@@ -792,38 +957,7 @@ public class Parser implements CloveVisitor {
 	public Object visit(ASTFile node, Object data) {
 		final String option = doChild(node, 0).toString();
 		final String pathStr = doChild(node, 1).toString();
-		final Path path = Paths.get(pathStr);
-		final Path parentDir = path.getParent();
-		final Value content = doChild(node, 2);
-
-		// Transform the content to an Iterable; end it with a new line.
-		final List<String> lines = Arrays.asList(content.toString(), "");
-		final Charset utf8 = StandardCharsets.UTF_8;
-
-		try {
-			if (parentDir != null && Files.notExists(parentDir))
-				Files.createDirectory(parentDir);
-
-			switch (option) {
-			case "create":
-			case "overwrite":
-				Files.write(path, lines, utf8);
-				break;
-			case "open":
-			case "append":
-				Files.write(path, lines, utf8, StandardOpenOption.CREATE,
-						StandardOpenOption.APPEND);
-				break;
-			default:
-				throw new ExceptionSemantic(
-						"There is no \"" + option + "\" option in the file function.");
-			}
-		} catch (final Exception e) {
-			System.err.println("Problem writing to the \"" + pathStr + "\" file.");
-			e.printStackTrace();
-		}
-
-		return new ValueString(pathStr);
+		return Builtins.file(option, pathStr, doChild(node, 2));
 	}
 
 	/******************
@@ -846,24 +980,18 @@ public class Parser implements CloveVisitor {
 	 */
 	@Override
 	public Object visit(ASTConstInit node, Object data) {
-		final String name = getTokenOfChild(node, 0);
-		final Display.Reference reference = scope.findReference("constant" + name);
 		final Value rightVal = doChild(node, 1);
 		if (rightVal == null)
 			throw new ExceptionSemantic(
 					"Right value of the constant's initialisation cannot resolve to null.");
 
-		reference.setValue(rightVal);
+		scope.setValue(node.address, rightVal);
 		return data;
 	}
 
 	@Override
 	public Object visit(ASTArrayInit node, Object data) {
 		final String name = getTokenOfChild(node, 0);
-		Display.Reference reference = scope.findReference(name);
-		// If the array is being defined as a constant...
-		if (reference == null)
-			reference = scope.findReference("constant" + name);
 
 		int initValNum = -1;
 		int capacity = -1;
@@ -906,7 +1034,7 @@ public class Parser implements CloveVisitor {
 			valueArray.append(currentValue);
 		}
 
-		reference.setValue(valueArray);
+		scope.setValue(node.address, valueArray);
 		return data;
 	}
 
@@ -957,57 +1085,57 @@ public class Parser implements CloveVisitor {
 
 	@Override
 	public Object visit(ASTCompEqual node, Object data) { // ==
-		return doChild(node, 0).eq(doChild(node, 1));
+		return Specialisation.eq(node, doChild(node, 0), doChild(node, 1));
 	}
 
 	@Override
 	public Object visit(ASTCompNequal node, Object data) { // !=
-		return doChild(node, 0).neq(doChild(node, 1));
+		return Specialisation.neq(node, doChild(node, 0), doChild(node, 1));
 	}
 
 	@Override
 	public Object visit(ASTCompGTE node, Object data) { // >=
-		return doChild(node, 0).gte(doChild(node, 1));
+		return Specialisation.gte(node, doChild(node, 0), doChild(node, 1));
 	}
 
 	@Override
 	public Object visit(ASTCompLTE node, Object data) { // <=
-		return doChild(node, 0).lte(doChild(node, 1));
+		return Specialisation.lte(node, doChild(node, 0), doChild(node, 1));
 	}
 
 	@Override
 	public Object visit(ASTCompGT node, Object data) { // >
-		return doChild(node, 0).gt(doChild(node, 1));
+		return Specialisation.gt(node, doChild(node, 0), doChild(node, 1));
 	}
 
 	@Override
 	public Object visit(ASTCompLT node, Object data) { // <
-		return doChild(node, 0).lt(doChild(node, 1));
+		return Specialisation.lt(node, doChild(node, 0), doChild(node, 1));
 	}
 
 	@Override
 	public Object visit(ASTAdd node, Object data) { // +
-		return doChild(node, 0).add(doChild(node, 1));
+		return Specialisation.add(node, doChild(node, 0), doChild(node, 1));
 	}
 
 	@Override
 	public Object visit(ASTSubtract node, Object data) { // -
-		return doChild(node, 0).subtract(doChild(node, 1));
+		return Specialisation.subtract(node, doChild(node, 0), doChild(node, 1));
 	}
 
 	@Override
 	public Object visit(ASTTimes node, Object data) { // *
-		return doChild(node, 0).mult(doChild(node, 1));
+		return Specialisation.mult(node, doChild(node, 0), doChild(node, 1));
 	}
 
 	@Override
 	public Object visit(ASTDivide node, Object data) { // /
-		return doChild(node, 0).div(doChild(node, 1));
+		return Specialisation.div(node, doChild(node, 0), doChild(node, 1));
 	}
 
 	@Override
 	public Object visit(ASTModulo node, Object data) { // %
-		return doChild(node, 0).mod(doChild(node, 1));
+		return Specialisation.mod(node, doChild(node, 0), doChild(node, 1));
 	}
 
 	@Override
@@ -1043,41 +1171,150 @@ public class Parser implements CloveVisitor {
 
 			fndef = getValueFunction(node);
 			node.optimised = fndef;
+		} else
+			fndef = resolveFunction(node, true);
+
+		// Execute and return the outcome.
+		return invoke(fndef, newInvocation(node, fndef));
+	}
+
+	/**
+	 * Find the function called by its name in a call or invocation node, and save
+	 * it in node.optimised for next time.
+	 * 
+	 * @param node        -- ASTCall or ASTFunctionInvocation
+	 * @param needsReturn -- whether the function is invoked in an expression
+	 */
+	public FunctionDefinition resolveFunction(SimpleNode node, boolean needsReturn) {
+		if (node.optimised != null)
+			return (FunctionDefinition) node.optimised;
+
+		final String fnname = getTokenOfChild(node, 0);
+		FunctionDefinition fndef = scope.findFunction(fnname);
+		if (fndef == null)
+			fndef = findValueFunction(getChild(node, 0));
+
+		if (needsReturn && !fndef.hasReturn())
+			throw new ExceptionSemantic("Function " + fnname + " is being"
+					+ " invoked in an expression but does not have a return value.");
+
+		node.optimised = fndef; // Save it for next time
+		return fndef;
+	}
+
+	/**
+	 * Get a new invocation of the function, with the arguments of a call or
+	 * invocation node evaluated straight into its slots.
+	 */
+	private FunctionInvocation newInvocation(SimpleNode node, FunctionDefinition fndef) {
+		final FunctionInvocation newInvocation = fndef.newInvocation();
+		final SimpleNode arguments = getChild(node, 1); // Child 1 - arglist
+
+		// The wrong number of arguments is reported by the argument list, after
+		// evaluating as many of them as it always did.
+		final int argumentCount = arguments.jjtGetNumChildren();
+		if (argumentCount != fndef.getParameterCount()) {
+			doChild(node, 1, newInvocation);
+			return newInvocation;
 		}
 
-		if (node.optimised == null) {
-			final String fnname = getTokenOfChild(node, 0);
-			fndef = scope.findFunction(fnname);
-			if (fndef == null)
-				fndef = findValueFunction(fnname);
+		for (int i = 0; i < argumentCount; i++)
+			newInvocation.setArgument(i, doChild(arguments, i));
+		return newInvocation;
+	}
 
-			if (!fndef.hasReturn())
-				throw new ExceptionSemantic("Function " + fnname + " is being"
-						+ " invoked in an expression but does not have a return value.");
+	/**
+	 * Execute a function invocation. Once the JIT compiles the function, its
+	 * compiled body is executed instead. The invocation is released for reuse
+	 * once it returns.
+	 *
+	 * If it returns by a tail call, the tail call is executed in its place, in
+	 * the same Java stack frame.
+	 */
+	public Value invoke(FunctionDefinition fndef, FunctionInvocation newInvocation) {
+		FunctionDefinition function = fndef;
+		FunctionInvocation invocation = newInvocation;
+		while (true) {
+			if (jit != null && function.getCompiledBody() == null)
+				jit.countInvocation(function);
+
+			final CompiledNode body = function.getCompiledBody();
+			final Value returnValue = (body != null) ? scope.execute(invocation, body)
+					: scope.execute(invocation, this);
+			function.releaseInvocation(invocation);
+
+			if (tailCall == null)
+				return returnValue;
+			invocation = tailCall;
+			function = invocation.getFunction();
+			tailCall = null;
+		}
+	}
 
-			node.optimised = fndef; // Save it for next time
+	/**
+	 * Evaluate the return expression of the function being executed. If it's a
+	 * function invocation, it's made as a tail call.
+	 */
+	Value doReturn(FunctionDefinition function) {
+		final SimpleNode returnExpression = function.getFunctionReturnExpression();
+		final SimpleNode node = getChild(returnExpression, 0);
+		if (!(node instanceof ASTFunctionInvocation))
+			return doChild(returnExpression, 0);
+
+		final FunctionDefinition fndef;
+		if (node.jjtGetChild(0).jjtGetNumChildren() > 0) {
+			final Value perhapsReflection = doChild(node, 0);
+			if (perhapsReflection instanceof ValueReflection)
+				return (Value) ((ValueReflection) perhapsReflection).invoke(node, this);
+
+			fndef = getValueFunction(node);
+			node.optimised = fndef;
 		} else
-			fndef = (FunctionDefinition) node.optimised;
+			fndef = resolveFunction(node, true);
 
-		final FunctionInvocation newInvocation = new FunctionInvocation(fndef);
-		doChild(node, 1, newInvocation); // Child 1 - arglist
+		return tailCall(function, fndef, newInvocation(node, fndef));
+	}
 
-		return scope.execute(newInvocation, this); // Execute and return the outcome.
+	/**
+	 * Make a tail call from the return expression of the caller. The invocation is
+	 * left for invoke() to execute in place of the caller's, and null is returned.
+	 *
+	 * The caller's invocation is cleaned up before the tail call is executed,
+	 * rather than after. Therefore, if the callee is nested in the caller, so it
+	 * could reach the caller's variables, or if the caller has functions to remove
+	 * from its definition, the callee is invoked normally instead.
+	 */
+	public Value tailCall(FunctionDefinition caller, FunctionDefinition fndef,
+			FunctionInvocation newInvocation) {
+		if (fndef.getLevel() > caller.getLevel() || definesFunctions(caller.getFunctionBody()))
+			return invoke(fndef, newInvocation);
+
+		tailCall = newInvocation;
+		return null;
+	}
+
+	// True if functions are defined directly in the scope of the node.
+	private static boolean definesFunctions(SimpleNode node) {
+		if (node.definitions == null)
+			node.definitions = definitionsOf(node);
+		for (final Object definition : node.definitions) {
+			if (definition instanceof String)
+				return true;
+		}
+		return false;
 	}
 
 	/**
 	 * Try finding the ValueFunction inside the scope and extract its
 	 * FunctionDefinition.
 	 */
-	private FunctionDefinition findValueFunction(String fnname) {
-		Reference reference = scope.findReference(fnname);
-		if (reference == null)
-			// Find a constant of the same name.
-			reference = scope.findReference("constant" + fnname);
-		if (reference == null)
-			throw new ExceptionSemantic("Function " + fnname + " is undefined.");
-
-		final ValueFunction valueFunction = (ValueFunction) reference.getValue();
+	private FunctionDefinition findValueFunction(SimpleNode fnnameNode) {
+		final SlotAddress address = fnnameNode.address;
+		if (address == null || scope.getValue(address) == null)
+			throw new ExceptionSemantic(
+					"Function " + fnnameNode.tokenValue + " is undefined.");
+
+		final ValueFunction valueFunction = (ValueFunction) scope.getValue(address);
 		return valueFunction.get(); // Extract the FunctionDefinition stored in
 									// ValueFunction.
 	}
@@ -1110,35 +1347,53 @@ public class Parser implements CloveVisitor {
 	 */
 	@Override
 	public Object visit(ASTDereference node, Object data) {
-		Display.Reference reference;
-
-		if (node.optimised == null) {
-			// Get the main variable's/parameter's name (token).
-			final String name = node.tokenValue;
-			reference = scope.findReference(name);
-			if (reference == null)
-				// Find a constant of the same name.
-				reference = scope.findReference("constant" + name);
-			if (reference == null)
-				throw new ExceptionSemantic(
-						"Variable or parameter \"" + name + "\" is undefined.");
-			node.optimised = reference;
-		} else
-			reference = (Display.Reference) node.optimised;
+		if (node.invariant != null)
+			return getInvariant(node);
+
+		final Value value = getValue(node, node.address);
 
 		final int numChildren = node.jjtGetNumChildren();
 		if (numChildren > 0) { // If it's not a normal dereference of a variable...
 			int currChild = 0; // Keep track of how far it traversed.
-			Value value = reference.getValue();
+			Value derefValue = value;
 
 			// ...traverse through the chain of dereferences.
 			for (; currChild < numChildren; currChild++)
-				value = value.dereference(node, value, currChild, this);
+				derefValue = derefValue.dereference(node, derefValue, currChild, this);
 
-			return value;
+			return derefValue;
 		}
 
-		return reference.getValue();
+		return value;
+	}
+
+	/**
+	 * Get the value of a loop invariant cached in the slot of the dereference.
+	 * Evaluate and cache it if the slot is empty.
+	 */
+	private Value getInvariant(SimpleNode node) {
+		Value value = scope.getValue(node.address);
+		if (value == null) {
+			value = (Value) node.invariant.jjtAccept(this, null);
+			scope.setValue(node.address, value);
+		}
+		return value;
+	}
+
+	/**
+	 * Get the value of the variable or parameter addressed by the Resolver.
+	 * 
+	 * @param node    -- node referencing the variable
+	 * @param address -- address resolved for the node
+	 * @returns {Value} current value of the variable
+	 */
+	private Value getValue(SimpleNode node, SlotAddress address) {
+		final Value value = (address != null) ? scope.getValue(address) : null;
+		if (value == null)
+			throw new ExceptionSemantic("Variable or parameter \""
+					+ ((node.tokenValue != null) ? node.tokenValue : getTokenOfChild(node, 0))
+					+ "\" is undefined.");
+		return value;
 	}
 
 	/**
@@ -1148,13 +1403,7 @@ public class Parser implements CloveVisitor {
 	 */
 	@Override
 	public Object visit(ASTGetArgs node, Object data) {
-		final ValueList args = new ValueList();
-		for (final String arg : argv)
-			args.append(new ValueString(arg));
-		if (args.size() == 0)
-			System.out.println("Warning: The program asked for command-line arguments, "
-					+ "but none were passed in.");
-		return args;
+		return Builtins.args(argv);
 	}
 
 	/**
@@ -1166,31 +1415,7 @@ public class Parser implements CloveVisitor {
 	 */
 	@Override
 	public Object visit(ASTRandom node, Object data) {
-		final Value min = doChild(node, 0);
-		final Value max = doChild(node, 1);
-
-		// If both arguments are either int or long...
-		if ((min instanceof ValueInteger || min instanceof ValueLong)
-				&& (max instanceof ValueInteger || max instanceof ValueLong)) {
-			final long minLong = Long.parseLong(min.stringValue());
-			final long maxLong = Long.parseLong(max.stringValue());
-			final long result = ThreadLocalRandom.current().nextLong(minLong, maxLong);
-			return NumberUtils.tryInt(result);
-		}
-
-		// If one of the arguments is either float or double...
-		else if (min instanceof ValueFloat || min instanceof ValueDouble
-				|| max instanceof ValueFloat || max instanceof ValueDouble) {
-			final double minDouble = Double.parseDouble(min.stringValue());
-			final double maxDouble = Double.parseDouble(max.stringValue());
-			final double result = ThreadLocalRandom.current().nextDouble(minDouble,
-					maxDouble);
-			return NumberUtils.tryInt(result);
-		}
-
-		else
-			throw new ExceptionSemantic("The random() function requires the"
-					+ " arguments to be integer, long, float or double type.");
+		return Builtins.random(doChild(node, 0), doChild(node, 1));
 	}
 
 	/**
@@ -1206,22 +1431,8 @@ public class Parser implements CloveVisitor {
 			throw new ExceptionSemantic(
 					"ValueReflection only accepts" + " up to 2 arguments.");
 
-		// If there's only a class name...
-		if (numChildren == 1)
-			return new ValueReflection(className);
-
-		// ...or if there's a class name and constructor arguments...
-		else if (numChildren == 2) {
-			// Get all constructor arguments.
-			ValueList ctorArgsValue = (ValueList) doChild(node, 1);
-			final Value[] ctorArgs = new Value[ctorArgsValue.size()];
-			for (int i = 0; i < ctorArgsValue.size(); i++)
-				ctorArgs[i] = ctorArgsValue.get(i);
-
-			return new ValueReflection(className, ctorArgs);
-		}
-
-		return data;
+		return Builtins.reflect(className,
+				(numChildren == 2) ? (ValueList) doChild(node, 1) : null);
 	}
 
 	/**
@@ -1230,14 +1441,7 @@ public class Parser implements CloveVisitor {
 	@Override
 	public Object visit(ASTValueReflectionCast node, Object data) {
 		final String targetClassName = doChild(node, 0).stringValue();
-		final Value objToCast = doChild(node, 1);
-
-		if (objToCast instanceof ValueReflection)
-			return ValueReflection.cast(targetClassName, (ValueReflection) objToCast);
-
-		else
-			throw new ExceptionSemantic(
-					"The object to cast must be of ValueReflection type.");
+		return Builtins.cast(targetClassName, doChild(node, 1));
 	}
 
 	/************
@@ -1272,7 +1476,7 @@ public class Parser implements CloveVisitor {
 	@Override
 	public Object visit(ASTTrue node, Object data) {
 		if (node.optimised == null)
-			node.optimised = new ValueBoolean(true);
+			node.optimised = ValueBoolean.TRUE;
 		return node.optimised;
 	}
 
@@ -1280,7 +1484,7 @@ public class Parser implements CloveVisitor {
 	@Override
 	public Object visit(ASTFalse node, Object data) {
 		if (node.optimised == null)
-			node.optimised = new ValueBoolean(false);
+			node.optimised = ValueBoolean.FALSE;
 		return node.optimised;
 	}
 
@@ -1290,7 +1494,7 @@ public class Parser implements CloveVisitor {
 	@Override
 	public Object visit(ASTValueFunction node, Object data) {
 		final FunctionDefinition currentFnDef = new FunctionDefinition(
-				scope.getLevel() + 1);
+				scope.getLevel() + 1, node.frameLayout);
 
 		// Child 0 -- function definition parameter list
 		doChild(node, 0, currentFnDef);
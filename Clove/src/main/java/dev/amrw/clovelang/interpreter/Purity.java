@@ -0,0 +1,135 @@
+package dev.amrw.clovelang.interpreter;
+
+import java.util.Arrays;
+import java.util.List;
+
+import dev.amrw.clovelang.parser.ast.*;
+
+/**
+ * Purity analysis of the resolved AST. A pure expression has no side effects,
+ * and its value only depends on the variables it reads and on the contents of
+ * the containers it reads from. Builtins like 'log', 'random', 'http' and
+ * 'file', invocations, assignments and literals creating a new container are
+ * never pure.
+ *
+ * @author amrwc
+ */
+public final class Purity {
+	// Prototype functions that neither change the value, nor return a new container.
+	private static final List<String> PURE_PROTOS = Arrays.asList("length", "size",
+			"capacity", "cap", "getClass", "indexOf");
+
+	private Purity() {
+	}
+
+	/** True if the expression has no side effects and doesn't create a container. */
+	public static boolean isPure(Node node) {
+		if (node instanceof ASTProtoInvoke) {
+			if (!PURE_PROTOS.contains(((SimpleNode) node).tokenValue))
+				return false;
+		} else if (!isLiteral(node) && !isOperator(node)
+				&& !(node instanceof ASTDereference) && !(node instanceof ASTIdentifier))
+			return false;
+
+		for (int i = 0; i < node.jjtGetNumChildren(); i++) {
+			if (!isPure(node.jjtGetChild(i)))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * True if the value of a pure expression may depend on the contents of a
+	 * container, e.g. an element, a prototype function, or a concatenation or
+	 * comparison, which can read the elements of a container operand. Arithmetic
+	 * and logical operators fail on containers instead.
+	 */
+	public static boolean readsContainers(Node node) {
+		if ((node instanceof ASTDereference && node.jjtGetNumChildren() > 0)
+				|| node instanceof ASTProtoInvoke || node instanceof ASTAdd
+				|| node instanceof ASTCompEqual || node instanceof ASTCompNequal
+				|| node instanceof ASTCompGTE || node instanceof ASTCompLTE
+				|| node instanceof ASTCompGT || node instanceof ASTCompLT)
+			return true;
+		for (int i = 0; i < node.jjtGetNumChildren(); i++) {
+			if (readsContainers(node.jjtGetChild(i)))
+				return true;
+		}
+		return false;
+	}
+
+	/** True if anything in the subtree, but a dereference, references the address. */
+	public static boolean writes(Node node, SlotAddress address) {
+		if (!(node instanceof ASTDereference) && ((SimpleNode) node).address == address)
+			return true;
+		for (int i = 0; i < node.jjtGetNumChildren(); i++) {
+			if (writes(node.jjtGetChild(i), address))
+				return true;
+		}
+		return false;
+	}
+
+	/** True if anything in the subtree dereferences the address. */
+	public static boolean reads(Node node, SlotAddress address) {
+		if (node instanceof ASTDereference && ((SimpleNode) node).address == address)
+			return true;
+		for (int i = 0; i < node.jjtGetNumChildren(); i++) {
+			if (reads(node.jjtGetChild(i), address))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * True if anything in the subtree may invoke a function, that could write to
+	 * a variable outside of it, or a prototype function that changes its value.
+	 */
+	public static boolean invokes(Node node) {
+		if (node instanceof ASTFunctionInvocation || node instanceof ASTCall
+				|| node instanceof ASTReflect || node instanceof ASTValueReflectionCast
+				|| (node instanceof ASTProtoInvoke
+						&& !PURE_PROTOS.contains(((SimpleNode) node).tokenValue)))
+			return true;
+		for (int i = 0; i < node.jjtGetNumChildren(); i++) {
+			if (invokes(node.jjtGetChild(i)))
+				return true;
+		}
+		return false;
+	}
+
+	/** True if anything in the subtree may change the contents of a container. */
+	public static boolean writesContainers(Node node) {
+		return invokes(node) || writesElements(node);
+	}
+
+	// True if anything in the subtree assigns to, or increments, an element.
+	private static boolean writesElements(Node node) {
+		if ((node instanceof ASTAssignment && node.jjtGetNumChildren() > 2)
+				|| (node instanceof ASTIncrementDecrement && node.jjtGetNumChildren() > 1))
+			return true;
+		for (int i = 0; i < node.jjtGetNumChildren(); i++) {
+			if (writesElements(node.jjtGetChild(i)))
+				return true;
+		}
+		return false;
+	}
+
+	/** True if the node is a literal of a primitive value. */
+	public static boolean isLiteral(Node node) {
+		return node instanceof ASTInteger || node instanceof ASTRational
+				|| node instanceof ASTCharacter || node instanceof ASTTrue
+				|| node instanceof ASTFalse;
+	}
+
+	/** True if the node is an operator without side effects. */
+	public static boolean isOperator(Node node) {
+		return node instanceof ASTOr || node instanceof ASTAnd
+				|| node instanceof ASTCompEqual || node instanceof ASTCompNequal
+				|| node instanceof ASTCompGTE || node instanceof ASTCompLTE
+				|| node instanceof ASTCompGT || node instanceof ASTCompLT
+				|| node instanceof ASTAdd || node instanceof ASTSubtract
+				|| node instanceof ASTTimes || node instanceof ASTDivide
+				|| node instanceof ASTModulo || node instanceof ASTUnaryNot
+				|| node instanceof ASTUnaryPlus || node instanceof ASTUnaryMinus;
+	}
+}
@@ -0,0 +1,480 @@
+package dev.amrw.clovelang.interpreter;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import dev.amrw.clovelang.parser.ast.*;
+
+/**
+ * Resolves every variable, constant and parameter identifier to a fixed
+ * (depth, slot) address before execution. The addresses are stored in the
+ * nodes, so that the Parser never looks up a name, nor builds a string, to
+ * reach a variable at run-time.
+ *
+ * Function bodies are resolved after the code they're defined in, so that they
+ * can reference variables defined after the function itself -- as long as
+ * they're defined by the time the function is invoked.
+ *
+ * @author amrwc
+ */
+public class Resolver implements CloveVisitor {
+
+	/** Compile-time counterpart of a function invocation. */
+	private static class Frame {
+		private final int depth;
+		private final ArrayList<String> slotNames = new ArrayList<String>();
+		private Scope root;
+
+		Frame(int depth) {
+			this.depth = depth;
+		}
+
+		/** Allocate the next free slot. Return its number. */
+		int allocate(String name) {
+			slotNames.add(name);
+			return slotNames.size() - 1;
+		}
+
+		/** Freeze the slots allocated so far. */
+		FrameLayout toLayout() {
+			return new FrameLayout(slotNames.toArray(new String[0]));
+		}
+	}
+
+	/** Compile-time block scope. */
+	private static class Scope {
+		private final Frame frame;
+		private final Scope parent;
+		private final HashMap<String, SlotAddress> names = new HashMap<String, SlotAddress>();
+
+		Scope(Frame frame, Scope parent) {
+			this.frame = frame;
+			this.parent = parent;
+			if (frame.root == null)
+				frame.root = this;
+		}
+
+		/** Find the innermost visible address. Return null if it doesn't exist. */
+		SlotAddress find(String name) {
+			for (Scope s = this; s != null; s = s.parent) {
+				final SlotAddress address = s.names.get(name);
+				if (address != null)
+					return address;
+			}
+			return null;
+		}
+	}
+
+	/** Function body waiting to be resolved. */
+	private static class PendingFunction {
+		private final SimpleNode node;
+		private final Scope scope;
+
+		PendingFunction(SimpleNode node, Scope scope) {
+			this.node = node;
+			this.scope = scope;
+		}
+	}
+
+	private final ArrayDeque<PendingFunction> pending = new ArrayDeque<PendingFunction>();
+	private Scope scope;
+
+	/** Resolve the whole program. */
+	public void resolve(ASTCode code) {
+		scope = new Scope(new Frame(0), null);
+		code.jjtAccept(this, null);
+		code.frameLayout = scope.frame.toLayout();
+
+		// Nested functions get queued up while their outer function is resolved.
+		while (!pending.isEmpty())
+			resolveFunction(pending.poll());
+	}
+
+	/**
+	 * Resolve the parameters, body and return expression of a function definition
+	 * or an anonymous function.
+	 */
+	private void resolveFunction(PendingFunction function) {
+		final SimpleNode node = function.node;
+		scope = new Scope(new Frame(function.scope.frame.depth + 1), function.scope);
+
+		// Anonymous functions don't have the identifier child.
+		int currChild = (node instanceof ASTFunctionDefinition) ? 1 : 0;
+
+		// The first slots are always parameters.
+		final Node parameters = node.jjtGetChild(currChild++);
+		for (int i = 0; i < parameters.jjtGetNumChildren(); i++) {
+			final String name = Parser.getTokenOfChild((SimpleNode) parameters, i);
+			scope.names.putIfAbsent(name, new SlotAddress(name, scope.frame.depth,
+					scope.frame.allocate(name), false, null));
+		}
+
+		// Function body and the optional return expression.
+		for (; currChild < node.jjtGetNumChildren(); currChild++)
+			doChild(node, currChild);
+
+		node.frameLayout = scope.frame.toLayout();
+	}
+
+	/**
+	 * Define a variable or constant in the given scope and return its address.
+	 *
+	 * A redefinition within the same function reuses the visible slot, so that the
+	 * Parser reports it only once the definition is executed.
+	 */
+	private SlotAddress define(Scope target, String name, boolean isConstant) {
+		final SlotAddress visible = scope.find(name);
+		if (visible != null && visible.getDepth() == target.frame.depth)
+			return visible;
+
+		final SlotAddress address = new SlotAddress(name, target.frame.depth,
+				target.frame.allocate(name), isConstant, visible);
+		target.names.put(name, address);
+		return address;
+	}
+
+	/** Resolve a given child of a given node. */
+	private void doChild(SimpleNode node, int childIndex) {
+		node.jjtGetChild(childIndex).jjtAccept(this, null);
+	}
+
+	/** Resolve all children of a given node. */
+	private Object doChildren(SimpleNode node, Object data) {
+		return node.childrenAccept(this, data);
+	}
+
+	/** Resolve a given child of a given node in a new block scope. */
+	private void doChildInScope(SimpleNode node, int childIndex) {
+		scope = new Scope(scope.frame, scope);
+		doChild(node, childIndex);
+		scope = scope.parent;
+	}
+
+	@Override
+	public Object visit(SimpleNode node, Object data) {
+		return doChildren(node, data);
+	}
+
+	@Override
+	public Object visit(ASTCode node, Object data) {
+		return doChildren(node, data);
+	}
+
+	/**************
+	 * Statements *
+	 **************/
+
+	@Override
+	public Object visit(ASTStatement node, Object data) {
+		return doChildren(node, data);
+	}
+
+	@Override
+	public Object visit(ASTCall node, Object data) {
+		return doChildren(node, data);
+	}
+
+	/**
+	 * Definitions are visible from the point of definition until the end of the
+	 * enclosing scope.
+	 */
+	@Override
+	public Object visit(ASTDefinition node, Object data) {
+		final SimpleNode initialisation = (SimpleNode) node.jjtGetChild(0);
+		final String name = Parser.getTokenOfChild(initialisation, 0);
+		node.address = define(scope, name, node.defType == "constant");
+		return doChildren(node, data);
+	}
+
+	/**
+	 * Declarations don't get removed at the end of a block, therefore they're
+	 * visible until the end of the enclosing function.
+	 */
+	@Override
+	public Object visit(ASTDeclaration node, Object data) {
+		final String name = Parser.getTokenOfChild(node, 0);
+		node.address = define(scope.frame.root, name, false);
+		return doChildren(node, data);
+	}
+
+	@Override
+	public Object visit(ASTAssignment node, Object data) {
+		node.address = scope.find(Parser.getTokenOfChild(node, 0));
+		return doChildren(node, data);
+	}
+
+	@Override
+	public Object visit(ASTFunctionDefinition node, Object data) {
+		pending.add(new PendingFunction(node, scope));
+		return data;
+	}
+
+	@Override
+	public Object visit(ASTBlock node, Object data) {
+		scope = new Scope(scope.frame, scope);
+		doChildren(node, data);
+		scope = scope.parent;
+		return data;
+	}
+
+	@Override
+	public Object visit(ASTIfStatement node, Object data) {
+		doChild(node, 0);
+		for (int i = 1; i < node.jjtGetNumChildren(); i++)
+			doChildInScope(node, i);
+		return data;
+	}
+
+	@Override
+	public Object visit(ASTForLoop node, Object data) {
+		scope = new Scope(scope.frame, scope);
+		doChild(node, 0); // Initialisation
+		doChild(node, 1); // Test
+		doChild(node, 2); // Update
+		doChildInScope(node, 3); // Body
+		scope = scope.parent;
+		return data;
+	}
+
+	@Override
+	public Object visit(ASTWhileLoop node, Object data) {
+		doChild(node, 0);
+		doChildInScope(node, 1);
+		return data;
+	}
+
+	@Override
+	public Object visit(ASTLog node, Object data) {
+		return doChildren(node, data);
+	}
+
+	@Override
+	public Object visit(ASTQuit node, Object data) {
+		return doChildren(node, data);
+	}
+
+	@Override
+	public Object visit(ASTProtoInvoke node, Object data) {
+		return doChildren(node, data);
+	}
+
+	@Override
+	public Object visit(ASTIncrementDecrement node, Object data) {
+		node.address = scope.find(Parser.getTokenOfChild(node, 0));
+		return doChildren(node, data);
+	}
+
+	@Override
+	public Object visit(ASTHttp node, Object data) {
+		return doChildren(node, data);
+	}
+
+	@Override
+	public Object visit(ASTFile node, Object data) {
+		return doChildren(node, data);
+	}
+
+	/******************
+	 * Sub-statements *
+	 ******************/
+
+	// Identifiers are either resolved by their parent, or they're object keys.
+	@Override
+	public Object visit(ASTIdentifier node, Object data) {
+		return data;
+	}
+
+	@Override
+	public Object visit(ASTConstInit node, Object data) {
+		node.address = scope.find(Parser.getTokenOfChild(node, 0));
+		return doChildren(node, data);
+	}
+
+	@Override
+	public Object visit(ASTArrayInit node, Object data) {
+		node.address = scope.find(Parser.getTokenOfChild(node, 0));
+		return doChildren(node, data);
+	}
+
+	@Override
+	public Object visit(ASTArgumentList node, Object data) {
+		return doChildren(node, data);
+	}
+
+	// Parameters are defined by resolveFunction().
+	@Override
+	public Object visit(ASTParameterList node, Object data) {
+		return data;
+	}
+
+	@Override
+	public Object visit(ASTFunctionBody node, Object data) {
+		return doChildren(node, data);
+	}
+
+	@Override
+	public Object visit(ASTReturnExpression node, Object data) {
+		return doChildren(node, data);
+	}
+
+	/***************
+	 * Expressions *
+	 ***************/
+
+	@Override
+	public Object visit(ASTOr node, Object data) {
+		return doChildren(node, data);
+	}
+
+	@Override
+	public Object visit(ASTAnd node, Object data) {
+		return doChildren(node, data);
+	}
+
+	@Override
+	public Object visit(ASTCompEqual node, Object data) {
+		return doChildren(node, data);
+	}
+
+	@Override
+	public Object visit(ASTCompNequal node, Object data) {
+		return doChildren(node, data);
+	}
+
+	@Override
+	public Object visit(ASTCompGTE node, Object data) {
+		return doChildren(node, data);
+	}
+
+	@Override
+	public Object visit(ASTCompLTE node, Object data) {
+		return doChildren(node, data);
+	}
+
+	@Override
+	public Object visit(ASTCompGT node, Object data) {
+		return doChildren(node, data);
+	}
+
+	@Override
+	public Object visit(ASTCompLT node, Object data) {
+		return doChildren(node, data);
+	}
+
+	@Override
+	public Object visit(ASTAdd node, Object data) {
+		return doChildren(node, data);
+	}
+
+	@Override
+	public Object visit(ASTSubtract node, Object data) {
+		return doChildren(node, data);
+	}
+
+	@Override
+	public Object visit(ASTTimes node, Object data) {
+		return doChildren(node, data);
+	}
+
+	@Override
+	public Object visit(ASTDivide node, Object data) {
+		return doChildren(node, data);
+	}
+
+	@Override
+	public Object visit(ASTModulo node, Object data) {
+		return doChildren(node, data);
+	}
+
+	@Override
+	public Object visit(ASTUnaryNot node, Object data) {
+		return doChildren(node, data);
+	}
+
+	@Override
+	public Object visit(ASTUnaryPlus node, Object data) {
+		return doChildren(node, data);
+	}
+
+	@Override
+	public Object visit(ASTUnaryMinus node, Object data) {
+		return doChildren(node, data);
+	}
+
+	@Override
+	public Object visit(ASTFunctionInvocation node, Object data) {
+		return doChildren(node, data);
+	}
+
+	@Override
+	public Object visit(ASTDereference node, Object data) {
+		node.address = scope.find(node.tokenValue);
+		return doChildren(node, data);
+	}
+
+	@Override
+	public Object visit(ASTGetArgs node, Object data) {
+		return data;
+	}
+
+	@Override
+	public Object visit(ASTRandom node, Object data) {
+		return doChildren(node, data);
+	}
+
+	@Override
+	public Object visit(ASTReflect node, Object data) {
+		return doChildren(node, data);
+	}
+
+	@Override
+	public Object visit(ASTValueReflectionCast node, Object data) {
+		return doChildren(node, data);
+	}
+
+	/************
+	 * Literals *
+	 ************/
+
+	@Override
+	public Object visit(ASTInteger node, Object data) {
+		return data;
+	}
+
+	@Override
+	public Object visit(ASTCharacter node, Object data) {
+		return data;
+	}
+
+	@Override
+	public Object visit(ASTRational node, Object data) {
+		return data;
+	}
+
+	@Override
+	public Object visit(ASTTrue node, Object data) {
+		return data;
+	}
+
+	@Override
+	public Object visit(ASTFalse node, Object data) {
+		return data;
+	}
+
+	@Override
+	public Object visit(ASTValueFunction node, Object data) {
+		pending.add(new PendingFunction(node, scope));
+		return data;
+	}
+
+	@Override
+	public Object visit(ASTValueObject node, Object data) {
+		return doChildren(node, data);
+	}
+
+	@Override
+	public Object visit(ASTValueList node, Object data) {
+		return doChildren(node, data);
+	}
+}
@@ -0,0 +1,60 @@
+package dev.amrw.clovelang.interpreter;
+
+/**
+ * Compile-time address of a variable, constant or parameter. It's assigned by
+ * the Resolver before execution, so that the Parser can reach the slot in the
+ * display without looking up the name at run-time.
+ *
+ * @author amrwc
+ */
+public class SlotAddress {
+	private final String name;
+	private final int depth;
+	private final int slot;
+	private final boolean isConstant;
+
+	// An address of the same name in an outer function, if there's one visible at
+	// the point of the definition. Clove doesn't allow shadowing, therefore it
+	// must be checked before defining this one.
+	private final SlotAddress shadows;
+
+	/** Ctor */
+	SlotAddress(String name, int depth, int slot, boolean isConstant,
+			SlotAddress shadows) {
+		this.name = name;
+		this.depth = depth;
+		this.slot = slot;
+		this.isConstant = isConstant;
+		this.shadows = shadows;
+	}
+
+	/** Get the name of the addressed variable. */
+	public String getName() {
+		return name;
+	}
+
+	/** Get the nesting level of the function that owns the slot. */
+	public int getDepth() {
+		return depth;
+	}
+
+	/** Get the slot number inside the function invocation. */
+	public int getSlot() {
+		return slot;
+	}
+
+	/** True if the addressed slot holds a constant. */
+	public boolean isConstant() {
+		return isConstant;
+	}
+
+	/** Get the shadowed address in an outer function. Return null if none. */
+	SlotAddress getShadows() {
+		return shadows;
+	}
+
+	@Override
+	public String toString() {
+		return name + "@" + depth + ":" + slot;
+	}
+}
@@ -0,0 +1,235 @@
+package dev.amrw.clovelang.interpreter;
+
+import dev.amrw.clovelang.utils.NumberUtils;
+import dev.amrw.clovelang.values.*;
+
+/**
+ * Self-specialising arithmetic and comparisons of the AST nodes. Every node
+ * records the types of the operands it has seen in its 'specialisation' field,
+ * and takes the fast path of that state from then on. When an operand doesn't
+ * fit the state, the node is rewritten to a more general one -- int, long,
+ * double and, finally, generic, which is the Value's own operation.
+ *
+ * The fast paths call NumberUtils' operations on primitives directly, so they
+ * give exactly the same Values as the generic path, without finding the kind
+ * of both operands. Comparisons can also give unboxed booleans, e.g. for the
+ * test of a loop, and nodes in the int state can work on unboxed integers.
+ *
+ * @author amrwc
+ */
+public final class Specialisation {
+	public static final int UNINITIALISED = 0;
+	public static final int INT = 1; // Both integers.
+	public static final int LONG = 2; // Integers or longs.
+	public static final int DOUBLE = 3; // Integers, longs, floats or doubles.
+	public static final int GENERIC = 4;
+
+	private Specialisation() {
+	}
+
+	/**
+	 * Rewrite the node, if the operands don't fit its current state, and return
+	 * the state.
+	 */
+	private static int specialise(BaseASTNode node, Value left, Value right) {
+		if (node.specialisation == GENERIC)
+			return GENERIC;
+
+		final int state = Math.max(stateOf(left), stateOf(right));
+		if (state > node.specialisation)
+			node.specialisation = state;
+		return node.specialisation;
+	}
+
+	private static int stateOf(Value value) {
+		if (value instanceof ValueInteger)
+			return INT;
+		if (value instanceof ValueLong)
+			return LONG;
+		if (value instanceof ValueDouble || value instanceof ValueFloat)
+			return DOUBLE;
+		return GENERIC;
+	}
+
+	private static int intOf(Value value) {
+		return ((ValueInteger) value).intValue();
+	}
+
+	private static long longOf(Value value) {
+		return (value instanceof ValueInteger) ? ((ValueInteger) value).intValue()
+				: ((ValueLong) value).longValue();
+	}
+
+	// Both operands are integers or longs, in a long or double state.
+	private static boolean isIntegral(Value left, Value right) {
+		return stateOf(left) != DOUBLE && stateOf(right) != DOUBLE;
+	}
+
+	public static Value add(BaseASTNode node, Value left, Value right) {
+		switch (specialise(node, left, right)) {
+		case INT:
+			return NumberUtils.add(intOf(left), intOf(right));
+		case LONG:
+			return NumberUtils.add(longOf(left), longOf(right));
+		case DOUBLE:
+			return isIntegral(left, right) ? NumberUtils.add(longOf(left), longOf(right))
+					: NumberUtils.add(left.doubleValue(), right.doubleValue());
+		default:
+			return left.add(right);
+		}
+	}
+
+	public static Value subtract(BaseASTNode node, Value left, Value right) {
+		switch (specialise(node, left, right)) {
+		case INT:
+			return NumberUtils.subtract(intOf(left), intOf(right));
+		case LONG:
+			return NumberUtils.subtract(longOf(left), longOf(right));
+		case DOUBLE:
+			return isIntegral(left, right)
+					? NumberUtils.subtract(longOf(left), longOf(right))
+					: NumberUtils.subtract(left.doubleValue(), right.doubleValue());
+		default:
+			return left.subtract(right);
+		}
+	}
+
+	public static Value mult(BaseASTNode node, Value left, Value right) {
+		switch (specialise(node, left, right)) {
+		case INT:
+			return NumberUtils.mult(intOf(left), intOf(right));
+		case LONG:
+			return NumberUtils.mult(longOf(left), longOf(right));
+		case DOUBLE:
+			return isIntegral(left, right) ? NumberUtils.mult(longOf(left), longOf(right))
+					: NumberUtils.mult(left.doubleValue(), right.doubleValue());
+		default:
+			return left.mult(right);
+		}
+	}
+
+	public static Value div(BaseASTNode node, Value left, Value right) {
+		switch (specialise(node, left, right)) {
+		case INT:
+			return NumberUtils.div(intOf(left), intOf(right));
+		case LONG:
+			return NumberUtils.div(longOf(left), longOf(right));
+		case DOUBLE:
+			return isIntegral(left, right) ? NumberUtils.div(longOf(left), longOf(right))
+					: NumberUtils.div(left.doubleValue(), right.doubleValue());
+		default:
+			return left.div(right);
+		}
+	}
+
+	public static Value mod(BaseASTNode node, Value left, Value right) {
+		switch (specialise(node, left, right)) {
+		case INT:
+			return NumberUtils.mod(intOf(left), intOf(right));
+		case LONG:
+			return NumberUtils.mod(longOf(left), longOf(right));
+		case DOUBLE:
+			return isIntegral(left, right) ? NumberUtils.mod(longOf(left), longOf(right))
+					: NumberUtils.mod(left.doubleValue(), right.doubleValue());
+		default:
+			return left.mod(right);
+		}
+	}
+
+	/** Result of an operation on unboxed integers that doesn't give an integer. */
+	public static final long NOT_INT = Long.MAX_VALUE;
+
+	/** True if the result of an operation on unboxed integers is an integer. */
+	public static boolean isInt(long result) {
+		return (int) result == result;
+	}
+
+	// Operations on unboxed integers, of the nodes in the int state. They're
+	// computed in long, so a result out of the integer range can be detected, and
+	// the node redone on Values.
+
+	public static long addInt(int left, int right) {
+		return (long) left + right;
+	}
+
+	public static long subtractInt(int left, int right) {
+		return (long) left - right;
+	}
+
+	public static long multInt(int left, int right) {
+		return (long) left * right;
+	}
+
+	public static long modInt(int left, int right) {
+		return (right != 0) ? left % right : NOT_INT;
+	}
+
+	// Comparison of the operands in a specialised state.
+	private static int compare(int state, Value left, Value right) {
+		if (state == INT)
+			return Integer.compare(intOf(left), intOf(right));
+		if (state == LONG || isIntegral(left, right))
+			return Long.compare(longOf(left), longOf(right));
+		return Double.compare(left.doubleValue(), right.doubleValue());
+	}
+
+	public static Value eq(BaseASTNode node, Value left, Value right) {
+		return ValueBoolean.of(isEqual(node, left, right));
+	}
+
+	public static Value neq(BaseASTNode node, Value left, Value right) {
+		return ValueBoolean.of(isNotEqual(node, left, right));
+	}
+
+	public static Value gte(BaseASTNode node, Value left, Value right) {
+		return ValueBoolean.of(isGreaterOrEqual(node, left, right));
+	}
+
+	public static Value lte(BaseASTNode node, Value left, Value right) {
+		return ValueBoolean.of(isLessOrEqual(node, left, right));
+	}
+
+	public static Value gt(BaseASTNode node, Value left, Value right) {
+		return ValueBoolean.of(isGreater(node, left, right));
+	}
+
+	public static Value lt(BaseASTNode node, Value left, Value right) {
+		return ValueBoolean.of(isLess(node, left, right));
+	}
+
+	public static boolean isEqual(BaseASTNode node, Value left, Value right) {
+		final int state = specialise(node, left, right);
+		return (state == GENERIC) ? ((ValueBoolean) left.eq(right)).booleanValue()
+				: compare(state, left, right) == 0;
+	}
+
+	public static boolean isNotEqual(BaseASTNode node, Value left, Value right) {
+		final int state = specialise(node, left, right);
+		return (state == GENERIC) ? ((ValueBoolean) left.neq(right)).booleanValue()
+				: compare(state, left, right) != 0;
+	}
+
+	public static boolean isGreaterOrEqual(BaseASTNode node, Value left, Value right) {
+		final int state = specialise(node, left, right);
+		return (state == GENERIC) ? ((ValueBoolean) left.gte(right)).booleanValue()
+				: compare(state, left, right) >= 0;
+	}
+
+	public static boolean isLessOrEqual(BaseASTNode node, Value left, Value right) {
+		final int state = specialise(node, left, right);
+		return (state == GENERIC) ? ((ValueBoolean) left.lte(right)).booleanValue()
+				: compare(state, left, right) <= 0;
+	}
+
+	public static boolean isGreater(BaseASTNode node, Value left, Value right) {
+		final int state = specialise(node, left, right);
+		return (state == GENERIC) ? ((ValueBoolean) left.gt(right)).booleanValue()
+				: compare(state, left, right) > 0;
+	}
+
+	public static boolean isLess(BaseASTNode node, Value left, Value right) {
+		final int state = specialise(node, left, right);
+		return (state == GENERIC) ? ((ValueBoolean) left.lt(right)).booleanValue()
+				: compare(state, left, right) < 0;
+	}
+}
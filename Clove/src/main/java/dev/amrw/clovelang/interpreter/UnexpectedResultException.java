@@ -0,0 +1,26 @@
+package dev.amrw.clovelang.interpreter;
+
+import dev.amrw.clovelang.values.Value;
+
+/**
+ * This exception is thrown when an expression, evaluated to an unboxed
+ * primitive, results in a Value of another type. It carries the Value, so that
+ * the caller can fall back to the boxed path.
+ * 
+ * @author amrwc
+ */
+public class UnexpectedResultException extends RuntimeException {
+	static final long serialVersionUID = 0;
+
+	private final Value result;
+
+	public UnexpectedResultException(Value result) {
+		super(null, null, false, false);
+		this.result = result;
+	}
+
+	/** Get the Value the expression resulted in. */
+	public Value getResult() {
+		return result;
+	}
+}
@@ -0,0 +1,167 @@
+package dev.amrw.clovelang.jit;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import dev.amrw.clovelang.interpreter.CompiledNode;
+import dev.amrw.clovelang.interpreter.Display;
+import dev.amrw.clovelang.interpreter.ExceptionSemantic;
+import dev.amrw.clovelang.interpreter.FunctionDefinition;
+import dev.amrw.clovelang.interpreter.FunctionInvocation;
+import dev.amrw.clovelang.interpreter.Parser;
+import dev.amrw.clovelang.interpreter.SlotAddress;
+import dev.amrw.clovelang.parser.ast.SimpleNode;
+import dev.amrw.clovelang.values.*;
+
+/**
+ * Superclass of the classes generated by the JitCompiler. It holds the state
+ * shared by the generated code, and the helpers that keep the semantics the
+ * same as in the Parser.
+ *
+ * @author amrwc
+ */
+abstract class JitCode implements CompiledNode {
+	private static final ValueInteger ONE = ValueInteger.valueOf(1);
+
+	protected final Parser parser;
+	protected final Display scope;
+	protected final Object[] k; // Constants referenced by the generated code.
+
+	JitCode(Parser parser, Display scope, Object[] constants) {
+		this.parser = parser;
+		this.scope = scope;
+		this.k = constants;
+	}
+
+	// Discard the value of an expression used as a statement.
+	protected static void discard(Value value) {
+	}
+
+	// Fake the null object with an empty String.
+	protected static Value orEmpty(Value value) {
+		return (value != null) ? value : new ValueString("");
+	}
+
+	// Test value of an if statement or a loop.
+	protected static boolean test(Value test, Object message) {
+		if (!(test instanceof ValueBoolean))
+			throw new ExceptionSemantic((String) message);
+		return ((ValueBoolean) test).getRawValue();
+	}
+
+	// Get the value of a variable or parameter. Throw if it's undefined.
+	protected final Value load(int depth, int slot, Object name) {
+		final Value value = scope.getValue(depth, slot);
+		if (value == null)
+			throw new ExceptionSemantic("Variable or parameter \"" + name + "\" is undefined.");
+		return value;
+	}
+
+	// Cache the value of a loop invariant in its slot.
+	protected final Value cache(int depth, int slot, Value value) {
+		scope.setValue(depth, slot, value);
+		return value;
+	}
+
+	// Assign a normal variable. Throw if it isn't defined at run-time.
+	protected final void assign(int depth, int slot, Object name, Value value) {
+		if (!scope.isDefined(depth, slot))
+			throw new ExceptionSemantic("Variable or constant \"" + name + "\" is undefined.");
+		scope.setValue(depth, slot, value);
+	}
+
+	protected final void define(Object address) {
+		if (scope.exists((SlotAddress) address))
+			throw new ExceptionSemantic("Variable or constant \""
+					+ ((SlotAddress) address).getName() + "\" already exists.");
+		scope.declare((SlotAddress) address);
+	}
+
+	protected final void declare(Object address) {
+		if (scope.exists((SlotAddress) address))
+			throw new ExceptionSemantic(
+					"Variable \"" + ((SlotAddress) address).getName() + "\" already exists.");
+		scope.declare((SlotAddress) address);
+	}
+
+	protected final void initialiseConstant(int depth, int slot, Value value) {
+		if (value == null)
+			throw new ExceptionSemantic(
+					"Right value of the constant's initialisation cannot resolve to null.");
+		scope.setValue(depth, slot, value);
+	}
+
+	protected static ValueArray newArray(Value capacity) {
+		return new ValueArray((int) capacity.getRawValue());
+	}
+
+	// Increment/decrement of a normal variable.
+	protected final Value incDec(int depth, int slot, Object name, Object operator) {
+		final Value value = scope.getValue(depth, slot);
+		if (value == null)
+			throw new ExceptionSemantic("Variable \"" + name + "\" is undefined.");
+
+		switch ((String) operator) {
+		case "pre++":
+			scope.setValue(depth, slot, value.add(ONE));
+			return scope.getValue(depth, slot);
+		case "pre--":
+			scope.setValue(depth, slot, value.subtract(ONE));
+			return scope.getValue(depth, slot);
+		case "post++":
+			scope.setValue(depth, slot, value.add(ONE));
+			return value;
+		case "post--":
+			scope.setValue(depth, slot, value.subtract(ONE));
+			return value;
+		default:
+			throw new ExceptionSemantic("Operator \"" + operator + "\" cannot be used on "
+					+ value + " and " + ONE + ".");
+		}
+	}
+
+	// Find the function called by its name in the given node.
+	protected final FunctionDefinition resolve(Object node, boolean needsReturn) {
+		return parser.resolveFunction((SimpleNode) node, needsReturn);
+	}
+
+	// Invoke the function, through the Parser, so that it's compiled once it's hot.
+	protected final Value call(FunctionDefinition fndef, Value... arguments) {
+		return parser.invoke(fndef, newInvocation(fndef, arguments));
+	}
+
+	// Make a tail call from the return expression of the compiled function.
+	protected final Value tailCall(Object caller, FunctionDefinition fndef,
+			Value... arguments) {
+		return parser.tailCall((FunctionDefinition) caller, fndef,
+				newInvocation(fndef, arguments));
+	}
+
+	private static FunctionInvocation newInvocation(FunctionDefinition fndef,
+			Value[] arguments) {
+		final FunctionInvocation newInvocation = fndef.newInvocation();
+		if (arguments.length == fndef.getParameterCount()) {
+			for (int i = 0; i < arguments.length; i++)
+				newInvocation.setArgument(i, arguments[i]);
+		} else {
+			for (final Value argument : arguments)
+				newInvocation.setArgument(argument);
+			newInvocation.checkArgumentCount();
+		}
+		return newInvocation;
+	}
+
+	protected static Value proto(Value value, Object protoFunc, Value... arguments) {
+		final ArrayList<Value> protoArgs = (arguments.length > 0)
+				? new ArrayList<Value>(Arrays.asList(arguments))
+				: null;
+		return value.execProto((String) protoFunc, protoArgs);
+	}
+
+	protected static ValueList list(Value... values) {
+		final ValueList valueList = new ValueList();
+		for (final Value value : values)
+			valueList.append(value);
+		return valueList;
+	}
+}
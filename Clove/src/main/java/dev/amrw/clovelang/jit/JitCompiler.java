@@ -0,0 +1,185 @@
+package dev.amrw.clovelang.jit;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.lang.invoke.MethodHandles;
+import java.net.URI;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+
+import dev.amrw.clovelang.interpreter.CompiledNode;
+import dev.amrw.clovelang.interpreter.Display;
+import dev.amrw.clovelang.interpreter.FunctionDefinition;
+import dev.amrw.clovelang.interpreter.Parser;
+import dev.amrw.clovelang.parser.ast.SimpleNode;
+
+/**
+ * A tier on top of the Parser, that compiles hot functions to JVM bytecode.
+ * Once a FunctionDefinition has been invoked THRESHOLD times, its body is
+ * generated as the Java source of a JitCode subclass, compiled in memory by
+ * the JDK's compiler, and loaded as a hidden class. HotSpot then optimises it
+ * like any other Java code.
+ *
+ * Functions using constructs the JIT doesn't compile, or a runtime without the
+ * JDK's compiler, keep being interpreted. Generated source that doesn't
+ * compile, or a class that can't be loaded, is a bug of the JIT, and throws.
+ *
+ * @author amrwc
+ */
+public class JitCompiler {
+	/** Number of invocations after which a function is compiled. */
+	public static final int THRESHOLD = 1000;
+
+	private static final String PACKAGE_NAME = JitCompiler.class.getPackageName();
+	private static final Class<?>[] CONSTRUCTOR_PARAMETERS = { Parser.class,
+			Display.class, Object[].class };
+
+	private final Parser parser;
+	private final Display scope;
+	private int classCount = 0;
+
+	// Compiled function bodies, shared by all FunctionDefinitions of the same node.
+	// Null if the body can't be compiled.
+	private final IdentityHashMap<SimpleNode, CompiledNode> functionBodies = new IdentityHashMap<SimpleNode, CompiledNode>();
+
+	public JitCompiler(Parser parser, Display scope) {
+		this.parser = parser;
+		this.scope = scope;
+	}
+
+	/**
+	 * Count an invocation of the function, and compile it once it's hot.
+	 */
+	public void countInvocation(FunctionDefinition fndef) {
+		if (fndef.countInvocation() != THRESHOLD)
+			return;
+
+		final SimpleNode bodyNode = fndef.getFunctionBody();
+		if (!functionBodies.containsKey(bodyNode))
+			functionBodies.put(bodyNode, compile(fndef));
+
+		final CompiledNode body = functionBodies.get(bodyNode);
+		if (body != null)
+			fndef.setCompiledBody(body);
+	}
+
+	/**
+	 * Compile the function into an instance of a hidden class. Return null if it
+	 * uses constructs the JIT doesn't compile, or if the JDK's compiler isn't
+	 * available.
+	 */
+	private CompiledNode compile(FunctionDefinition fndef) {
+		final JavaCompiler javac = ToolProvider.getSystemJavaCompiler();
+		if (javac == null)
+			return null;
+
+		final String className = "JitFunction" + classCount++;
+		final SourceGenerator generator = new SourceGenerator();
+		final String source;
+		try {
+			source = generator.generateClass(PACKAGE_NAME, className, fndef);
+		} catch (SourceGenerator.Unsupported e) {
+			return null;
+		}
+
+		final byte[] classFile = compileSource(javac, className, source);
+		try {
+			final MethodHandles.Lookup lookup = MethodHandles.lookup()
+					.defineHiddenClass(classFile, true);
+			return (CompiledNode) lookup.lookupClass()
+					.getDeclaredConstructor(CONSTRUCTOR_PARAMETERS)
+					.newInstance(parser, scope, generator.getConstants());
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("The JIT couldn't load the compiled function \""
+					+ fndef.getName() + "\".", e);
+		}
+	}
+
+	/**
+	 * Compile the source of a class in memory, and return its class file. Throw
+	 * with the compiler's diagnostics if it doesn't compile.
+	 */
+	private static byte[] compileSource(JavaCompiler javac, String className,
+			String source) {
+		final MemoryFileManager fileManager = new MemoryFileManager(
+				javac.getStandardFileManager(null, null, null));
+		final List<String> options = List.of("-classpath",
+				System.getProperty("java.class.path"), "-g:none", "-nowarn");
+		final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+		final boolean compiled = javac.getTask(new StringWriter(), fileManager,
+				diagnostics, options, null,
+				List.of(new SourceFile(PACKAGE_NAME + "." + className, source))).call();
+		if (!compiled || fileManager.getClassFile() == null) {
+			final StringBuilder message = new StringBuilder(
+					"The JIT generated source that doesn't compile:");
+			for (final Diagnostic<? extends JavaFileObject> diagnostic : diagnostics
+					.getDiagnostics())
+				message.append('\n').append(diagnostic);
+			throw new IllegalStateException(message.append('\n').append(source).toString());
+		}
+		return fileManager.getClassFile();
+	}
+
+	/** Java source held in memory. */
+	private static final class SourceFile extends SimpleJavaFileObject {
+		private final String source;
+
+		SourceFile(String className, String source) {
+			super(URI.create("string:///" + className.replace('.', '/')
+					+ JavaFileObject.Kind.SOURCE.extension), JavaFileObject.Kind.SOURCE);
+			this.source = source;
+		}
+
+		@Override
+		public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+			return source;
+		}
+	}
+
+	/** Class file written to memory. */
+	private static final class ClassFile extends SimpleJavaFileObject {
+		private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+		ClassFile(String className) {
+			super(URI.create("bytes:///" + className.replace('.', '/')
+					+ JavaFileObject.Kind.CLASS.extension), JavaFileObject.Kind.CLASS);
+		}
+
+		@Override
+		public OutputStream openOutputStream() {
+			return bytes;
+		}
+	}
+
+	/** File manager that keeps the compiled class in memory. */
+	private static final class MemoryFileManager
+			extends ForwardingJavaFileManager<JavaFileManager> {
+		private ClassFile classFile = null;
+
+		MemoryFileManager(JavaFileManager fileManager) {
+			super(fileManager);
+		}
+
+		@Override
+		public JavaFileObject getJavaFileForOutput(Location location, String className,
+				JavaFileObject.Kind kind, FileObject sibling) {
+			classFile = new ClassFile(className);
+			return classFile;
+		}
+
+		byte[] getClassFile() {
+			return (classFile != null) ? classFile.bytes.toByteArray() : null;
+		}
+	}
+}
@@ -0,0 +1,549 @@
+package dev.amrw.clovelang.jit;
+
+import java.util.ArrayList;
+
+import dev.amrw.clovelang.interpreter.FunctionDefinition;
+import dev.amrw.clovelang.interpreter.Parser;
+import dev.amrw.clovelang.interpreter.SlotAddress;
+import dev.amrw.clovelang.parser.ast.*;
+import dev.amrw.clovelang.utils.NumberUtils;
+import dev.amrw.clovelang.values.*;
+
+/**
+ * Generates the Java source of a JitCode subclass that executes the body and
+ * the return expression of a function.
+ *
+ * Statements are generated as Java statements, and expressions as Java
+ * expressions of type Value. Values, names and nodes are kept in the constant
+ * pool instead of being written out as literals. The constructs the JIT doesn't
+ * compile -- reflection, builtins with side effects, nested functions,
+ * dereferences, etc. -- throw Unsupported, and the function stays interpreted.
+ *
+ * @author amrwc
+ */
+final class SourceGenerator implements CloveVisitor {
+	private final ArrayList<Object> constants = new ArrayList<Object>();
+	private int temporaries = 0;
+
+	/** Thrown for a construct the JIT doesn't compile. */
+	static final class Unsupported extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		Unsupported(SimpleNode node) {
+			super(node.toString(), null, false, false);
+		}
+	}
+
+	/** Get the constants referenced by the generated source. */
+	Object[] getConstants() {
+		return constants.toArray();
+	}
+
+	/**
+	 * Generate the source of a class with the given name, that executes the
+	 * given function.
+	 */
+	String generateClass(String packageName, String className, FunctionDefinition fndef) {
+		final SimpleNode body = fndef.getFunctionBody();
+		final StringBuilder source = new StringBuilder();
+		source.append("package ").append(packageName).append(";\n\n")
+				.append("import dev.amrw.clovelang.interpreter.*;\n")
+				.append("import dev.amrw.clovelang.values.*;\n\n")
+				.append("final class ").append(className).append(" extends JitCode {\n")
+				.append(className)
+				.append("(Parser parser, Display scope, Object[] k) {\n")
+				.append("super(parser, scope, k);\n}\n\n")
+				.append("@Override\npublic Value execute() {\n")
+				.append(statements(body))
+				.append("final Value result = ")
+				.append(fndef.hasReturn() ? returnExpression(fndef) : "null")
+				.append(";\n")
+				.append(cleanup(body, null))
+				.append("return result;\n}\n}\n");
+		return source.toString();
+	}
+
+	// Generate the return expression of the function. A call of a function by its
+	// name is made as a tail call, like in the Parser.
+	private String returnExpression(FunctionDefinition fndef) {
+		final SimpleNode returnExpression = fndef.getFunctionReturnExpression();
+		final SimpleNode node = (SimpleNode) returnExpression.jjtGetChild(0);
+		if (!(node instanceof ASTFunctionInvocation)
+				|| node.jjtGetChild(0).jjtGetNumChildren() > 0)
+			return expression(returnExpression, 0);
+
+		return "tailCall(" + constant(fndef) + ", resolve(" + constant(node) + ", true)"
+				+ arguments((SimpleNode) node.jjtGetChild(1), 0) + ")";
+	}
+
+	// Add a value to the constant pool, and return the expression reading it.
+	private String constant(Object value) {
+		constants.add(value);
+		return "k[" + (constants.size() - 1) + "]";
+	}
+
+	// Generate a given child of the given node.
+	private String generate(SimpleNode node, int childIndex) {
+		return (String) node.jjtGetChild(childIndex).jjtAccept(this, null);
+	}
+
+	// Generate a given child of the given node as an expression.
+	private String expression(SimpleNode node, int childIndex) {
+		return "(" + generate(node, childIndex) + ")";
+	}
+
+	// Generate the children of the given node as a list of arguments.
+	private String arguments(SimpleNode node, int from) {
+		final StringBuilder arguments = new StringBuilder();
+		for (int i = from; i < node.jjtGetNumChildren(); i++)
+			arguments.append(", ").append(expression(node, i));
+		return arguments.toString();
+	}
+
+	/**
+	 * Generate a given child of the given node as a statement. Expressions used
+	 * as statements are discarded.
+	 */
+	private String statement(SimpleNode node, int childIndex) {
+		final Node child = node.jjtGetChild(childIndex);
+		if (child instanceof ASTStatement || child instanceof ASTCall
+				|| child instanceof ASTDefinition || child instanceof ASTDeclaration
+				|| child instanceof ASTAssignment || child instanceof ASTBlock
+				|| child instanceof ASTIfStatement || child instanceof ASTForLoop
+				|| child instanceof ASTWhileLoop || child instanceof ASTLog)
+			return generate(node, childIndex);
+		return "discard(" + generate(node, childIndex) + ");\n";
+	}
+
+	// Generate all children of the given node as statements.
+	private String statements(SimpleNode node) {
+		final StringBuilder statements = new StringBuilder();
+		for (int i = 0; i < node.jjtGetNumChildren(); i++)
+			statements.append(statement(node, i));
+		return statements.toString();
+	}
+
+	/**
+	 * Remove the definitions of the given scope, the same ones as
+	 * Parser.removeDefinitions().
+	 */
+	private String cleanup(SimpleNode node, SimpleNode init) {
+		final StringBuilder cleanup = new StringBuilder();
+		for (final SimpleNode definition : Parser.collectDefinitions(node, init)) {
+			if (definition instanceof ASTDefinition)
+				cleanup.append("scope.setValue(").append(slot(definition.address))
+						.append(", null);\n");
+			else
+				cleanup.append("scope.removeFunction((String) ")
+						.append(constant(Parser.getTokenOfChild(definition, 0)))
+						.append(");\n");
+		}
+		return cleanup.toString();
+	}
+
+	// Depth and slot of an address, as arguments.
+	private String slot(SlotAddress address) {
+		return address.getDepth() + ", " + address.getSlot();
+	}
+
+	private String test(SimpleNode node, int childIndex, String statement) {
+		final SimpleNode child = (SimpleNode) node.jjtGetChild(childIndex);
+		final String comparison = comparison(child);
+		if (comparison != null)
+			return specialised(child, comparison);
+
+		return "test(" + generate(node, childIndex) + ", "
+				+ constant("The test expression of " + statement + " must be boolean.")
+				+ ")";
+	}
+
+	// Specialisation's comparison that tests the node without creating a Value, or
+	// null if the node isn't a comparison.
+	private static String comparison(SimpleNode node) {
+		if (node instanceof ASTCompEqual)
+			return "isEqual";
+		if (node instanceof ASTCompNequal)
+			return "isNotEqual";
+		if (node instanceof ASTCompGTE)
+			return "isGreaterOrEqual";
+		if (node instanceof ASTCompLTE)
+			return "isLessOrEqual";
+		if (node instanceof ASTCompGT)
+			return "isGreater";
+		if (node instanceof ASTCompLT)
+			return "isLess";
+		return null;
+	}
+
+	private String binary(SimpleNode node, String operation) {
+		return expression(node, 0) + "." + operation + expression(node, 1);
+	}
+
+	// Arithmetic or comparison that keeps specialising the node, like the Parser.
+	private String specialised(SimpleNode node, String operation) {
+		return "Specialisation." + operation + "((BaseASTNode) " + constant(node) + ", "
+				+ expression(node, 0) + ", " + expression(node, 1) + ")";
+	}
+
+	private String unary(SimpleNode node, String operation) {
+		return expression(node, 0) + "." + operation + "()";
+	}
+
+	// Value of a literal, as it's cached by the Parser.
+	private String literal(Value value) {
+		return "((Value) " + constant(value) + ")";
+	}
+
+	@Override
+	public Object visit(SimpleNode node, Object data) {
+		throw new Unsupported(node);
+	}
+
+	@Override
+	public Object visit(ASTCode node, Object data) {
+		throw new Unsupported(node);
+	}
+
+	/**************
+	 * Statements *
+	 **************/
+
+	@Override
+	public Object visit(ASTStatement node, Object data) {
+		return statements(node);
+	}
+
+	@Override
+	public Object visit(ASTCall node, Object data) {
+		return "discard(" + invocation(node, false) + ");\n";
+	}
+
+	/**
+	 * Call of a function by its name. The function is resolved before its
+	 * arguments are evaluated, the same way the Parser does it.
+	 */
+	private String invocation(SimpleNode node, boolean needsReturn) {
+		final SimpleNode fnnameNode = (SimpleNode) node.jjtGetChild(0);
+		if (fnnameNode.jjtGetNumChildren() > 0)
+			throw new Unsupported(node);
+
+		return "call(resolve(" + constant(node) + ", " + needsReturn + ")"
+				+ arguments((SimpleNode) node.jjtGetChild(1), 0) + ")";
+	}
+
+	@Override
+	public Object visit(ASTDefinition node, Object data) {
+		return "define(" + constant(node.address) + ");\n" + statement(node, 0);
+	}
+
+	@Override
+	public Object visit(ASTDeclaration node, Object data) {
+		if (node.defType == "constant")
+			throw new Unsupported(node);
+
+		final String declaration = "declare(" + constant(node.address) + ");\n";
+		if (node.isArrayWithCap)
+			return declaration + "scope.setValue(" + slot(node.address) + ", newArray("
+					+ generate(node, 1) + "));\n";
+		if (node.isArrayDeclaration)
+			return declaration + "scope.setValue(" + slot(node.address)
+					+ ", new ValueArray(0));\n";
+		return declaration;
+	}
+
+	@Override
+	public Object visit(ASTAssignment node, Object data) {
+		final SlotAddress address = node.address;
+		final int numChildren = node.jjtGetNumChildren();
+		if (address == null || address.isConstant() || numChildren > 2)
+			throw new Unsupported(node);
+
+		final String right = "orEmpty(" + generate(node, numChildren - 1) + ")";
+		final String name = constant(Parser.getTokenOfChild(node, 0));
+		if (node.shorthandOperator == null)
+			return "assign(" + slot(address) + ", " + name + ", " + right + ");\n";
+
+		// The right value is evaluated before the variable is read.
+		final String temporary = "t" + temporaries++;
+		return "{\nfinal Value " + temporary + " = " + right + ";\n" + "assign("
+				+ slot(address) + ", " + name + ", Parser.doShorthand((String) "
+				+ constant(node.shorthandOperator) + ", load(" + slot(address) + ", "
+				+ name + "), " + temporary + "));\n}\n";
+	}
+
+	@Override
+	public Object visit(ASTFunctionDefinition node, Object data) {
+		throw new Unsupported(node);
+	}
+
+	@Override
+	public Object visit(ASTBlock node, Object data) {
+		return "{\n" + statements(node) + cleanup(node, null) + "}\n";
+	}
+
+	@Override
+	public Object visit(ASTIfStatement node, Object data) {
+		return "if (" + test(node, 0, "an if statement") + ") {\n" + statement(node, 1)
+				+ "}" + (node.ifHasElse ? " else {\n" + statement(node, 2) + "}" : "")
+				+ "\n" + cleanup(node, null);
+	}
+
+	@Override
+	public Object visit(ASTForLoop node, Object data) {
+		return statement(node, 0) + "while (" + test(node, 1, "a for loop") + ") {\n"
+				+ statement(node, 3) + cleanup(node, null) + statement(node, 2) + "}\n"
+				+ cleanup(node, (SimpleNode) node.jjtGetChild(0));
+	}
+
+	@Override
+	public Object visit(ASTWhileLoop node, Object data) {
+		return "while (" + test(node, 0, "a while loop") + ") {\n" + statement(node, 1)
+				+ cleanup(node, null) + "}\n";
+	}
+
+	@Override
+	public Object visit(ASTLog node, Object data) {
+		final StringBuilder log = new StringBuilder();
+		for (int i = 0; i < node.jjtGetNumChildren(); i++)
+			log.append("System.out.print(").append(generate(node, i)).append(");\n");
+		return log.append("System.out.println();\n").toString();
+	}
+
+	@Override
+	public Object visit(ASTQuit node, Object data) {
+		throw new Unsupported(node);
+	}
+
+	@Override
+	public Object visit(ASTProtoInvoke node, Object data) {
+		return "proto(" + expression(node, 0) + ", " + constant(node.tokenValue)
+				+ arguments(node, 1) + ")";
+	}
+
+	@Override
+	public Object visit(ASTIncrementDecrement node, Object data) {
+		if (node.address == null || node.jjtGetNumChildren() > 1)
+			throw new Unsupported(node);
+
+		return "incDec(" + slot(node.address) + ", "
+				+ constant(Parser.getTokenOfChild(node, 0)) + ", "
+				+ constant(node.shorthandOperator) + ")";
+	}
+
+	@Override
+	public Object visit(ASTHttp node, Object data) {
+		throw new Unsupported(node);
+	}
+
+	@Override
+	public Object visit(ASTFile node, Object data) {
+		throw new Unsupported(node);
+	}
+
+	/******************
+	 * Sub-statements *
+	 ******************/
+
+	@Override
+	public Object visit(ASTIdentifier node, Object data) {
+		throw new Unsupported(node);
+	}
+
+	@Override
+	public Object visit(ASTConstInit node, Object data) {
+		return "initialiseConstant(" + slot(node.address) + ", " + generate(node, 1)
+				+ ");\n";
+	}
+
+	@Override
+	public Object visit(ASTArrayInit node, Object data) {
+		throw new Unsupported(node);
+	}
+
+	@Override
+	public Object visit(ASTArgumentList node, Object data) {
+		throw new Unsupported(node);
+	}
+
+	@Override
+	public Object visit(ASTParameterList node, Object data) {
+		throw new Unsupported(node);
+	}
+
+	@Override
+	public Object visit(ASTFunctionBody node, Object data) {
+		throw new Unsupported(node);
+	}
+
+	@Override
+	public Object visit(ASTReturnExpression node, Object data) {
+		throw new Unsupported(node);
+	}
+
+	/***************
+	 * Expressions *
+	 ***************/
+
+	@Override
+	public Object visit(ASTOr node, Object data) {
+		return binary(node, "or");
+	}
+
+	@Override
+	public Object visit(ASTAnd node, Object data) {
+		return binary(node, "and");
+	}
+
+	@Override
+	public Object visit(ASTCompEqual node, Object data) {
+		return specialised(node, "eq");
+	}
+
+	@Override
+	public Object visit(ASTCompNequal node, Object data) {
+		return specialised(node, "neq");
+	}
+
+	@Override
+	public Object visit(ASTCompGTE node, Object data) {
+		return specialised(node, "gte");
+	}
+
+	@Override
+	public Object visit(ASTCompLTE node, Object data) {
+		return specialised(node, "lte");
+	}
+
+	@Override
+	public Object visit(ASTCompGT node, Object data) {
+		return specialised(node, "gt");
+	}
+
+	@Override
+	public Object visit(ASTCompLT node, Object data) {
+		return specialised(node, "lt");
+	}
+
+	@Override
+	public Object visit(ASTAdd node, Object data) {
+		return specialised(node, "add");
+	}
+
+	@Override
+	public Object visit(ASTSubtract node, Object data) {
+		return specialised(node, "subtract");
+	}
+
+	@Override
+	public Object visit(ASTTimes node, Object data) {
+		return specialised(node, "mult");
+	}
+
+	@Override
+	public Object visit(ASTDivide node, Object data) {
+		return specialised(node, "div");
+	}
+
+	@Override
+	public Object visit(ASTModulo node, Object data) {
+		return specialised(node, "mod");
+	}
+
+	@Override
+	public Object visit(ASTUnaryNot node, Object data) {
+		return unary(node, "not");
+	}
+
+	@Override
+	public Object visit(ASTUnaryPlus node, Object data) {
+		return unary(node, "unary_plus");
+	}
+
+	@Override
+	public Object visit(ASTUnaryMinus node, Object data) {
+		return unary(node, "unary_minus");
+	}
+
+	@Override
+	public Object visit(ASTFunctionInvocation node, Object data) {
+		return invocation(node, true);
+	}
+
+	@Override
+	public Object visit(ASTDereference node, Object data) {
+		if (node.invariant != null) { // Loop invariant cached in the slot on the first read.
+			final String value = "scope.getValue(" + slot(node.address) + ")";
+			return "(" + value + " != null ? " + value + " : cache(" + slot(node.address)
+					+ ", " + node.invariant.jjtAccept(this, null) + "))";
+		}
+		if (node.address == null || node.jjtGetNumChildren() > 0)
+			throw new Unsupported(node);
+
+		return "load(" + slot(node.address) + ", " + constant(node.tokenValue) + ")";
+	}
+
+	@Override
+	public Object visit(ASTGetArgs node, Object data) {
+		throw new Unsupported(node);
+	}
+
+	@Override
+	public Object visit(ASTRandom node, Object data) {
+		return "Builtins.random(" + generate(node, 0) + ", " + generate(node, 1) + ")";
+	}
+
+	@Override
+	public Object visit(ASTReflect node, Object data) {
+		throw new Unsupported(node);
+	}
+
+	@Override
+	public Object visit(ASTValueReflectionCast node, Object data) {
+		throw new Unsupported(node);
+	}
+
+	/************
+	 * Literals *
+	 ************/
+
+	@Override
+	public Object visit(ASTInteger node, Object data) {
+		return literal(NumberUtils.tryInt(node.tokenValue));
+	}
+
+	@Override
+	public Object visit(ASTCharacter node, Object data) {
+		return literal(ValueString.stripDelimited(node.tokenValue));
+	}
+
+	@Override
+	public Object visit(ASTRational node, Object data) {
+		return literal(NumberUtils.tryFloat(node.tokenValue));
+	}
+
+	@Override
+	public Object visit(ASTTrue node, Object data) {
+		return literal(ValueBoolean.TRUE);
+	}
+
+	@Override
+	public Object visit(ASTFalse node, Object data) {
+		return literal(ValueBoolean.FALSE);
+	}
+
+	@Override
+	public Object visit(ASTValueFunction node, Object data) {
+		throw new Unsupported(node);
+	}
+
+	@Override
+	public Object visit(ASTValueObject node, Object data) {
+		throw new Unsupported(node);
+	}
+
+	@Override
+	public Object visit(ASTValueList node, Object data) {
+		final String values = arguments(node, 0);
+		return "list(" + (values.isEmpty() ? "" : values.substring(2)) + ")";
+	}
+}
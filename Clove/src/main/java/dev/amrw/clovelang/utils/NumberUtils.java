@@ -14,6 +14,9 @@ import dev.amrw.clovelang.values.ValueReflection;
  * @author amrwc
  */
 public class NumberUtils {
+	// 2^63, the smallest double that's too big for a long.
+	private static final double LONG_LIMIT = 0x1p63;
+
 	/**
 	 * Checks whether the argument is of any number type.
 	 * 
@@ -88,25 +91,25 @@ public class NumberUtils {
 	public static Value tryInt(double v) {
 		final double floored = Math.floor(v);
 
-		if ((v == floored) && !Double.isInfinite(v))
+		if ((v == floored) && v >= Long.MIN_VALUE && v < LONG_LIMIT)
 			return tryInt((long) floored);
 		else
 			return new ValueDouble(v);
 	}
 
 	/**
-	 * Tries to parse a float value to a ValueInteger. If it's impossible, returns a
-	 * ValueFloat.
+	 * Tries to parse a float value to a ValueInteger or ValueLong. If it's
+	 * impossible, returns a ValueFloat.
 	 * 
 	 * @read https://stackoverflow.com/a/9898528/10620237
 	 * @param {float} v
-	 * @returns {ValueInteger/ValueFloat} parsed Value-type
+	 * @returns {ValueInteger/ValueLong/ValueFloat} parsed Value-type
 	 */
 	public static Value tryInt(float v) {
 		final double floored = Math.floor(v);
 
-		if ((v == floored) && !Float.isInfinite(v))
-			return new ValueInteger((int) floored);
+		if ((v == floored) && v >= Long.MIN_VALUE && v < LONG_LIMIT)
+			return tryInt((long) floored);
 		else
 			return new ValueFloat(v);
 	}
@@ -120,7 +123,7 @@ public class NumberUtils {
 	 */
 	public static Value tryInt(long v) {
 		if ((int) v == v)
-			return new ValueInteger((int) v);
+			return ValueInteger.valueOf((int) v);
 		else
 			return new ValueLong(v);
 	}
@@ -132,7 +135,7 @@ public class NumberUtils {
 	 * @returns {ValueInteger}
 	 */
 	public static Value tryInt(int v) {
-		return new ValueInteger(v);
+		return ValueInteger.valueOf(v);
 	}
 
 	/**
@@ -146,7 +149,7 @@ public class NumberUtils {
 	 */
 	public static Value tryInt(String s) {
 		try {
-			return new ValueInteger(Integer.parseInt(s));
+			return ValueInteger.valueOf(Integer.parseInt(s));
 		} catch (final NumberFormatException e) {
 			return new ValueLong(Long.parseLong(s));
 		}
@@ -171,46 +174,271 @@ public class NumberUtils {
 				: new ValueDouble(vDouble);
 	}
 
+	// Kinds of numbers, in the order they're widened to. Floats are widened to
+	// doubles, like the results of operations on them always were.
+	private static final int INT = 0;
+	private static final int LONG = 1;
+	private static final int DOUBLE = 2;
+
+	/**
+	 * Gets the Number held by a number-Value.
+	 * 
+	 * @param {Value} v
+	 * @returns {Number} the raw number
+	 */
+	private static Number toNumber(Value v) {
+		final Object raw = v.getRawValue();
+		return (raw instanceof ValueReflection) ? toNumber((ValueReflection) raw)
+				: (Number) raw;
+	}
+
+	/**
+	 * Gets the kind of a number-Value. Bytes and shorts are ints, and any other
+	 * Number, e.g. a float or a reflected BigDecimal, is a double.
+	 * 
+	 * @param {Value} v
+	 * @returns {int} kind of the number
+	 */
+	private static int kindOf(Value v) {
+		if (v instanceof ValueInteger)
+			return INT;
+		if (v instanceof ValueLong)
+			return LONG;
+		if (v instanceof ValueFloat || v instanceof ValueDouble)
+			return DOUBLE;
+
+		final Number n = toNumber(v);
+		if (n instanceof Integer || n instanceof Short || n instanceof Byte)
+			return INT;
+		if (n instanceof Long)
+			return LONG;
+		return DOUBLE;
+	}
+
+	/**
+	 * Gets the kind both operands are widened to.
+	 * 
+	 * @param {Value} v1
+	 * @param {Value} v2
+	 * @returns {int} kind of the operation
+	 */
+	private static int kindOf(Value v1, Value v2) {
+		return Math.max(kindOf(v1), kindOf(v2));
+	}
+
+	private static int intOf(Value v) {
+		return (v instanceof ValueInteger) ? ((ValueInteger) v).intValue()
+				: toNumber(v).intValue();
+	}
+
+	private static long longOf(Value v) {
+		if (v instanceof ValueInteger)
+			return ((ValueInteger) v).intValue();
+		if (v instanceof ValueLong)
+			return ((ValueLong) v).longValue();
+		return toNumber(v).longValue();
+	}
+
+	private static double doubleOf(Value v) {
+		return (v instanceof ValueReflection) ? toNumber(v).doubleValue()
+				: v.doubleValue();
+	}
+
+	// An operand of arithmetic that's a reflected number is parsed from its
+	// string, as it always was, so a reflected 1.62f is 1.62 rather than the float
+	// widened to 1.6200000047683716.
+	private static double operandOf(Value v) {
+		return v.doubleValue();
+	}
+
 	/**
-	 * Does an arithmetic operation chosen by the 'operation' parameter on two
-	 * Values, and returns the correct Value.
+	 * Checks that the right operand of an operation is a number.
 	 * 
 	 * @param {Value}  v1
 	 * @param {String} operation
 	 * @param {Value}  v2
-	 * @returns {Value} outcome in the correct Value-type
 	 */
-	public static Value doOperation(Value v1, String operation, Value v2) {
+	private static void checkOperand(Value v1, String operation, Value v2) {
 		if (!isNumber(v2.getRawValue()))
 			throw new ExceptionSemantic(
 					"Cannot do operation '" + operation + "' on '" + v1.getName() + " ("
 							+ v1 + ")' and '" + v2.getName() + " (" + v2 + ")'.");
+	}
 
-		switch (operation) {
-		case "add":
-			return tryInt(v1.doubleValue() + v2.doubleValue());
-
-		case "subtract":
-			return tryInt(v1.doubleValue() - v2.doubleValue());
+	/**
+	 * Adds two number-Values, in the kind both of them are widened to.
+	 * 
+	 * @param {Value} v1
+	 * @param {Value} v2
+	 * @returns {Value} outcome in the correct Value-type
+	 */
+	public static Value add(Value v1, Value v2) {
+		checkOperand(v1, "add", v2);
+		switch (kindOf(v1, v2)) {
+		case INT:
+			return add(intOf(v1), intOf(v2));
+		case LONG:
+			return add(longOf(v1), longOf(v2));
+		default:
+			return add(operandOf(v1), operandOf(v2));
+		}
+	}
 
-		case "mult":
-			return tryInt(v1.doubleValue() * v2.doubleValue());
+	/**
+	 * Subtracts two number-Values, in the kind both of them are widened to.
+	 * 
+	 * @param {Value} v1
+	 * @param {Value} v2
+	 * @returns {Value} outcome in the correct Value-type
+	 */
+	public static Value subtract(Value v1, Value v2) {
+		checkOperand(v1, "subtract", v2);
+		switch (kindOf(v1, v2)) {
+		case INT:
+			return subtract(intOf(v1), intOf(v2));
+		case LONG:
+			return subtract(longOf(v1), longOf(v2));
+		default:
+			return subtract(operandOf(v1), operandOf(v2));
+		}
+	}
 
-		case "div":
-			return tryInt(v1.doubleValue() / v2.doubleValue());
+	/**
+	 * Multiplies two number-Values, in the kind both of them are widened to.
+	 * 
+	 * @param {Value} v1
+	 * @param {Value} v2
+	 * @returns {Value} outcome in the correct Value-type
+	 */
+	public static Value mult(Value v1, Value v2) {
+		checkOperand(v1, "mult", v2);
+		switch (kindOf(v1, v2)) {
+		case INT:
+			return mult(intOf(v1), intOf(v2));
+		case LONG:
+			return mult(longOf(v1), longOf(v2));
+		default:
+			return mult(operandOf(v1), operandOf(v2));
+		}
+	}
 
-		case "mod":
-			return tryInt(v1.doubleValue() % v2.doubleValue());
+	/**
+	 * Divides two number-Values, in the kind both of them are widened to.
+	 * 
+	 * @param {Value} v1
+	 * @param {Value} v2
+	 * @returns {Value} outcome in the correct Value-type
+	 */
+	public static Value div(Value v1, Value v2) {
+		checkOperand(v1, "div", v2);
+		switch (kindOf(v1, v2)) {
+		case INT:
+			return div(intOf(v1), intOf(v2));
+		case LONG:
+			return div(longOf(v1), longOf(v2));
+		default:
+			return div(operandOf(v1), operandOf(v2));
+		}
+	}
 
+	/**
+	 * Gets the remainder of two number-Values, in the kind both of them are
+	 * widened to.
+	 * 
+	 * @param {Value} v1
+	 * @param {Value} v2
+	 * @returns {Value} outcome in the correct Value-type
+	 */
+	public static Value mod(Value v1, Value v2) {
+		checkOperand(v1, "mod", v2);
+		switch (kindOf(v1, v2)) {
+		case INT:
+			return mod(intOf(v1), intOf(v2));
+		case LONG:
+			return mod(longOf(v1), longOf(v2));
 		default:
-			throw new ExceptionSemantic(
-					"Cannot do operation '" + operation + "' on '" + v1.getName() + " ("
-							+ v1 + ")' and '" + v2.getName() + " (" + v2 + ")'.");
+			return mod(operandOf(v1), operandOf(v2));
 		}
 	}
 
+	/*
+	 * Operations on primitives. Ints overflow to longs and longs overflow to
+	 * doubles, like Math.addExact() would detect. Division of integers is exact if
+	 * the divisor divides the dividend, and gives a double otherwise.
+	 */
+
+	public static Value add(int a, int b) {
+		return tryInt((long) a + b);
+	}
+
+	public static Value add(long a, long b) {
+		final long result = a + b;
+		return (((a ^ result) & (b ^ result)) < 0) ? tryInt((double) a + (double) b)
+				: tryInt(result);
+	}
+
+	public static Value add(double a, double b) {
+		return tryInt(a + b);
+	}
+
+	public static Value subtract(int a, int b) {
+		return tryInt((long) a - b);
+	}
+
+	public static Value subtract(long a, long b) {
+		final long result = a - b;
+		return (((a ^ b) & (a ^ result)) < 0) ? tryInt((double) a - (double) b)
+				: tryInt(result);
+	}
+
+	public static Value subtract(double a, double b) {
+		return tryInt(a - b);
+	}
+
+	public static Value mult(int a, int b) {
+		return tryInt((long) a * b);
+	}
+
+	public static Value mult(long a, long b) {
+		final long result = a * b;
+		return (Math.multiplyHigh(a, b) != (result >> 63))
+				? tryInt((double) a * (double) b)
+				: tryInt(result);
+	}
+
+	public static Value mult(double a, double b) {
+		return tryInt(a * b);
+	}
+
+	public static Value div(int a, int b) {
+		return (b != 0 && a % b == 0) ? tryInt((long) a / b) : tryInt((double) a / b);
+	}
+
+	public static Value div(long a, long b) {
+		return (b != 0 && a % b == 0 && !(a == Long.MIN_VALUE && b == -1))
+				? tryInt(a / b)
+				: tryInt((double) a / (double) b);
+	}
+
+	public static Value div(double a, double b) {
+		return tryInt(a / b);
+	}
+
+	public static Value mod(int a, int b) {
+		return (b != 0) ? tryInt(a % b) : tryInt((double) a % b);
+	}
+
+	public static Value mod(long a, long b) {
+		return (b != 0) ? tryInt(a % b) : tryInt((double) a % b);
+	}
+
+	public static Value mod(double a, double b) {
+		return tryInt(a % b);
+	}
+
 	/**
-	 * Compares two Values that are first parsed to Double.
+	 * Compares two number-Values. Integers are compared exactly, and any other
+	 * numbers as doubles.
 	 * 
 	 * @param {Value} v1
 	 * @param {Value} v2
@@ -225,8 +453,68 @@ public class NumberUtils {
 					+ v1.getRawValue() + ")' and '" + v2.getName() + " ("
 					+ v2.getRawValue() + ")'.");
 
-		final double v1Double = Double.parseDouble(v1.stringValue());
-		final double v2Double = Double.parseDouble(v2.stringValue());
-		return Double.compare(v1Double, v2Double);
+		return (kindOf(v1, v2) <= LONG) ? Long.compare(longOf(v1), longOf(v2))
+				: Double.compare(doubleOf(v1), doubleOf(v2));
+	}
+
+	/**
+	 * Tests two number-Values for equality as keys, e.g. in a ValueMap, whatever
+	 * their types, so that 1, 1L and 1.0 are the same key. Unlike with '==', a
+	 * long is only equal to the double of exactly the same value, and NaN is
+	 * equal to itself. Any other Value, including a reflected number, is never
+	 * equal to a number.
+	 * 
+	 * @param {Value} v1
+	 * @param {Value} v2
+	 * @returns {boolean} whether the numbers are equal
+	 */
+	public static boolean equalNumbers(Value v1, Value v2) {
+		if (!isPrimitiveNumber(v1) || !isPrimitiveNumber(v2))
+			return false;
+
+		final boolean integral1 = isIntegral(v1);
+		final boolean integral2 = isIntegral(v2);
+		if (integral1 && integral2)
+			return longOf(v1) == longOf(v2);
+		if (integral1 || integral2) {
+			final long l = integral1 ? longOf(v1) : longOf(v2);
+			final double d = integral1 ? v2.doubleValue() : v1.doubleValue();
+			return d == l && d < LONG_LIMIT && (long) d == l;
+		}
+
+		final double d1 = v1.doubleValue();
+		final double d2 = v2.doubleValue();
+		return d1 == d2 || (Double.isNaN(d1) && Double.isNaN(d2));
+	}
+
+	/**
+	 * Hashes a number-Value consistently with equalNumbers(), i.e. the integral
+	 * doubles hash like the longs they're equal to.
+	 * 
+	 * @param {Value} v
+	 * @returns {int} hash code of the number
+	 */
+	public static int hashNumber(Value v) {
+		return isIntegral(v) ? hashNumber(longOf(v)) : hashNumber(v.doubleValue());
+	}
+
+	/** Hash of an unboxed integer or long, like hashNumber() of its Value. */
+	public static int hashNumber(long n) {
+		return Long.hashCode(n);
+	}
+
+	/** Hash of an unboxed float or double, like hashNumber() of its Value. */
+	public static int hashNumber(double d) {
+		if (d == Math.rint(d) && d >= -LONG_LIMIT && d < LONG_LIMIT)
+			return Long.hashCode((long) d);
+		return Double.hashCode(d);
+	}
+
+	private static boolean isIntegral(Value v) {
+		return v instanceof ValueInteger || v instanceof ValueLong;
+	}
+
+	private static boolean isPrimitiveNumber(Value v) {
+		return isIntegral(v) || v instanceof ValueFloat || v instanceof ValueDouble;
 	}
 }
@@ -1,10 +1,9 @@
 package dev.amrw.clovelang.utils;
 
 import java.util.HashMap;
+import java.util.List;
 
 import dev.amrw.clovelang.interpreter.ExceptionSemantic;
-import dev.amrw.clovelang.interpreter.Parser;
-import dev.amrw.clovelang.parser.ast.SimpleNode;
 import dev.amrw.clovelang.values.Value;
 import dev.amrw.clovelang.values.ValueList;
 import dev.amrw.clovelang.values.ValueReflection;
@@ -60,6 +59,7 @@ public class ReflectionUtils {
 			// Create an instance of the class using the arguments
 			// and their matching constructor.
 			r.setInternalValue(r.getCtor().newInstance(args.get("args")));
+			copyBackLists(ctorArgs, args.get("args"));
 		} catch (final Exception e) {
 			e.printStackTrace();
 			throw new ExceptionSemantic("");
@@ -130,23 +130,21 @@ public class ReflectionUtils {
 	/**
 	 * Parses Method arguments and returns them in the correct form.
 	 * 
-	 * @param {SimpleNode (ASTArgumentList)} argsNode -- the Method's arguments
-	 * @param {Parser}    p -- active Parser's instance
+	 * @param {Value[]} methodArgs -- the Method's arguments
 	 * @returns {HashMap<String, Object[]>} map containing the parameter types and
 	 *          the arguments in their 'raw type'
 	 * @throws ClassNotFoundException
 	 */
-	public static HashMap<String, Object[]> parseMethodArgs(SimpleNode argsNode,
-			Parser p) {
+	public static HashMap<String, Object[]> parseMethodArgs(Value[] methodArgs) {
 		final HashMap<String, Object[]> result = new HashMap<String, Object[]>();
 
 		// Collect classes of the arguments to later find a matching Method.
-		final int numArgs = argsNode.jjtGetNumChildren();
+		final int numArgs = methodArgs.length;
 		final Class<?>[] paramTypes = new Class<?>[numArgs];
 		final Object[] args = new Object[numArgs];
 
 		for (int i = 0; i < numArgs; i++) {
-			final Object arg = p.doChild(argsNode, i).getRawValue();
+			final Object arg = methodArgs[i].getRawValue();
 			paramTypes[i] = parsePrimitive(arg);
 			args[i] = arg;
 		}
@@ -156,4 +154,19 @@ public class ReflectionUtils {
 
 		return result;
 	}
+
+	/**
+	 * Copies the elements of the lists passed into a constructor or a Method back
+	 * into their ValueLists, which pass only copies of their elements, so that
+	 * the changes made by Java code show in Clove.
+	 * 
+	 * @param {Value[]}  values -- the arguments
+	 * @param {Object[]} args -- the arguments in their 'raw type'
+	 */
+	public static void copyBackLists(Value[] values, Object[] args) {
+		for (int i = 0; i < values.length; i++) {
+			if (values[i] instanceof ValueList)
+				((ValueList) values[i]).setElements((List<?>) args[i]);
+		}
+	}
 }
@@ -0,0 +1,186 @@
+package dev.amrw.clovelang.values;
+
+import java.util.HashMap;
+import java.util.function.IntFunction;
+
+/**
+ * Hash index of the elements of a list or array, made with list->index(), so
+ * that indexOf() and contains() find an element without comparing it with all
+ * of them. Like indexOf() always did, it compares string values, so it keeps
+ * the first index and the number of the elements of each string value.
+ *
+ * The indices are kept as positions relative to the first element, so adding
+ * or removing an element at either end only updates its own entry. Removing
+ * one in the middle moves the ones after it, so the index is built again on
+ * the next lookup instead. An entry whose first element was removed finds its
+ * next one on the next lookup of it.
+ *
+ * The string values of lists and objects change with their elements, so they
+ * aren't indexed, and while there are any, the lookups compare all elements.
+ *
+ * @author amrwc
+ */
+final class ElementIndex {
+	private static final class Entry {
+		int first; // Position of the first element with the string value.
+		int count = 1;
+		boolean stale = false; // Whether the first element was removed.
+
+		Entry(int first) {
+			this.first = first;
+		}
+	}
+
+	// Null until the index is built, and after it's invalidated.
+	private HashMap<String, Entry> entries = null;
+	private int origin = 0; // Position of the element of index 0.
+	private int unindexed = 0;
+
+	/**
+	 * Index of the first element with the string value of the given one, or -1.
+	 *
+	 * @param {Value}              v -- Value to be found
+	 * @param {int}                size -- number of the elements
+	 * @param {IntFunction<Value>} elementAt -- element of an index
+	 * @returns {int} index of the element
+	 */
+	int indexOf(Value v, int size, IntFunction<Value> elementAt) {
+		final String key = v.stringValue();
+		if (entries == null)
+			build(size, elementAt);
+		if (unindexed > 0)
+			return scan(key, size, elementAt);
+
+		final Entry entry = entries.get(key);
+		if (entry == null)
+			return -1;
+		if (entry.stale) {
+			entry.first = origin + scan(key, size, elementAt);
+			entry.stale = false;
+		}
+		return entry.first - origin;
+	}
+
+	/** The element was added at the end, at the index. */
+	void appended(int i, Value v) {
+		if (entries == null)
+			return;
+		if (!isIndexable(v)) {
+			unindexed++;
+			return;
+		}
+
+		final Entry entry = entries.get(v.stringValue());
+		if (entry == null)
+			entries.put(v.stringValue(), new Entry(origin + i));
+		else
+			entry.count++;
+	}
+
+	/** The element was added before the first one. */
+	void unshifted(Value v) {
+		if (entries == null)
+			return;
+		origin--;
+		if (!isIndexable(v)) {
+			unindexed++;
+			return;
+		}
+
+		final Entry entry = entries.get(v.stringValue());
+		if (entry == null)
+			entries.put(v.stringValue(), new Entry(origin));
+		else {
+			entry.first = origin;
+			entry.count++;
+			entry.stale = false;
+		}
+	}
+
+	/** The element at the index was replaced with another one. */
+	void replaced(int i, Value old, Value v) {
+		if (entries == null)
+			return;
+		final int position = origin + i;
+		remove(position, old);
+
+		if (!isIndexable(v)) {
+			unindexed++;
+			return;
+		}
+		final Entry entry = entries.get(v.stringValue());
+		if (entry == null)
+			entries.put(v.stringValue(), new Entry(position));
+		else {
+			entry.count++;
+			if (!entry.stale && position < entry.first)
+				entry.first = position;
+		}
+	}
+
+	/** The element at the index was removed from the elements of the size. */
+	void removed(int i, Value v, int size) {
+		if (entries == null)
+			return;
+		if (i == 0) {
+			remove(origin, v);
+			origin++;
+		} else if (i == size - 1)
+			remove(origin + i, v);
+		else
+			entries = null;
+	}
+
+	/** Build the index again on the next lookup. */
+	void invalidate() {
+		entries = null;
+	}
+
+	private void build(int size, IntFunction<Value> elementAt) {
+		entries = new HashMap<String, Entry>();
+		origin = 0;
+		unindexed = 0;
+		for (int i = 0; i < size; i++) {
+			final Value v = elementAt.apply(i);
+			if (!isIndexable(v)) {
+				unindexed++;
+				continue;
+			}
+			final Entry entry = entries.get(v.stringValue());
+			if (entry == null)
+				entries.put(v.stringValue(), new Entry(i));
+			else
+				entry.count++;
+		}
+	}
+
+	// Take the element in the position out of its entry.
+	private void remove(int position, Value v) {
+		if (!isIndexable(v)) {
+			unindexed--;
+			return;
+		}
+
+		final String key = v.stringValue();
+		final Entry entry = entries.get(key);
+		if (--entry.count == 0)
+			entries.remove(key);
+		else if (entry.first == position)
+			entry.stale = true;
+	}
+
+	private static int scan(String key, int size, IntFunction<Value> elementAt) {
+		for (int i = 0; i < size; i++) {
+			if (elementAt.apply(i).stringValue().equals(key))
+				return i;
+		}
+		return -1;
+	}
+
+	// Whether the string value of the element never changes.
+	private static boolean isIndexable(Value v) {
+		return v instanceof ValueInteger || v instanceof ValueLong
+				|| v instanceof ValueFloat || v instanceof ValueDouble
+				|| v instanceof ValueString || v instanceof ValueBoolean;
+	}
+}
@@ -0,0 +1,45 @@
+package dev.amrw.clovelang.values;
+
+import dev.amrw.clovelang.parser.ast.SimpleNode;
+
+/**
+ * Polymorphic inline cache of the slots of a key, e.g. 'b' in 'a.b', in the
+ * shapes of the objects accessed through it. A key node mostly sees objects of
+ * one or a few shapes, so the slot is found by comparing shapes, without
+ * hashing the key. A node that sees more shapes is megamorphic, and looks the
+ * key up in the shapes it didn't cache.
+ *
+ * @author amrwc
+ */
+public final class InlineCache {
+	private static final int MAX_SHAPES = 4;
+
+	private final Shape[] shapes = new Shape[MAX_SHAPES];
+	private final int[] slots = new int[MAX_SHAPES];
+	private int count = 0;
+
+	private InlineCache() {
+	}
+
+	/** The cache of the identifier key node, kept in node.optimised. */
+	public static InlineCache of(SimpleNode key) {
+		if (key.optimised == null)
+			key.optimised = new InlineCache();
+		return (InlineCache) key.optimised;
+	}
+
+	/** Slot of the key in the shape, or -1 if the shape doesn't have it. */
+	int slotOf(Shape shape, String key) {
+		for (int i = 0; i < count; i++) {
+			if (shapes[i] == shape)
+				return slots[i];
+		}
+
+		final int slot = shape.slotOf(key);
+		if (count < MAX_SHAPES) {
+			shapes[count] = shape;
+			slots[count++] = slot;
+		}
+		return slot;
+	}
+}
@@ -0,0 +1,77 @@
+package dev.amrw.clovelang.values;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Layout of the keys of a ValueObject, shared by all the objects that got the
+ * same keys in the same order. The objects keep only their values, in the slots
+ * the shape gives the keys. Adding a key moves an object to the next shape,
+ * which is created once and then reused by the objects that follow.
+ *
+ * @author amrwc
+ */
+public final class Shape {
+	/** Shape of an object without keys, where all the others start. */
+	static final Shape EMPTY = new Shape(new String[0]);
+
+	/** Most keys an object with a shape can have, before it uses a HashMap. */
+	static final int MAX_KEYS = 64;
+
+	private final String[] keys;
+	private final HashMap<String, Integer> slots = new HashMap<String, Integer>();
+	private HashMap<String, Shape> transitions = null;
+
+	// Slots in the iteration order of a HashMap with the same keys.
+	private int[] order = null;
+
+	private Shape(String[] keys) {
+		this.keys = keys;
+		for (int i = 0; i < keys.length; i++)
+			slots.put(keys[i], i);
+	}
+
+	/** Slot of the key, or -1 if the shape doesn't have it. */
+	int slotOf(String key) {
+		final Integer slot = slots.get(key);
+		return (slot != null) ? slot : -1;
+	}
+
+	int size() {
+		return keys.length;
+	}
+
+	String keyAt(int slot) {
+		return keys[slot];
+	}
+
+	/** The shape with the key added after the keys of this one. */
+	Shape with(String key) {
+		if (transitions == null)
+			transitions = new HashMap<String, Shape>();
+		Shape next = transitions.get(key);
+		if (next == null) {
+			final String[] nextKeys = Arrays.copyOf(keys, keys.length + 1);
+			nextKeys[keys.length] = key;
+			next = new Shape(nextKeys);
+			transitions.put(key, next);
+		}
+		return next;
+	}
+
+	/**
+	 * Slots in the order in which a HashMap, with the keys put in the same order,
+	 * iterates over them, so that the objects print the same in both forms. The
+	 * slots map is exactly such a HashMap.
+	 */
+	int[] order() {
+		if (order == null) {
+			final int[] slotOrder = new int[keys.length];
+			int i = 0;
+			for (final int slot : slots.values())
+				slotOrder[i++] = slot;
+			order = slotOrder;
+		}
+		return order;
+	}
+}
@@ -64,11 +64,11 @@ public abstract class ValueAbstract implements Value {
 	 */
 	public static Value getCorrespondingValue(Object v) {
 		if (v instanceof Boolean)
-			return new ValueBoolean((boolean) v);
+			return ValueBoolean.of((boolean) v);
 		if (v instanceof Short)
-			return new ValueInteger((short) v);
+			return ValueInteger.valueOf((short) v);
 		if (v instanceof Integer)
-			return new ValueInteger((int) v);
+			return ValueInteger.valueOf((int) v);
 		if (v instanceof Long)
 			return new ValueLong((long) v);
 		if (v instanceof Float)
@@ -146,41 +146,41 @@ public abstract class ValueAbstract implements Value {
 	/** Test this value and another for equality. */
 	@Override
 	public Value eq(Value v) {
-		return new ValueBoolean(compare(v) == 0);
+		return ValueBoolean.of(compare(v) == 0);
 	}
 
 	/** Test this value and another for non-equality. */
 	@Override
 	public Value neq(Value v) {
-		return new ValueBoolean(compare(v) != 0);
+		return ValueBoolean.of(compare(v) != 0);
 	}
 
 	/** Test this value and another for >= */
 	@Override
 	public Value gte(Value v) {
 		booleanTest(v, ">=");
-		return new ValueBoolean(compare(v) >= 0);
+		return ValueBoolean.of(compare(v) >= 0);
 	}
 
 	/** Test this value and another for <= */
 	@Override
 	public Value lte(Value v) {
 		booleanTest(v, "<=");
-		return new ValueBoolean(compare(v) <= 0);
+		return ValueBoolean.of(compare(v) <= 0);
 	}
 
 	/** Test this value and another for > */
 	@Override
 	public Value gt(Value v) {
 		booleanTest(v, ">");
-		return new ValueBoolean(compare(v) > 0);
+		return ValueBoolean.of(compare(v) > 0);
 	}
 
 	/** Test this value and another for < */
 	@Override
 	public Value lt(Value v) {
 		booleanTest(v, "<");
-		return new ValueBoolean(compare(v) < 0);
+		return ValueBoolean.of(compare(v) < 0);
 	}
 
 	/**
@@ -9,13 +9,22 @@ import dev.amrw.clovelang.interpreter.Parser;
 import dev.amrw.clovelang.parser.ast.SimpleNode;
 
 /**
+ * A copy shares the Vector with the array, and either of them copies it on its
+ * first write. After array->index(), the array keeps an ElementIndex of its
+ * elements up to date, like a ValueList.
+ *
  * @see https://docs.oracle.com/javase/8/docs/api/java/util/Vector.html
  * @author amrwc
  */
 public class ValueArray extends ValueAbstract {
-	private final Vector<Value> internalValue;
+	private Vector<Value> internalValue;
 	private int capacity;
 
+	// Whether the Vector may be shared with a copy, and has to be copied first.
+	private boolean shared = false;
+
+	private ElementIndex index = null;
+
 	public ValueArray() {
 		internalValue = new Vector<Value>();
 		capacity = 0;
@@ -41,9 +50,24 @@ public class ValueArray extends ValueAbstract {
 		return internalValue.equals(arr) ? 0 : 1;
 	}
 
+	@Override
+	public boolean equals(Object o) {
+		return o == this || (o instanceof ValueArray
+				&& internalValue.equals(((ValueArray) o).internalValue));
+	}
+
+	@Override
+	public int hashCode() {
+		return internalValue.hashCode();
+	}
+
 	@SuppressWarnings("unchecked")
 	@Override
 	public Vector<Value> getRawValue() {
+		unshare();
+		// The Vector may be changed by the caller, behind the index's back.
+		if (index != null)
+			index.invalidate();
 		return internalValue;
 	}
 
@@ -59,7 +83,7 @@ public class ValueArray extends ValueAbstract {
 	@Override
 	public Value dereference(SimpleNode node, Value v, int currChild, Parser p) {
 		final ValueArray valueList = (ValueArray) v;
-		final int index = ((ValueInteger) p.doChild(node, currChild)).getRawValue();
+		final int index = p.executeIndex(node, currChild);
 		return valueList.get(index);
 	}
 
@@ -80,25 +104,33 @@ public class ValueArray extends ValueAbstract {
 			break;
 		case "capacity":
 		case "cap":
-			return new ValueInteger(capacity);
+			return ValueInteger.valueOf(capacity);
+		case "contains":
+			return ValueBoolean.of(indexOf(protoArgs.get(0)) >= 0);
 		case "copy":
-			return new ValueArray(new Vector<Value>(internalValue));
+			return copy();
 		case "getClass":
 			return new ValueString(getName());
+		case "index":
+			if (index == null)
+				index = new ElementIndex();
+			break;
 		case "indexOf":
-			return findIndex(protoArgs.get(0));
+			return ValueInteger.valueOf(indexOf(protoArgs.get(0)));
 		case "pop":
-			return internalValue.remove(internalValue.size() - 1);
+			return remove(internalValue.size() - 1);
 		case "remove":
-			return internalValue.remove((int) protoArgs.get(0).getRawValue());
+			return remove((int) protoArgs.get(0).getRawValue());
 		case "resize":
 			resize(protoArgs.get(0));
 			break;
 		case "shift":
-			return internalValue.remove(0);
+			return remove(0);
 		case "size":
 		case "length":
-			return new ValueInteger(size());
+			return ValueInteger.valueOf(size());
+		case "toSet":
+			return new ValueSet(internalValue);
 		default:
 			throw new ExceptionSemantic("There is no prototype function \"" + protoFunc
 					+ "\" in ValueArray class.");
@@ -115,22 +147,56 @@ public class ValueArray extends ValueAbstract {
 			throw new ExceptionSemantic(
 					"The argument for ValueArray.append()" + " cannot be null.");
 
+		unshare();
+		if (index != null)
+			index.appended(internalValue.size(), v);
 		internalValue.add(v);
 	}
 
+	// The copy has a capacity of 0, like it always had.
+	private ValueArray copy() {
+		final ValueArray copy = new ValueArray(internalValue);
+		copy.shared = true;
+		copy.index = (index != null) ? new ElementIndex() : null;
+		shared = true;
+		return copy;
+	}
+
+	// Copy the Vector that may be shared with a copy, before writing to it.
+	private void unshare() {
+		if (shared) {
+			internalValue = new Vector<Value>(internalValue);
+			shared = false;
+		}
+	}
+
+	// Remove the element at the index and return it.
+	private Value remove(int i) {
+		unshare();
+		final Value removed = internalValue.remove(i);
+		if (index != null)
+			index.removed(i, removed, internalValue.size() + 1);
+		return removed;
+	}
+
 	/**
 	 * Find the index of a Value in the ValueArray. Returns -1 if it's not found.
 	 * 
+	 * The index, if the array has one, finds it without comparing the elements.
+	 * 
 	 * @param {Value} v -- Value to be found
-	 * @return {ValueInteger} index of the Value in the ValueArray
+	 * @return {int} index of the Value in the ValueArray
 	 */
-	private Value findIndex(Value v) {
+	private int indexOf(Value v) {
+		if (index != null)
+			return index.indexOf(v, internalValue.size(), internalValue::get);
+
 		final String strVal = v.stringValue();
 		for (int i = 0; i < internalValue.size(); i++) {
 			if (internalValue.get(i).stringValue().equals(strVal))
-				return new ValueInteger(i);
+				return i;
 		}
-		return new ValueInteger(-1);
+		return -1;
 	}
 
 	public Value get(int i) {
@@ -152,7 +218,10 @@ public class ValueArray extends ValueAbstract {
 		if (v == null)
 			throw new ExceptionSemantic(
 					"The Value passed into ValueArray.set() cannot be null.");
-		internalValue.set(i, v);
+		unshare();
+		final Value old = internalValue.set(i, v);
+		if (index != null)
+			index.replaced(i, old, v);
 	}
 
 	public int size() {
@@ -168,6 +237,7 @@ public class ValueArray extends ValueAbstract {
 	private void resize(Value len) {
 		final int newLen = (int) len.getRawValue();
 		capacity = newLen;
+		unshare();
 
 		// If the internal capacity exceeds the Vector's cap, adjust the latter.
 		if (capacity > internalValue.capacity()) {
@@ -6,12 +6,21 @@ import dev.amrw.clovelang.interpreter.ExceptionSemantic;
  * @author dave
  */
 public class ValueBoolean extends ValueAbstract {
+	/** The canonical instances, shared by every boolean Value. */
+	public static final ValueBoolean TRUE = new ValueBoolean(true);
+	public static final ValueBoolean FALSE = new ValueBoolean(false);
+
 	private final boolean internalValue;
 
 	public ValueBoolean(boolean b) {
 		internalValue = b;
 	}
 
+	/** Get the canonical instance of the boolean, instead of allocating one. */
+	public static ValueBoolean of(boolean b) {
+		return b ? TRUE : FALSE;
+	}
+
 	@Override
 	public String getName() {
 		return "boolean";
@@ -23,6 +32,11 @@ public class ValueBoolean extends ValueAbstract {
 		return internalValue;
 	}
 
+	/** Get the primitive value, without boxing it. */
+	public boolean booleanValue() {
+		return internalValue;
+	}
+
 	/** Convert this to a primitive string. */
 	@Override
 	public String stringValue() {
@@ -31,17 +45,17 @@ public class ValueBoolean extends ValueAbstract {
 
 	@Override
 	public Value or(Value v) {
-		return new ValueBoolean(internalValue || (boolean) v.getRawValue());
+		return ValueBoolean.of(internalValue || (boolean) v.getRawValue());
 	}
 
 	@Override
 	public Value and(Value v) {
-		return new ValueBoolean(internalValue && (boolean) v.getRawValue());
+		return ValueBoolean.of(internalValue && (boolean) v.getRawValue());
 	}
 
 	@Override
 	public Value not() {
-		return new ValueBoolean(!internalValue);
+		return ValueBoolean.of(!internalValue);
 	}
 
 	@Override
@@ -60,6 +74,17 @@ public class ValueBoolean extends ValueAbstract {
 			return -1;
 	}
 
+	@Override
+	public boolean equals(Object o) {
+		return o instanceof ValueBoolean
+				&& internalValue == ((ValueBoolean) o).internalValue;
+	}
+
+	@Override
+	public int hashCode() {
+		return Boolean.hashCode(internalValue);
+	}
+
 	@Override
 	public String toString() {
 		return "" + internalValue;
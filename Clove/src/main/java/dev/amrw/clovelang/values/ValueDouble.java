@@ -44,29 +44,40 @@ public class ValueDouble extends ValueAbstract {
 		return NumberUtils.compareNumberValues(this, v);
 	}
 
+	/** Equal to a number of any type with the same value, e.g. 1 and 1.0. */
+	@Override
+	public boolean equals(Object o) {
+		return o instanceof Value && NumberUtils.equalNumbers(this, (Value) o);
+	}
+
+	@Override
+	public int hashCode() {
+		return NumberUtils.hashNumber(this);
+	}
+
 	@Override
 	public Value add(Value v) {
-		return NumberUtils.doOperation(this, "add", v);
+		return NumberUtils.add(this, v);
 	}
 
 	@Override
 	public Value subtract(Value v) {
-		return NumberUtils.doOperation(this, "subtract", v);
+		return NumberUtils.subtract(this, v);
 	}
 
 	@Override
 	public Value mult(Value v) {
-		return NumberUtils.doOperation(this, "mult", v);
+		return NumberUtils.mult(this, v);
 	}
 
 	@Override
 	public Value div(Value v) {
-		return NumberUtils.doOperation(this, "div", v);
+		return NumberUtils.div(this, v);
 	}
 
 	@Override
 	public Value mod(Value v) {
-		return NumberUtils.doOperation(this, "mod", v);
+		return NumberUtils.mod(this, v);
 	}
 
 	@Override
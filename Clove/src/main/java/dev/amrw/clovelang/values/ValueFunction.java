@@ -22,6 +22,18 @@ public class ValueFunction extends ValueAbstract {
 		return functionDefinition.compareTo(v);
 	}
 
+	/** Equal to a function Value of the same definition. */
+	@Override
+	public boolean equals(Object o) {
+		return o instanceof ValueFunction
+				&& functionDefinition == ((ValueFunction) o).functionDefinition;
+	}
+
+	@Override
+	public int hashCode() {
+		return System.identityHashCode(functionDefinition);
+	}
+
 	@Override
 	public String getName() {
 		return "ValueFn";
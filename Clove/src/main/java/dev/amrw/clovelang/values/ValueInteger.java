@@ -7,12 +7,30 @@ import dev.amrw.clovelang.utils.NumberUtils;
  * @author amrwc
  */
 public class ValueInteger extends ValueAbstract {
+	// Cached integers, from CACHE_LOW to CACHE_HIGH. The upper bound can be set
+	// with -Dclove.integerCache.high=<n>.
+	private static final int CACHE_LOW = -128;
+	private static final int CACHE_HIGH = Math.max(127,
+			Integer.getInteger("clove.integerCache.high", 1024));
+	private static final ValueInteger[] CACHE = new ValueInteger[CACHE_HIGH - CACHE_LOW + 1];
+
+	static {
+		for (int i = 0; i < CACHE.length; i++)
+			CACHE[i] = new ValueInteger(CACHE_LOW + i);
+	}
+
 	private final int internalValue;
 
 	public ValueInteger(int v) {
 		internalValue = v;
 	}
 
+	/** Get the integer, cached if it's small, instead of allocating one. */
+	public static ValueInteger valueOf(int v) {
+		return (v >= CACHE_LOW && v <= CACHE_HIGH) ? CACHE[v - CACHE_LOW]
+				: new ValueInteger(v);
+	}
+
 	@Override
 	public String getName() {
 		return "integer";
@@ -35,6 +53,11 @@ public class ValueInteger extends ValueAbstract {
 		return stringValue();
 	}
 
+	/** Get the primitive value, without boxing it. */
+	public int intValue() {
+		return internalValue;
+	}
+
 	@Override
 	public double doubleValue() {
 		return internalValue;
@@ -45,38 +68,49 @@ public class ValueInteger extends ValueAbstract {
 		return NumberUtils.compareNumberValues(this, v);
 	}
 
+	/** Equal to a number of any type with the same value, e.g. 1 and 1.0. */
+	@Override
+	public boolean equals(Object o) {
+		return o instanceof Value && NumberUtils.equalNumbers(this, (Value) o);
+	}
+
+	@Override
+	public int hashCode() {
+		return NumberUtils.hashNumber(this);
+	}
+
 	@Override
 	public Value add(Value v) {
-		return NumberUtils.doOperation(this, "add", v);
+		return NumberUtils.add(this, v);
 	}
 
 	@Override
 	public Value subtract(Value v) {
-		return NumberUtils.doOperation(this, "subtract", v);
+		return NumberUtils.subtract(this, v);
 	}
 
 	@Override
 	public Value mult(Value v) {
-		return NumberUtils.doOperation(this, "mult", v);
+		return NumberUtils.mult(this, v);
 	}
 
 	@Override
 	public Value div(Value v) {
-		return NumberUtils.doOperation(this, "div", v);
+		return NumberUtils.div(this, v);
 	}
 
 	@Override
 	public Value mod(Value v) {
-		return NumberUtils.doOperation(this, "mod", v);
+		return NumberUtils.mod(this, v);
 	}
 
 	@Override
 	public Value unary_plus() {
-		return new ValueInteger(internalValue);
+		return this;
 	}
 
 	@Override
 	public Value unary_minus() {
-		return new ValueInteger(-internalValue);
+		return NumberUtils.tryInt(-(long) internalValue);
 	}
 }
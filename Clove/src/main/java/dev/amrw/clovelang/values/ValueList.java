@@ -1,24 +1,65 @@
 package dev.amrw.clovelang.values;
 
 import java.util.ArrayList;
-import java.util.stream.Collectors;
+import java.util.List;
+import java.util.Objects;
+import java.util.StringJoiner;
 
 import dev.amrw.clovelang.interpreter.ExceptionSemantic;
 import dev.amrw.clovelang.interpreter.Parser;
 import dev.amrw.clovelang.parser.ast.SimpleNode;
+import dev.amrw.clovelang.utils.NumberUtils;
 
 /**
- * @see https://docs.oracle.com/javase/8/docs/api/index.html?java/util/ArrayList.html
+ * A list picks its storage strategy by its elements. While they're all integers,
+ * longs or doubles, they're kept unboxed in an int[], long[] or double[]. The
+ * first element of another kind moves them all to a Value[] for good.
+ *
+ * The storage is a ring buffer, whose first element is at 'head', so elements
+ * are added and removed at both ends in amortised O(1) time, and indexed in
+ * O(1) time.
+ *
+ * A copy shares the storage with the list, and either of them copies it on its
+ * first write, so copying a list that isn't changed afterwards costs nothing.
+ *
+ * After list->index(), the list keeps an ElementIndex of its elements up to
+ * date, for indexOf() and contains() in large lists.
+ *
  * @author amrwc
  */
 public class ValueList extends ValueAbstract {
-	private ArrayList<Value> internalValue = new ArrayList<Value>();
+	// Storage strategies.
+	private static final int EMPTY = 0;
+	private static final int INTS = 1;
+	private static final int LONGS = 2;
+	private static final int DOUBLES = 3;
+	private static final int OBJECTS = 4;
+
+	// Smallest capacity of the storage. It's always a power of 2.
+	private static final int MIN_CAPACITY = 8;
+
+	private int strategy = EMPTY;
+	private int head = 0;
+	private int size = 0;
+	private int mask = -1; // Capacity of the storage - 1.
+	private int[] ints = null;
+	private long[] longs = null;
+	private double[] doubles = null;
+	private Value[] objects = null;
+
+	// Whether the storage may be shared with a copy, and has to be copied first.
+	private boolean shared = false;
+
+	private ElementIndex index = null;
 
 	public ValueList() {
 	}
 
 	public ValueList(ArrayList<Value> valueList) {
-		internalValue = valueList;
+		strategy = OBJECTS;
+		size = valueList.size();
+		objects = valueList.toArray(new Value[capacityFor(size)]);
+		mask = objects.length - 1;
 	}
 
 	@Override
@@ -28,14 +69,100 @@ public class ValueList extends ValueAbstract {
 
 	@Override
 	public int compare(Value v) {
-		final ArrayList<Value> arr = ((ValueList) v).internalValue;
-		return internalValue.equals(arr) ? 0 : 1;
+		return equals((ValueList) v) ? 0 : 1;
+	}
+
+	/** Equal to a list of equal elements, compared unboxed where both can be. */
+	@Override
+	public boolean equals(Object o) {
+		if (o == this)
+			return true;
+		if (!(o instanceof ValueList) || ((ValueList) o).size != size)
+			return false;
+
+		final ValueList list = (ValueList) o;
+		final boolean unboxed = strategy == list.strategy && strategy != OBJECTS;
+		for (int i = 0; i < size; i++) {
+			final int j = slot(i);
+			final int k = list.slot(i);
+			final boolean equal;
+			if (unboxed && strategy == INTS)
+				equal = ints[j] == list.ints[k];
+			else if (unboxed && strategy == LONGS)
+				equal = longs[j] == list.longs[k];
+			else if (unboxed && strategy == DOUBLES)
+				equal = doubles[j] == list.doubles[k]
+						|| (Double.isNaN(doubles[j]) && Double.isNaN(list.doubles[k]));
+			else
+				equal = Objects.equals(load(j), list.load(k));
+			if (!equal)
+				return false;
+		}
+		return true;
+	}
+
+	/** Hash of the elements in order, like List.hashCode(), without boxing them. */
+	@Override
+	public int hashCode() {
+		int hash = 1;
+		for (int i = 0; i < size; i++) {
+			final int j = slot(i);
+			final int elementHash;
+			switch (strategy) {
+			case INTS:
+				elementHash = NumberUtils.hashNumber(ints[j]);
+				break;
+			case LONGS:
+				elementHash = NumberUtils.hashNumber(longs[j]);
+				break;
+			case DOUBLES:
+				elementHash = NumberUtils.hashNumber(doubles[j]);
+				break;
+			default:
+				elementHash = Objects.hashCode(objects[j]);
+			}
+			hash = 31 * hash + elementHash;
+		}
+		return hash;
 	}
 
+	/**
+	 * A new ArrayList of the elements, which are kept in a ring buffer. Java code
+	 * that changes it through the Reflection API changes the list only after
+	 * setElements().
+	 */
 	@SuppressWarnings("unchecked")
 	@Override
 	public ArrayList<Value> getRawValue() {
-		return internalValue;
+		final ArrayList<Value> list = new ArrayList<Value>(size);
+		for (int i = 0; i < size; i++)
+			list.add(load(slot(i)));
+		return list;
+	}
+
+	/**
+	 * Replaces the elements with the ones of the given list, e.g. the one from
+	 * getRawValue() after a Java method changed it. Elements that aren't Values
+	 * are converted like the results of Java methods.
+	 *
+	 * @param {List<?>} elements -- the new elements
+	 */
+	public void setElements(List<?> elements) {
+		strategy = EMPTY;
+		head = 0;
+		size = 0;
+		mask = -1;
+		ints = null;
+		longs = null;
+		doubles = null;
+		objects = null;
+		shared = false;
+		if (index != null)
+			index.invalidate();
+
+		for (final Object element : elements)
+			append((element instanceof Value) ? (Value) element
+					: getCorrespondingValue(element));
 	}
 
 	/**
@@ -50,7 +177,7 @@ public class ValueList extends ValueAbstract {
 	@Override
 	public Value dereference(SimpleNode node, Value v, int currChild, Parser p) {
 		final ValueList valueList = (ValueList) v;
-		final int index = (int) ((ValueInteger) p.doChild(node, currChild)).getRawValue();
+		final int index = p.executeIndex(node, currChild);
 		return valueList.get(index);
 	}
 
@@ -69,21 +196,38 @@ public class ValueList extends ValueAbstract {
 		case "push":
 			protoArgs.forEach(arg -> append(arg));
 			break;
+		case "contains":
+			return ValueBoolean.of(indexOf(protoArgs.get(0)) >= 0);
 		case "copy":
-			return new ValueList(new ArrayList<Value>(internalValue));
+			return copy();
 		case "getClass":
 			return new ValueString(getName());
+		case "index":
+			if (index == null)
+				index = new ElementIndex();
+			break;
 		case "indexOf":
-			return findIndex(protoArgs.get(0));
+			return ValueInteger.valueOf(indexOf(protoArgs.get(0)));
+		case "persistent":
+			return persistent();
 		case "pop":
-			return internalValue.remove(internalValue.size() - 1);
+			return remove(size - 1);
 		case "remove":
-			return internalValue.remove((int) protoArgs.get(0).getRawValue());
+			return remove((int) protoArgs.get(0).getRawValue());
 		case "shift":
-			return internalValue.remove(0);
+			return remove(0);
 		case "size":
 		case "length":
-			return new ValueInteger(size());
+			return ValueInteger.valueOf(size);
+		case "toMap":
+			return toMap();
+		case "toSet":
+			return new ValueSet(getRawValue());
+		case "unshift":
+			// Like in JavaScript, the arguments end up in the same order.
+			for (int i = protoArgs.size() - 1; i >= 0; i--)
+				unshift(protoArgs.get(i));
+			break;
 		default:
 			throw new ExceptionSemantic("There is no prototype function \"" + protoFunc
 					+ "\" in ValueList class.");
@@ -92,35 +236,312 @@ public class ValueList extends ValueAbstract {
 		return null;
 	}
 
+	// Position of the element of the index in the storage.
+	private int slot(int i) {
+		return (head + i) & mask;
+	}
+
+	// The element in the position of the storage, boxed if it's unboxed.
+	private Value load(int j) {
+		switch (strategy) {
+		case INTS:
+			return ValueInteger.valueOf(ints[j]);
+		case LONGS:
+			return new ValueLong(longs[j]);
+		case DOUBLES:
+			return new ValueDouble(doubles[j]);
+		default:
+			return objects[j];
+		}
+	}
+
+	// Put the value, which fits the strategy, in the position of the storage.
+	private void store(int j, Value v) {
+		switch (strategy) {
+		case INTS:
+			ints[j] = ((ValueInteger) v).intValue();
+			break;
+		case LONGS:
+			longs[j] = ((ValueLong) v).longValue();
+			break;
+		case DOUBLES:
+			doubles[j] = ((ValueDouble) v).doubleValue();
+			break;
+		default:
+			objects[j] = v;
+			break;
+		}
+	}
+
+	// Whether the strategy can store the value.
+	private boolean fits(Value v) {
+		switch (strategy) {
+		case INTS:
+			return v instanceof ValueInteger;
+		case LONGS:
+			return v instanceof ValueLong;
+		case DOUBLES:
+			return v instanceof ValueDouble;
+		default:
+			return true;
+		}
+	}
+
+	// Strategy of a list whose first element is the value.
+	private static int strategyOf(Value v) {
+		if (v instanceof ValueInteger)
+			return INTS;
+		if (v instanceof ValueLong)
+			return LONGS;
+		if (v instanceof ValueDouble)
+			return DOUBLES;
+		return OBJECTS;
+	}
+
+	// Smallest power of 2 capacity for the number of elements.
+	private static int capacityFor(int n) {
+		return Math.max(MIN_CAPACITY, Integer.highestOneBit(Math.max(1, n - 1)) << 1);
+	}
+
+	private Object storage() {
+		switch (strategy) {
+		case INTS:
+			return ints;
+		case LONGS:
+			return longs;
+		case DOUBLES:
+			return doubles;
+		default:
+			return objects;
+		}
+	}
+
+	// A new storage of the capacity, with the elements from position 0.
+	private void reallocate(int capacity) {
+		final Object storage = storage();
+		final Object array;
+		switch (strategy) {
+		case INTS:
+			array = ints = new int[capacity];
+			break;
+		case LONGS:
+			array = longs = new long[capacity];
+			break;
+		case DOUBLES:
+			array = doubles = new double[capacity];
+			break;
+		default:
+			array = objects = new Value[capacity];
+			break;
+		}
+
+		if (storage != null) {
+			final int first = Math.min(size, mask + 1 - head);
+			System.arraycopy(storage, head, array, 0, first);
+			System.arraycopy(storage, 0, array, first, size - first);
+		}
+		head = 0;
+		mask = capacity - 1;
+	}
+
+	private void ensureCapacity(int n) {
+		if (storage() == null)
+			reallocate(capacityFor(n));
+		else if (n > mask + 1)
+			reallocate((mask + 1) * 2);
+	}
+
+	// Move the elements to a Value[], for an element of another kind.
+	private void generalise() {
+		if (strategy == OBJECTS)
+			return;
+		final Value[] boxed = new Value[capacityFor(size)];
+		for (int i = 0; i < size; i++)
+			boxed[i] = load(slot(i));
+		strategy = OBJECTS;
+		objects = boxed;
+		ints = null;
+		longs = null;
+		doubles = null;
+		head = 0;
+		mask = boxed.length - 1;
+		shared = false;
+	}
+
+	// Copy the storage that may be shared with a copy, before writing to it.
+	private void unshare() {
+		if (!shared)
+			return;
+		shared = false;
+		if (storage() != null)
+			reallocate(mask + 1);
+	}
+
+	private ValueList copy() {
+		final ValueList copy = new ValueList();
+		copy.strategy = strategy;
+		copy.head = head;
+		copy.size = size;
+		copy.mask = mask;
+		copy.ints = ints;
+		copy.longs = longs;
+		copy.doubles = doubles;
+		copy.objects = objects;
+		copy.shared = true;
+		copy.index = (index != null) ? new ElementIndex() : null;
+		shared = true;
+		return copy;
+	}
+
+	// The elements in a ValuePersistentList.
+	private ValuePersistentList persistent() {
+		ValuePersistentList list = ValuePersistentList.EMPTY;
+		for (int i = 0; i < size; i++)
+			list = list.append(get(i));
+		return list;
+	}
+
 	public void append(Value v) {
 		if (v == null)
 			throw new ExceptionSemantic(
 					"The argument for ValueList.append() cannot be null.");
-		internalValue.add(v);
+		unshare();
+		if (strategy == EMPTY)
+			strategy = strategyOf(v);
+		else if (!fits(v))
+			generalise();
+
+		ensureCapacity(size + 1);
+		store(slot(size), v);
+		if (index != null)
+			index.appended(size, v);
+		size++;
+	}
+
+	/** Add the value before the first element. */
+	public void unshift(Value v) {
+		if (v == null)
+			throw new ExceptionSemantic(
+					"The argument for ValueList.unshift() cannot be null.");
+		unshare();
+		if (strategy == EMPTY)
+			strategy = strategyOf(v);
+		else if (!fits(v))
+			generalise();
+
+		ensureCapacity(size + 1);
+		head = (head - 1) & mask;
+		store(head, v);
+		if (index != null)
+			index.unshifted(v);
+		size++;
+	}
+
+	// Remove the element at the index and return it. The elements on the shorter
+	// side of it move into its place, so the first and the last element are
+	// removed in O(1) time.
+	private Value remove(int i) {
+		unshare();
+		Objects.checkIndex(i, size);
+		final Value removed = load(slot(i));
+		final Object storage = storage();
+		if (i < size / 2) {
+			for (int j = i; j > 0; j--)
+				System.arraycopy(storage, slot(j - 1), storage, slot(j), 1);
+			if (strategy == OBJECTS)
+				objects[head] = null;
+			head = slot(1);
+		} else {
+			for (int j = i; j < size - 1; j++)
+				System.arraycopy(storage, slot(j + 1), storage, slot(j), 1);
+			if (strategy == OBJECTS)
+				objects[slot(size - 1)] = null;
+		}
+		if (index != null)
+			index.removed(i, removed, size);
+		size--;
+		return removed;
 	}
 
 	/**
 	 * Find the index of a Value in the ValueList. Returns -1 if it's not found.
 	 * 
+	 * The index, if the list has one, finds it without comparing the elements.
+	 * 
 	 * @param {Value} v -- Value to be found
-	 * @return {ValueInteger} index of the Value in the ValueList
+	 * @return {int} index of the Value in the ValueList
 	 */
-	private Value findIndex(Value v) {
+	private int indexOf(Value v) {
+		if (index != null)
+			return index.indexOf(v, size, i -> load(slot(i)));
+
+		if (strategy == INTS && v instanceof ValueInteger) {
+			final int target = ((ValueInteger) v).intValue();
+			for (int i = 0; i < size; i++) {
+				if (ints[slot(i)] == target)
+					return i;
+			}
+			return -1;
+		}
+		if (strategy == LONGS && v instanceof ValueLong) {
+			final long target = ((ValueLong) v).longValue();
+			for (int i = 0; i < size; i++) {
+				if (longs[slot(i)] == target)
+					return i;
+			}
+			return -1;
+		}
+		if (strategy == DOUBLES && v instanceof ValueDouble) {
+			// The bits, like the strings, are equal for NaNs, but not for -0.0 and 0.0.
+			final long target = Double.doubleToLongBits(((ValueDouble) v).doubleValue());
+			for (int i = 0; i < size; i++) {
+				if (Double.doubleToLongBits(doubles[slot(i)]) == target)
+					return i;
+			}
+			return -1;
+		}
+
 		final String strVal = v.stringValue();
-		for (int i = 0; i < internalValue.size(); i++) {
-			if (internalValue.get(i).stringValue().equals(strVal))
-				return new ValueInteger(i);
+		for (int i = 0; i < size; i++) {
+			if (stringValueAt(slot(i)).equals(strVal))
+				return i;
+		}
+		return -1;
+	}
+
+	// The [key, value] lists of the elements in a map.
+	private ValueMap toMap() {
+		final ValueMap map = new ValueMap();
+		for (int i = 0; i < size; i++) {
+			final Value entry = load(slot(i));
+			if (!(entry instanceof ValueList) || ((ValueList) entry).size != 2)
+				throw new ExceptionSemantic("The elements of a list turned into a map"
+						+ " have to be [key, value] lists, not '" + entry + "'.");
+			map.set(((ValueList) entry).get(0), ((ValueList) entry).get(1));
+		}
+		return map;
+	}
+
+	// The string value of the element in the position, without boxing it.
+	private String stringValueAt(int j) {
+		switch (strategy) {
+		case INTS:
+			return "" + ints[j];
+		case LONGS:
+			return "" + longs[j];
+		case DOUBLES:
+			return "" + doubles[j];
+		default:
+			return objects[j].stringValue();
 		}
-		return new ValueInteger(-1);
 	}
 
 	public Value get(int i) {
-		if (internalValue.size() <= i)
-			throw new ExceptionSemantic(
-					"The index " + i + " is out of bounds of the list with length "
-							+ internalValue.size() + ".");
+		if (size <= i)
+			throw new ExceptionSemantic("The index " + i
+					+ " is out of bounds of the list with length " + size + ".");
 
-		final Value val = internalValue.get(i);
+		final Value val = load(slot(Objects.checkIndex(i, size)));
 		if (val != null)
 			return val;
 		throw new ExceptionSemantic(
@@ -133,21 +554,28 @@ public class ValueList extends ValueAbstract {
 		if (v == null)
 			throw new ExceptionSemantic(
 					"The Value passed into ValueList.set() cannot be null.");
-		internalValue.set(i, v);
+
+		unshare();
+		Objects.checkIndex(i, size);
+		if (!fits(v))
+			generalise();
+		if (index != null)
+			index.replaced(i, load(slot(i)), v);
+		store(slot(i), v);
 	}
 
 	public int size() {
-		return internalValue.size();
+		return size;
 	}
 
-	/**
-	 * @read https://stackoverflow.com/a/23183963/10620237
-	 */
 	@Override
 	public String toString() {
-		final String strVal = internalValue.stream().map(Object::toString)
-				.collect(Collectors.joining(", "));
-		return "[" + strVal + "]";
+		final StringJoiner strVal = new StringJoiner(", ", "[", "]");
+		for (int i = 0; i < size; i++) {
+			final int j = slot(i);
+			strVal.add((strategy == OBJECTS) ? objects[j].toString() : stringValueAt(j));
+		}
+		return strVal.toString();
 	}
 
 	@Override
@@ -34,6 +34,11 @@ public class ValueLong extends ValueAbstract {
 		return stringValue();
 	}
 
+	/** Get the primitive value, without boxing it. */
+	public long longValue() {
+		return internalValue;
+	}
+
 	@Override
 	public double doubleValue() {
 		return internalValue;
@@ -44,29 +49,40 @@ public class ValueLong extends ValueAbstract {
 		return NumberUtils.compareNumberValues(this, v);
 	}
 
+	/** Equal to a number of any type with the same value, e.g. 1 and 1.0. */
+	@Override
+	public boolean equals(Object o) {
+		return o instanceof Value && NumberUtils.equalNumbers(this, (Value) o);
+	}
+
+	@Override
+	public int hashCode() {
+		return NumberUtils.hashNumber(this);
+	}
+
 	@Override
 	public Value add(Value v) {
-		return NumberUtils.doOperation(this, "add", v);
+		return NumberUtils.add(this, v);
 	}
 
 	@Override
 	public Value subtract(Value v) {
-		return NumberUtils.doOperation(this, "subtract", v);
+		return NumberUtils.subtract(this, v);
 	}
 
 	@Override
 	public Value mult(Value v) {
-		return NumberUtils.doOperation(this, "mult", v);
+		return NumberUtils.mult(this, v);
 	}
 
 	@Override
 	public Value div(Value v) {
-		return NumberUtils.doOperation(this, "div", v);
+		return NumberUtils.div(this, v);
 	}
 
 	@Override
 	public Value mod(Value v) {
-		return NumberUtils.doOperation(this, "mod", v);
+		return NumberUtils.mod(this, v);
 	}
 
 	@Override
@@ -76,6 +92,8 @@ public class ValueLong extends ValueAbstract {
 
 	@Override
 	public Value unary_minus() {
-		return new ValueLong(-internalValue);
+		// The negation of Long.MIN_VALUE overflows.
+		return (internalValue == Long.MIN_VALUE) ? new ValueDouble(-(double) internalValue)
+				: new ValueLong(-internalValue);
 	}
 }
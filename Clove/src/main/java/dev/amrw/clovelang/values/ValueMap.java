@@ -0,0 +1,178 @@
+package dev.amrw.clovelang.values;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.StringJoiner;
+
+import dev.amrw.clovelang.interpreter.ExceptionSemantic;
+import dev.amrw.clovelang.interpreter.Parser;
+import dev.amrw.clovelang.parser.ast.ASTIdentifier;
+import dev.amrw.clovelang.parser.ast.Node;
+import dev.amrw.clovelang.parser.ast.SimpleNode;
+
+/**
+ * Hash map of any Values to Values, made with obj->toMap() or list->toMap().
+ * Unlike the keys of a ValueObject, which are strings, the keys are compared
+ * with equals(), so 1 and '1' are different keys, and lists or objects can be
+ * keys, too. Like in Java, a key that's changed while it's in the map can't be
+ * found anymore. The keys keep the order in which they were first put.
+ *
+ * @author amrwc
+ */
+public class ValueMap extends ValueAbstract {
+	private final LinkedHashMap<Value, Value> internalValue;
+
+	public ValueMap() {
+		internalValue = new LinkedHashMap<Value, Value>();
+	}
+
+	public ValueMap(Map<Value, Value> map) {
+		internalValue = new LinkedHashMap<Value, Value>(map);
+	}
+
+	@Override
+	public String getName() {
+		return "ValueMap";
+	}
+
+	@Override
+	public int compare(Value v) {
+		return equals((ValueMap) v) ? 0 : 1;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		return o == this || (o instanceof ValueMap
+				&& internalValue.equals(((ValueMap) o).internalValue));
+	}
+
+	@Override
+	public int hashCode() {
+		return internalValue.hashCode();
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public LinkedHashMap<Value, Value> getRawValue() {
+		return internalValue;
+	}
+
+	/**
+	 * Gets the key of a dereference, e.g. 'b' in 'a.b' or the value of 'b' in
+	 * 'a[b]'.
+	 *
+	 * @param {SimpleNode} node -- node in question
+	 * @param {int}        childIndex -- index of the key node
+	 * @param {Parser}     p -- the instance of Parser currently running
+	 * @returns {Value} the key
+	 */
+	public static Value keyOf(SimpleNode node, int childIndex, Parser p) {
+		final Node key = node.jjtGetChild(childIndex);
+		if (key instanceof ASTIdentifier)
+			return new ValueString(((SimpleNode) key).tokenValue);
+		return p.doChild(node, childIndex);
+	}
+
+	/**
+	 * Dereferences a value in a nested expression.
+	 *
+	 * @param {SimpleNode} node -- node in question
+	 * @param {Value}      v -- value to be dereferenced
+	 * @param {int}        currChild -- current child of the node being parsed
+	 * @param {Parser}     p -- the instance of Parser currently running
+	 * @returns {Value} the dereferenced value
+	 */
+	@Override
+	public Value dereference(SimpleNode node, Value v, int currChild, Parser p) {
+		return ((ValueMap) v).get(keyOf(node, currChild, p));
+	}
+
+	/**
+	 * Execute a prototype function.
+	 *
+	 * @param {String}           protoFunc -- prototype function name
+	 * @param {ArrayList<Value>} protoArgs -- arguments for the function
+	 * @returns {Value} result of the prototype function
+	 */
+	@Override
+	public Value execProto(String protoFunc, ArrayList<Value> protoArgs) {
+		switch (protoFunc) {
+		case "copy":
+			return new ValueMap(internalValue);
+		case "entries":
+			return entries();
+		case "get":
+			return get(protoArgs.get(0));
+		case "getClass":
+			return new ValueString(getName());
+		case "has":
+			return ValueBoolean.of(internalValue.containsKey(protoArgs.get(0)));
+		case "keys":
+			return new ValueList(new ArrayList<Value>(internalValue.keySet()));
+		case "remove":
+			protoArgs.forEach(arg -> remove(arg));
+			break;
+		case "set":
+			set(protoArgs.get(0), protoArgs.get(1));
+			break;
+		case "size":
+		case "length":
+			return ValueInteger.valueOf(internalValue.size());
+		case "tryRemove":
+			protoArgs.forEach(arg -> internalValue.remove(arg));
+			break;
+		case "values":
+			return new ValueList(new ArrayList<Value>(internalValue.values()));
+		default:
+			throw new ExceptionSemantic("There is no prototype function \"" + protoFunc
+					+ "\" in ValueMap class.");
+		}
+
+		return null;
+	}
+
+	public Value get(Value key) {
+		final Value value = internalValue.get(key);
+		if (value != null)
+			return value;
+		throw new ExceptionSemantic("Map key \"" + key + "\" is undefined.");
+	}
+
+	public void set(Value key, Value v) {
+		if (key == null || v == null)
+			throw new ExceptionSemantic("Neither key nor value of a map can be null.");
+		internalValue.put(key, v);
+	}
+
+	private void remove(Value key) {
+		if (internalValue.remove(key) == null)
+			throw new ExceptionSemantic(
+					"This ValueMap does not contain the \"" + key + "\" key.");
+	}
+
+	// The keys and values in a list of [key, value] lists.
+	private ValueList entries() {
+		final ValueList entries = new ValueList();
+		internalValue.forEach((key, value) -> {
+			final ValueList entry = new ValueList();
+			entry.append(key);
+			entry.append(value);
+			entries.append(entry);
+		});
+		return entries;
+	}
+
+	// Returns the key-value pairs in '{key: value}' notation.
+	@Override
+	public String toString() {
+		final StringJoiner result = new StringJoiner(", ", "{", "}");
+		internalValue.forEach((key, value) -> result.add(key + ": " + value));
+		return result.toString();
+	}
+
+	@Override
+	public String stringValue() {
+		return toString();
+	}
+}
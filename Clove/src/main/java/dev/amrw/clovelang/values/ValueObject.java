@@ -3,26 +3,40 @@ package dev.amrw.clovelang.values;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Objects;
+import java.util.function.BiConsumer;
 
 import dev.amrw.clovelang.interpreter.ExceptionSemantic;
 import dev.amrw.clovelang.interpreter.Parser;
 import dev.amrw.clovelang.parser.ast.ASTIdentifier;
+import dev.amrw.clovelang.parser.ast.Node;
 import dev.amrw.clovelang.parser.ast.SimpleNode;
 
 /**
+ * An object keeps its values in slots, at the positions its Shape gives the
+ * keys. An object that had a key removed, or that has too many keys, keeps them
+ * in a HashMap instead, and always prints in the order of a HashMap.
+ *
  * @see https://docs.oracle.com/javase/8/docs/api/java/util/HashMap.html
  * @author amrwc
  */
 public class ValueObject extends ValueAbstract {
+	private static final Value[] NO_VALUES = new Value[0];
 
-	private HashMap<String, Value> internalValue = new HashMap<String, Value>();
+	// Shape and values, or null and the HashMap of the keys and values.
+	private Shape shape = Shape.EMPTY;
+	private Value[] values = NO_VALUES;
+	private HashMap<String, Value> dictionary = null;
 
 	public ValueObject() {
 	}
 
 	public ValueObject(HashMap<String, Value> valueObject) {
-		internalValue = valueObject;
+		shape = null;
+		values = null;
+		dictionary = valueObject;
 	}
 
 	@Override
@@ -32,14 +46,58 @@ public class ValueObject extends ValueAbstract {
 
 	@Override
 	public int compare(Value v) {
-		final HashMap<String, Value> map = ((ValueObject) v).internalValue;
-		return internalValue.equals(map) ? 0 : 1;
+		return equals((ValueObject) v) ? 0 : 1;
+	}
+
+	/** Equal to an object with equal values of the same keys, in any order. */
+	@Override
+	public boolean equals(Object o) {
+		if (o == this)
+			return true;
+		if (!(o instanceof ValueObject))
+			return false;
+
+		final ValueObject object = (ValueObject) o;
+		if (shape != null && shape == object.shape)
+			return Arrays.equals(values, 0, shape.size(), object.values, 0, shape.size());
+		return toMap().equals(object.toMap());
+	}
+
+	/** Hash of the keys and values, like HashMap.hashCode() of them. */
+	@Override
+	public int hashCode() {
+		if (shape == null)
+			return dictionary.hashCode();
+		int hash = 0;
+		for (int slot = 0; slot < shape.size(); slot++)
+			hash += shape.keyAt(slot).hashCode() ^ Objects.hashCode(values[slot]);
+		return hash;
 	}
 
 	@SuppressWarnings("unchecked")
 	@Override
 	public HashMap<String, Value> getRawValue() {
-		return internalValue;
+		return toDictionary();
+	}
+
+	// The keys and values in a HashMap, new if the object has a shape.
+	private HashMap<String, Value> toMap() {
+		if (shape == null)
+			return dictionary;
+		final HashMap<String, Value> map = new HashMap<String, Value>();
+		for (int slot = 0; slot < shape.size(); slot++)
+			map.put(shape.keyAt(slot), values[slot]);
+		return map;
+	}
+
+	// Move the keys and values to a HashMap for good, e.g. to remove a key.
+	private HashMap<String, Value> toDictionary() {
+		if (shape != null) {
+			dictionary = toMap();
+			shape = null;
+			values = null;
+		}
+		return dictionary;
 	}
 
 	/**
@@ -54,10 +112,11 @@ public class ValueObject extends ValueAbstract {
 	@Override
 	public Value dereference(SimpleNode node, Value v, int currChild, Parser p) {
 		final ValueObject valueObject = (ValueObject) v;
-		final String keyName = (node.jjtGetChild(currChild) instanceof ASTIdentifier)
-				? Parser.getTokenOfChild(node, currChild)
-				: p.doChild(node, currChild).toString();
-		return valueObject.get(keyName);
+		final Node key = node.jjtGetChild(currChild);
+		if (key instanceof ASTIdentifier)
+			return valueObject.get(((SimpleNode) key).tokenValue,
+					InlineCache.of((SimpleNode) key));
+		return valueObject.get(p.doChild(node, currChild).toString());
 	}
 
 	/**
@@ -75,12 +134,16 @@ public class ValueObject extends ValueAbstract {
 			return new ValueString(getName());
 		case "keys":
 			return keys();
+		case "persistent":
+			return persistent();
 		case "remove":
 			protoArgs.forEach(arg -> remove(arg.stringValue()));
 			break;
 		case "size":
 		case "length":
-			return new ValueInteger(size());
+			return ValueInteger.valueOf(size());
+		case "toMap":
+			return toValueMap();
 		case "tryRemove":
 			protoArgs.forEach(arg -> tryRemove(arg.stringValue()));
 			break;
@@ -93,11 +156,28 @@ public class ValueObject extends ValueAbstract {
 	}
 
 	public void add(String name, Value v) {
-		internalValue.putIfAbsent(name, v);
+		if (shape == null)
+			dictionary.putIfAbsent(name, v);
+		else {
+			final int slot = shape.slotOf(name);
+			if (slot < 0 || values[slot] == null)
+				put(slot, name, v);
+		}
 	}
 
 	public Value get(String name) {
-		final Value value = internalValue.get(name);
+		return get(name, null);
+	}
+
+	/** Get the value of a key, with the inline cache of an identifier key node. */
+	public Value get(String name, InlineCache cache) {
+		final Value value;
+		if (shape != null) {
+			final int slot = slotOf(name, cache);
+			value = (slot >= 0) ? values[slot] : null;
+		} else
+			value = dictionary.get(name);
+
 		if (value != null)
 			return value;
 		throw new ExceptionSemantic(
@@ -105,32 +185,89 @@ public class ValueObject extends ValueAbstract {
 	}
 
 	public void set(String name, Value v) {
+		set(name, v, null);
+	}
+
+	/** Set the value of a key, with the inline cache of an identifier key node. */
+	public void set(String name, Value v, InlineCache cache) {
 		if (name == null || name == "null" || v == null)
 			throw new ExceptionSemantic(
 					"Neither key nor value of an object can be null.");
-		internalValue.put(name, v);
+		if (shape == null)
+			dictionary.put(name, v);
+		else
+			put(slotOf(name, cache), name, v);
+	}
+
+	private int slotOf(String name, InlineCache cache) {
+		return (cache != null) ? cache.slotOf(shape, name) : shape.slotOf(name);
+	}
+
+	// Put the value in the slot of the key, or add the key if the slot is -1.
+	private void put(int slot, String name, Value v) {
+		if (slot >= 0) {
+			values[slot] = v;
+			return;
+		}
+		if (shape.size() == Shape.MAX_KEYS) {
+			toDictionary().put(name, v);
+			return;
+		}
+
+		shape = shape.with(name);
+		if (values.length < shape.size())
+			values = Arrays.copyOf(values, Math.max(4, values.length * 2));
+		values[shape.size() - 1] = v;
+	}
+
+	private boolean containsKey(String name) {
+		return (shape != null) ? shape.slotOf(name) >= 0 : dictionary.containsKey(name);
 	}
 
 	private void remove(String name) {
-		if (internalValue.containsKey(name))
-			internalValue.remove(name);
+		if (containsKey(name))
+			toDictionary().remove(name);
 		else
 			throw new ExceptionSemantic(
 					"This ValueObject does not contain the \"" + name + "\" key.");
 	}
 
 	private void tryRemove(String name) {
-		internalValue.remove(name);
+		if (containsKey(name))
+			toDictionary().remove(name);
+	}
+
+	// Go through the keys and values in the order of a HashMap with the same keys.
+	private void forEach(BiConsumer<String, Value> action) {
+		if (shape == null) {
+			dictionary.forEach(action);
+			return;
+		}
+		for (final int slot : shape.order())
+			action.accept(shape.keyAt(slot), values[slot]);
+	}
+
+	// The keys, as strings, and values in a ValueMap.
+	private ValueMap toValueMap() {
+		final ValueMap map = new ValueMap();
+		forEach((key, value) -> map.set(new ValueString(key), value));
+		return map;
+	}
+
+	// The keys and values in a ValuePersistentObject.
+	private ValuePersistentObject persistent() {
+		final ValuePersistentObject[] object = { ValuePersistentObject.EMPTY };
+		forEach((key, value) -> object[0] = object[0].with(key, value));
+		return object[0];
 	}
 
 	// Returns the key-value pairs in '{key: value}' notation.
 	@Override
 	public String toString() {
-		if (internalValue.size() == 0)
+		if (size() == 0)
 			return "{}";
-		String result = "{";
-		for (final HashMap.Entry<String, Value> entry : internalValue.entrySet())
-			result += entry.getKey() + ": " + entry.getValue() + ", ";
+		final StringBuilder result = new StringBuilder("{");
+		forEach((key, value) -> result.append(key + ": " + value + ", "));
 		return result.substring(0, result.length() - 2) + "}";
 	}
 
@@ -147,10 +284,10 @@ public class ValueObject extends ValueAbstract {
 	 * @returns url-encoded string
 	 */
 	public String toUrlString() {
-		return internalValue.entrySet().stream()
-				.map(p -> urlEncUTF8(p.getKey().toString()) + "="
-						+ urlEncUTF8(p.getValue().toString()))
-				.reduce((p1, p2) -> p1 + "&" + p2).orElse("");
+		final ArrayList<String> pairs = new ArrayList<String>();
+		forEach((key, value) -> pairs
+				.add(urlEncUTF8(key.toString()) + "=" + urlEncUTF8(value.toString())));
+		return String.join("&", pairs);
 	}
 
 	private String urlEncUTF8(String s) {
@@ -162,7 +299,7 @@ public class ValueObject extends ValueAbstract {
 	}
 
 	public int size() {
-		return internalValue.size();
+		return (shape != null) ? shape.size() : dictionary.size();
 	}
 
 	/**
@@ -172,7 +309,7 @@ public class ValueObject extends ValueAbstract {
 	 */
 	private ValueList keys() {
 		final ValueList keys = new ValueList();
-		internalValue.keySet().forEach(key -> keys.append(new ValueString(key)));
+		forEach((key, value) -> keys.append(new ValueString(key)));
 		return keys;
 	}
 }
@@ -0,0 +1,320 @@
+package dev.amrw.clovelang.values;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.StringJoiner;
+
+import dev.amrw.clovelang.interpreter.ExceptionSemantic;
+import dev.amrw.clovelang.interpreter.Parser;
+import dev.amrw.clovelang.parser.ast.SimpleNode;
+
+/**
+ * Immutable list, made with list->persistent(). Its prototype functions that
+ * would change a ValueList return a new version instead, which shares all but
+ * the path to the changed element with the old one. The elements are kept in
+ * a trie of 32-wide nodes, with the last up to 32 of them in the tail.
+ *
+ * @see https://hypirion.com/musings/understanding-persistent-vector-pt-1
+ * @author amrwc
+ */
+public class ValuePersistentList extends ValueAbstract {
+	private static final int BITS = 5;
+	private static final int WIDTH = 1 << BITS;
+	private static final int MASK = WIDTH - 1;
+
+	/** The list without elements. */
+	public static final ValuePersistentList EMPTY = new ValuePersistentList(0, BITS,
+			new Object[WIDTH], new Object[0]);
+
+	private final int size;
+	private final int shift;
+	private final Object[] root;
+	private final Object[] tail;
+
+	private ValuePersistentList(int size, int shift, Object[] root, Object[] tail) {
+		this.size = size;
+		this.shift = shift;
+		this.root = root;
+		this.tail = tail;
+	}
+
+	@Override
+	public String getName() {
+		return "ValuePersistentList";
+	}
+
+	@Override
+	public int compare(Value v) {
+		return equals((ValuePersistentList) v) ? 0 : 1;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (o == this)
+			return true;
+		if (!(o instanceof ValuePersistentList) || ((ValuePersistentList) o).size != size)
+			return false;
+
+		final ValuePersistentList list = (ValuePersistentList) o;
+		for (int i = 0; i < size; i++) {
+			if (!Objects.equals(get(i), list.get(i)))
+				return false;
+		}
+		return true;
+	}
+
+	/** Hash of the elements in order, like ValueList.hashCode(). */
+	@Override
+	public int hashCode() {
+		int hash = 1;
+		for (int i = 0; i < size; i++)
+			hash = 31 * hash + Objects.hashCode(get(i));
+		return hash;
+	}
+
+	/** A new ArrayList of the elements, as the list itself can't be changed. */
+	@SuppressWarnings("unchecked")
+	@Override
+	public ArrayList<Value> getRawValue() {
+		final ArrayList<Value> elements = new ArrayList<Value>(size);
+		for (int i = 0; i < size; i++)
+			elements.add(get(i));
+		return elements;
+	}
+
+	/**
+	 * Dereferences a value in a nested expression.
+	 *
+	 * @param {SimpleNode} node -- node in question
+	 * @param {Value}      v -- value to be dereferenced
+	 * @param {int}        currChild -- current child of the node being parsed
+	 * @param {Parser}     p -- the instance of Parser currently running
+	 * @returns {Value} the dereferenced value
+	 */
+	@Override
+	public Value dereference(SimpleNode node, Value v, int currChild, Parser p) {
+		return ((ValuePersistentList) v).get(p.executeIndex(node, currChild));
+	}
+
+	/**
+	 * Execute a prototype function.
+	 *
+	 * @param {String}           protoFunc -- prototype function name
+	 * @param {ArrayList<Value>} protoArgs -- arguments for the function
+	 * @returns {Value} result of the prototype function
+	 */
+	@Override
+	public Value execProto(String protoFunc, ArrayList<Value> protoArgs) {
+		switch (protoFunc) {
+		case "append":
+		case "push": {
+			ValuePersistentList list = this;
+			for (final Value arg : protoArgs)
+				list = list.append(arg);
+			return list;
+		}
+		case "copy":
+		case "persistent":
+			return this;
+		case "getClass":
+			return new ValueString(getName());
+		case "indexOf":
+			return findIndex(protoArgs.get(0));
+		case "mutable":
+			return new ValueList(getRawValue());
+		case "pop":
+			return pop();
+		case "size":
+		case "length":
+			return ValueInteger.valueOf(size);
+		case "with":
+			return with(indexArgument(protoArgs.get(0), protoFunc), protoArgs.get(1));
+		default:
+			throw new ExceptionSemantic("There is no prototype function \"" + protoFunc
+					+ "\" in ValuePersistentList class.");
+		}
+	}
+
+	public int size() {
+		return size;
+	}
+
+	// Index of the first element in the tail.
+	private int tailOffset() {
+		return (size < WIDTH) ? 0 : ((size - 1) >>> BITS) << BITS;
+	}
+
+	// The leaf node, or the tail, with the element of the index.
+	private Object[] leafFor(int i) {
+		if (i >= tailOffset())
+			return tail;
+		Object[] node = root;
+		for (int level = shift; level > 0; level -= BITS)
+			node = (Object[]) node[(i >>> level) & MASK];
+		return node;
+	}
+
+	public Value get(int i) {
+		checkBounds(i);
+		return (Value) leafFor(i)[i & MASK];
+	}
+
+	private void checkBounds(int i) {
+		if (i < 0 || size <= i)
+			throw new ExceptionSemantic("The index " + i
+					+ " is out of bounds of the list with length " + size + ".");
+	}
+
+	// The index passed into a prototype function, which must be an integer.
+	private static int indexArgument(Value v, String protoFunc) {
+		if (!(v instanceof ValueInteger))
+			throw new ExceptionSemantic("The index passed into ValuePersistentList."
+					+ protoFunc + "() must be an integer.");
+		return ((ValueInteger) v).intValue();
+	}
+
+	/** The list with the value appended. */
+	public ValuePersistentList append(Value v) {
+		if (v == null)
+			throw new ExceptionSemantic(
+					"The argument for ValuePersistentList.append() cannot be null.");
+
+		// Room in the tail.
+		if (size - tailOffset() < WIDTH) {
+			final Object[] newTail = Arrays.copyOf(tail, tail.length + 1);
+			newTail[tail.length] = v;
+			return new ValuePersistentList(size + 1, shift, root, newTail);
+		}
+
+		// The full tail goes to the trie, which grows a level if the root is full.
+		final Object[] newRoot;
+		int newShift = shift;
+		if ((size >>> BITS) > (1 << shift)) {
+			newRoot = new Object[WIDTH];
+			newRoot[0] = root;
+			newRoot[1] = newPath(shift, tail);
+			newShift += BITS;
+		} else
+			newRoot = pushTail(shift, root, tail);
+		return new ValuePersistentList(size + 1, newShift, newRoot, new Object[] { v });
+	}
+
+	private Object[] pushTail(int level, Object[] parent, Object[] tailNode) {
+		final int subidx = ((size - 1) >>> level) & MASK;
+		final Object[] node = parent.clone();
+		if (level == BITS)
+			node[subidx] = tailNode;
+		else {
+			final Object[] child = (Object[]) parent[subidx];
+			node[subidx] = (child != null) ? pushTail(level - BITS, child, tailNode)
+					: newPath(level - BITS, tailNode);
+		}
+		return node;
+	}
+
+	private static Object[] newPath(int level, Object[] node) {
+		if (level == 0)
+			return node;
+		final Object[] path = new Object[WIDTH];
+		path[0] = newPath(level - BITS, node);
+		return path;
+	}
+
+	/** The list with the element of the index replaced by the value. */
+	public ValuePersistentList with(int i, Value v) {
+		if (i < 0)
+			throw new ExceptionSemantic(
+					"The index in ValuePersistentList cannot be negative.");
+		if (v == null)
+			throw new ExceptionSemantic(
+					"The Value passed into ValuePersistentList.with() cannot be null.");
+		checkBounds(i);
+
+		if (i >= tailOffset()) {
+			final Object[] newTail = tail.clone();
+			newTail[i & MASK] = v;
+			return new ValuePersistentList(size, shift, root, newTail);
+		}
+		return new ValuePersistentList(size, shift, with(shift, root, i, v), tail);
+	}
+
+	private static Object[] with(int level, Object[] node, int i, Value v) {
+		final Object[] newNode = node.clone();
+		if (level == 0)
+			newNode[i & MASK] = v;
+		else {
+			final int subidx = (i >>> level) & MASK;
+			newNode[subidx] = with(level - BITS, (Object[]) node[subidx], i, v);
+		}
+		return newNode;
+	}
+
+	/** The list without its last element. */
+	public ValuePersistentList pop() {
+		if (size == 0)
+			throw new ExceptionSemantic("Cannot pop from an empty ValuePersistentList.");
+		if (size == 1)
+			return EMPTY;
+		if (size - tailOffset() > 1)
+			return new ValuePersistentList(size - 1, shift, root,
+					Arrays.copyOf(tail, tail.length - 1));
+
+		// The tail becomes the last leaf of the trie, which may lose a level.
+		final Object[] newTail = leafFor(size - 2);
+		Object[] newRoot = popTail(shift, root);
+		int newShift = shift;
+		if (newRoot == null)
+			newRoot = new Object[WIDTH];
+		if (shift > BITS && newRoot[1] == null) {
+			newRoot = (Object[]) newRoot[0];
+			newShift -= BITS;
+		}
+		return new ValuePersistentList(size - 1, newShift, newRoot, newTail);
+	}
+
+	private Object[] popTail(int level, Object[] node) {
+		final int subidx = ((size - 2) >>> level) & MASK;
+		if (level > BITS) {
+			final Object[] child = popTail(level - BITS, (Object[]) node[subidx]);
+			if (child == null && subidx == 0)
+				return null;
+			final Object[] newNode = node.clone();
+			newNode[subidx] = child;
+			return newNode;
+		}
+		if (subidx == 0)
+			return null;
+		final Object[] newNode = node.clone();
+		newNode[subidx] = null;
+		return newNode;
+	}
+
+	/**
+	 * Find the index of a Value in the list. Returns -1 if it's not found.
+	 *
+	 * @param {Value} v -- Value to be found
+	 * @return {ValueInteger} index of the Value in the list
+	 */
+	private Value findIndex(Value v) {
+		final String strVal = v.stringValue();
+		for (int i = 0; i < size; i++) {
+			if (get(i).stringValue().equals(strVal))
+				return ValueInteger.valueOf(i);
+		}
+		return ValueInteger.valueOf(-1);
+	}
+
+	@Override
+	public String toString() {
+		final StringJoiner strVal = new StringJoiner(", ", "[", "]");
+		for (int i = 0; i < size; i++)
+			strVal.add(get(i).toString());
+		return strVal.toString();
+	}
+
+	@Override
+	public String stringValue() {
+		return toString();
+	}
+}
@@ -0,0 +1,424 @@
+package dev.amrw.clovelang.values;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.StringJoiner;
+import java.util.function.BiConsumer;
+
+import dev.amrw.clovelang.interpreter.ExceptionSemantic;
+import dev.amrw.clovelang.interpreter.Parser;
+import dev.amrw.clovelang.parser.ast.ASTIdentifier;
+import dev.amrw.clovelang.parser.ast.Node;
+import dev.amrw.clovelang.parser.ast.SimpleNode;
+
+/**
+ * Immutable object, made with obj->persistent(). Its prototype functions that
+ * would change a ValueObject return a new version instead, which shares all but
+ * the path to the changed key with the old one. The keys are kept in a hash
+ * array mapped trie, where each node has a bitmap of the 5-bit fragments of the
+ * hashes it holds, and an entry for each of them.
+ *
+ * @see https://lampwww.epfl.ch/papers/idealhashtrees.pdf
+ * @author amrwc
+ */
+public class ValuePersistentObject extends ValueAbstract {
+	private static final int BITS = 5;
+	private static final int MASK = (1 << BITS) - 1;
+
+	/** The object without keys. */
+	public static final ValuePersistentObject EMPTY = new ValuePersistentObject(null, 0);
+
+	private final TrieNode root;
+	private final int size;
+
+	private ValuePersistentObject(TrieNode root, int size) {
+		this.root = root;
+		this.size = size;
+	}
+
+	@Override
+	public String getName() {
+		return "ValuePersistentObject";
+	}
+
+	@Override
+	public int compare(Value v) {
+		return equals((ValuePersistentObject) v) ? 0 : 1;
+	}
+
+	/** Equal to an object with equal values of the same keys, in any order. */
+	@Override
+	public boolean equals(Object o) {
+		if (o == this)
+			return true;
+		if (!(o instanceof ValuePersistentObject)
+				|| ((ValuePersistentObject) o).size != size)
+			return false;
+
+		final ValuePersistentObject object = (ValuePersistentObject) o;
+		final boolean[] equal = { true };
+		forEach((key, value) -> equal[0] &= value.equals(object.find(key)));
+		return equal[0];
+	}
+
+	/** Hash of the keys and values, like HashMap.hashCode() of them. */
+	@Override
+	public int hashCode() {
+		final int[] hash = { 0 };
+		forEach((key, value) -> hash[0] += key.hashCode() ^ value.hashCode());
+		return hash[0];
+	}
+
+	/** A new HashMap of the keys and values, as the object itself can't be changed. */
+	@SuppressWarnings("unchecked")
+	@Override
+	public HashMap<String, Value> getRawValue() {
+		final HashMap<String, Value> map = new HashMap<String, Value>();
+		forEach(map::put);
+		return map;
+	}
+
+	/**
+	 * Dereferences a value in a nested expression.
+	 *
+	 * @param {SimpleNode} node -- node in question
+	 * @param {Value}      v -- value to be dereferenced
+	 * @param {int}        currChild -- current child of the node being parsed
+	 * @param {Parser}     p -- the instance of Parser currently running
+	 * @returns {Value} the dereferenced value
+	 */
+	@Override
+	public Value dereference(SimpleNode node, Value v, int currChild, Parser p) {
+		final Node key = node.jjtGetChild(currChild);
+		return ((ValuePersistentObject) v).get((key instanceof ASTIdentifier)
+				? ((SimpleNode) key).tokenValue
+				: p.doChild(node, currChild).toString());
+	}
+
+	/**
+	 * Execute a prototype function.
+	 *
+	 * @param {String}           protoFunc -- prototype function name
+	 * @param {ArrayList<Value>} protoArgs -- arguments for the function
+	 * @returns {Value} result of the prototype function
+	 */
+	@Override
+	public Value execProto(String protoFunc, ArrayList<Value> protoArgs) {
+		switch (protoFunc) {
+		case "copy":
+		case "persistent":
+			return this;
+		case "getClass":
+			return new ValueString(getName());
+		case "keys":
+			return keys();
+		case "mutable":
+			return mutable();
+		case "remove": {
+			ValuePersistentObject object = this;
+			for (final Value arg : protoArgs)
+				object = object.without(arg.stringValue(), true);
+			return object;
+		}
+		case "size":
+		case "length":
+			return ValueInteger.valueOf(size);
+		case "tryRemove": {
+			ValuePersistentObject object = this;
+			for (final Value arg : protoArgs)
+				object = object.without(arg.stringValue(), false);
+			return object;
+		}
+		case "with":
+			return with(protoArgs.get(0).stringValue(), protoArgs.get(1));
+		default:
+			throw new ExceptionSemantic("There is no prototype function \"" + protoFunc
+					+ "\" in ValuePersistentObject class.");
+		}
+	}
+
+	private static int hashOf(String key) {
+		final int h = key.hashCode();
+		return h ^ (h >>> 16);
+	}
+
+	public Value get(String name) {
+		final Value value = find(name);
+		if (value != null)
+			return value;
+		throw new ExceptionSemantic(
+				"Object key \"" + name + "\" is undefined or equal to null.");
+	}
+
+	// The value of the key, or null if the object doesn't have it.
+	private Value find(String name) {
+		return (root != null) ? root.find(0, hashOf(name), name) : null;
+	}
+
+	/** The object with the key set to the value. */
+	public ValuePersistentObject with(String name, Value v) {
+		if (name == null || name == "null" || v == null)
+			throw new ExceptionSemantic(
+					"Neither key nor value of an object can be null.");
+
+		final boolean[] added = new boolean[1];
+		final TrieNode newRoot = ((root != null) ? root : BitmapNode.EMPTY).with(0,
+				hashOf(name), name, v, added);
+		if (newRoot == root)
+			return this;
+		return new ValuePersistentObject(newRoot, added[0] ? size + 1 : size);
+	}
+
+	// The object without the key, which it has to have if 'strict'.
+	private ValuePersistentObject without(String name, boolean strict) {
+		final TrieNode newRoot = (root != null) ? root.without(0, hashOf(name), name)
+				: null;
+		if (newRoot == root) {
+			if (strict)
+				throw new ExceptionSemantic("This ValuePersistentObject does not contain the"
+						+ " \"" + name + "\" key.");
+			return this;
+		}
+		return new ValuePersistentObject(newRoot, size - 1);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	private void forEach(BiConsumer<String, Value> action) {
+		if (root != null)
+			root.forEach(action);
+	}
+
+	private ValueObject mutable() {
+		final ValueObject object = new ValueObject();
+		forEach(object::add);
+		return object;
+	}
+
+	private ValueList keys() {
+		final ValueList keys = new ValueList();
+		forEach((key, value) -> keys.append(new ValueString(key)));
+		return keys;
+	}
+
+	// Returns the key-value pairs in '{key: value}' notation.
+	@Override
+	public String toString() {
+		final StringJoiner result = new StringJoiner(", ", "{", "}");
+		forEach((key, value) -> result.add(key + ": " + value));
+		return result.toString();
+	}
+
+	@Override
+	public String stringValue() {
+		return toString();
+	}
+
+	/**
+	 * A node of the trie. Changing it returns a new node, or the same one if
+	 * nothing changed, and removing its last key returns null.
+	 */
+	private interface TrieNode {
+		Value find(int shift, int hash, String key);
+
+		TrieNode with(int shift, int hash, String key, Value value, boolean[] added);
+
+		TrieNode without(int shift, int hash, String key);
+
+		void forEach(BiConsumer<String, Value> action);
+	}
+
+	/**
+	 * Node with an entry for each 5-bit fragment of the hash in its bitmap. The
+	 * entry is a key and its value, or null and the node of the keys that share
+	 * the fragment.
+	 */
+	private static final class BitmapNode implements TrieNode {
+		static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+		final int bitmap;
+		final Object[] entries;
+
+		BitmapNode(int bitmap, Object[] entries) {
+			this.bitmap = bitmap;
+			this.entries = entries;
+		}
+
+		static int bit(int hash, int shift) {
+			return 1 << ((hash >>> shift) & MASK);
+		}
+
+		int index(int bit) {
+			return Integer.bitCount(bitmap & (bit - 1));
+		}
+
+		@Override
+		public Value find(int shift, int hash, String key) {
+			final int bit = bit(hash, shift);
+			if ((bitmap & bit) == 0)
+				return null;
+			final int i = 2 * index(bit);
+			if (entries[i] == null)
+				return ((TrieNode) entries[i + 1]).find(shift + BITS, hash, key);
+			return key.equals(entries[i]) ? (Value) entries[i + 1] : null;
+		}
+
+		@Override
+		public TrieNode with(int shift, int hash, String key, Value value,
+				boolean[] added) {
+			final int bit = bit(hash, shift);
+			final int i = 2 * index(bit);
+			if ((bitmap & bit) == 0) {
+				added[0] = true;
+				final Object[] newEntries = new Object[entries.length + 2];
+				System.arraycopy(entries, 0, newEntries, 0, i);
+				newEntries[i] = key;
+				newEntries[i + 1] = value;
+				System.arraycopy(entries, i, newEntries, i + 2, entries.length - i);
+				return new BitmapNode(bitmap | bit, newEntries);
+			}
+
+			final Object entryKey = entries[i];
+			final Object entryValue = entries[i + 1];
+			final Object newEntry;
+			if (entryKey == null) {
+				newEntry = ((TrieNode) entryValue).with(shift + BITS, hash, key, value,
+						added);
+				if (newEntry == entryValue)
+					return this;
+			} else if (key.equals(entryKey)) {
+				if (value == entryValue)
+					return this;
+				newEntry = value;
+			} else {
+				// Both keys move to a new node, by the next fragments of their hashes.
+				added[0] = true;
+				newEntry = node(shift + BITS, (String) entryKey, (Value) entryValue, hash, key,
+						value);
+			}
+
+			final Object[] newEntries = entries.clone();
+			if (entryKey != null && newEntry instanceof TrieNode)
+				newEntries[i] = null;
+			newEntries[i + 1] = newEntry;
+			return new BitmapNode(bitmap, newEntries);
+		}
+
+		// Node with two keys, which collide if their whole hashes are equal.
+		private static TrieNode node(int shift, String key1, Value value1, int hash2,
+				String key2, Value value2) {
+			final int hash1 = hashOf(key1);
+			if (hash1 == hash2)
+				return new CollisionNode(hash1, new Object[] { key1, value1, key2, value2 });
+			final boolean[] added = new boolean[1];
+			return EMPTY.with(shift, hash1, key1, value1, added).with(shift, hash2, key2,
+					value2, added);
+		}
+
+		@Override
+		public TrieNode without(int shift, int hash, String key) {
+			final int bit = bit(hash, shift);
+			if ((bitmap & bit) == 0)
+				return this;
+			final int i = 2 * index(bit);
+			if (entries[i] == null) {
+				final TrieNode child = (TrieNode) entries[i + 1];
+				final TrieNode newChild = child.without(shift + BITS, hash, key);
+				if (newChild == child)
+					return this;
+				if (newChild != null) {
+					final Object[] newEntries = entries.clone();
+					newEntries[i + 1] = newChild;
+					return new BitmapNode(bitmap, newEntries);
+				}
+			} else if (!key.equals(entries[i]))
+				return this;
+
+			if (bitmap == bit)
+				return null;
+			final Object[] newEntries = new Object[entries.length - 2];
+			System.arraycopy(entries, 0, newEntries, 0, i);
+			System.arraycopy(entries, i + 2, newEntries, i, entries.length - i - 2);
+			return new BitmapNode(bitmap ^ bit, newEntries);
+		}
+
+		@Override
+		public void forEach(BiConsumer<String, Value> action) {
+			for (int i = 0; i < entries.length; i += 2) {
+				if (entries[i] == null)
+					((TrieNode) entries[i + 1]).forEach(action);
+				else
+					action.accept((String) entries[i], (Value) entries[i + 1]);
+			}
+		}
+	}
+
+	/** Node of the keys with equal hashes, as a list of keys and values. */
+	private static final class CollisionNode implements TrieNode {
+		final int hash;
+		final Object[] entries;
+
+		CollisionNode(int hash, Object[] entries) {
+			this.hash = hash;
+			this.entries = entries;
+		}
+
+		int indexOf(String key) {
+			for (int i = 0; i < entries.length; i += 2) {
+				if (key.equals(entries[i]))
+					return i;
+			}
+			return -1;
+		}
+
+		@Override
+		public Value find(int shift, int hash, String key) {
+			final int i = (hash == this.hash) ? indexOf(key) : -1;
+			return (i >= 0) ? (Value) entries[i + 1] : null;
+		}
+
+		@Override
+		public TrieNode with(int shift, int hash, String key, Value value,
+				boolean[] added) {
+			if (hash != this.hash)
+				return new BitmapNode(BitmapNode.bit(this.hash, shift),
+						new Object[] { null, this }).with(shift, hash, key, value, added);
+
+			final int i = indexOf(key);
+			if (i >= 0) {
+				if (entries[i + 1] == value)
+					return this;
+				final Object[] newEntries = entries.clone();
+				newEntries[i + 1] = value;
+				return new CollisionNode(hash, newEntries);
+			}
+			added[0] = true;
+			final Object[] newEntries = new Object[entries.length + 2];
+			System.arraycopy(entries, 0, newEntries, 0, entries.length);
+			newEntries[entries.length] = key;
+			newEntries[entries.length + 1] = value;
+			return new CollisionNode(hash, newEntries);
+		}
+
+		@Override
+		public TrieNode without(int shift, int hash, String key) {
+			final int i = (hash == this.hash) ? indexOf(key) : -1;
+			if (i < 0)
+				return this;
+			if (entries.length == 2)
+				return null;
+			final Object[] newEntries = new Object[entries.length - 2];
+			System.arraycopy(entries, 0, newEntries, 0, i);
+			System.arraycopy(entries, i + 2, newEntries, i, entries.length - i - 2);
+			return new CollisionNode(hash, newEntries);
+		}
+
+		@Override
+		public void forEach(BiConsumer<String, Value> action) {
+			for (int i = 0; i < entries.length; i += 2)
+				action.accept((String) entries[i], (Value) entries[i + 1]);
+		}
+	}
+}
@@ -109,8 +109,23 @@ public class ValueReflection extends ValueAbstract {
 
 		// ASTArgumentList
 		final SimpleNode argsNode = (SimpleNode) node.jjtGetChild(1);
+		final Value[] methodArgs = new Value[argsNode.jjtGetNumChildren()];
+		for (int i = 0; i < methodArgs.length; i++)
+			methodArgs[i] = p.doChild(argsNode, i);
 
-		final var args = ReflectionUtils.parseMethodArgs(argsNode, p);
+		return invoke(methodName, methodArgs);
+	}
+
+	/**
+	 * Invokes a Method from an instance, given the Method's name and its already
+	 * evaluated arguments.
+	 * 
+	 * @param {String}  methodName
+	 * @param {Value[]} methodArgs
+	 * @returns {Object} the Method's result
+	 */
+	public Object invoke(String methodName, Value[] methodArgs) {
+		final var args = ReflectionUtils.parseMethodArgs(methodArgs);
 
 		Object result = null;
 		try {
@@ -121,6 +136,7 @@ public class ValueReflection extends ValueAbstract {
 
 			// Invoke the method with the arguments.
 			result = method.invoke(internalValue, args.get("args"));
+			ReflectionUtils.copyBackLists(methodArgs, args.get("args"));
 		} catch (Exception e) {
 			e.printStackTrace();
 			throw new ExceptionSemantic("");
@@ -209,7 +225,7 @@ public class ValueReflection extends ValueAbstract {
 	public int compare(Value v) {
 		// If the internal value is a boolean...
 		if (internalValue instanceof Boolean)
-			return new ValueBoolean((boolean) internalValue).compare(v);
+			return ValueBoolean.of((boolean) internalValue).compare(v);
 
 		return NumberUtils.compareNumberValues(this, v);
 	}
@@ -223,6 +239,21 @@ public class ValueReflection extends ValueAbstract {
 			return theClass.equals(incomingClass) ? 0 : 1;
 	}
 
+	/** Equal to a reflection of an equal instance, or of the same class. */
+	@Override
+	public boolean equals(Object o) {
+		if (!(o instanceof ValueReflection))
+			return false;
+		final ValueReflection reflection = (ValueReflection) o;
+		return (internalValue != null) ? internalValue.equals(reflection.internalValue)
+				: reflection.internalValue == null && theClass.equals(reflection.theClass);
+	}
+
+	@Override
+	public int hashCode() {
+		return getRawValue().hashCode();
+	}
+
 	@SuppressWarnings("unchecked")
 	@Override
 	public Object getRawValue() {
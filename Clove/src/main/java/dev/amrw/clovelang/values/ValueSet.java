@@ -0,0 +1,111 @@
+package dev.amrw.clovelang.values;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.StringJoiner;
+
+import dev.amrw.clovelang.interpreter.ExceptionSemantic;
+
+/**
+ * Hash set of Values, made with list->toSet(), which tells whether it has an
+ * element in O(1) time. The elements are compared with equals(), like the keys
+ * of a ValueMap, and keep the order in which they were first added.
+ *
+ * @author amrwc
+ */
+public class ValueSet extends ValueAbstract {
+	private final LinkedHashSet<Value> internalValue;
+
+	public ValueSet() {
+		internalValue = new LinkedHashSet<Value>();
+	}
+
+	public ValueSet(Collection<Value> elements) {
+		internalValue = new LinkedHashSet<Value>(elements);
+	}
+
+	@Override
+	public String getName() {
+		return "ValueSet";
+	}
+
+	@Override
+	public int compare(Value v) {
+		return equals((ValueSet) v) ? 0 : 1;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		return o == this || (o instanceof ValueSet
+				&& internalValue.equals(((ValueSet) o).internalValue));
+	}
+
+	@Override
+	public int hashCode() {
+		return internalValue.hashCode();
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public LinkedHashSet<Value> getRawValue() {
+		return internalValue;
+	}
+
+	/**
+	 * Execute a prototype function.
+	 *
+	 * @param {String}           protoFunc -- prototype function name
+	 * @param {ArrayList<Value>} protoArgs -- arguments for the function
+	 * @returns {Value} result of the prototype function
+	 */
+	@Override
+	public Value execProto(String protoFunc, ArrayList<Value> protoArgs) {
+		switch (protoFunc) {
+		case "add":
+			internalValue.addAll(protoArgs);
+			break;
+		case "copy":
+			return new ValueSet(internalValue);
+		case "getClass":
+			return new ValueString(getName());
+		case "has":
+			return ValueBoolean.of(internalValue.contains(protoArgs.get(0)));
+		case "remove":
+			protoArgs.forEach(arg -> remove(arg));
+			break;
+		case "size":
+		case "length":
+			return ValueInteger.valueOf(internalValue.size());
+		case "toList":
+			return new ValueList(new ArrayList<Value>(internalValue));
+		case "tryRemove":
+			protoArgs.forEach(internalValue::remove);
+			break;
+		default:
+			throw new ExceptionSemantic("There is no prototype function \"" + protoFunc
+					+ "\" in ValueSet class.");
+		}
+
+		return null;
+	}
+
+	private void remove(Value v) {
+		if (!internalValue.remove(v))
+			throw new ExceptionSemantic(
+					"This ValueSet does not contain the \"" + v + "\" element.");
+	}
+
+	// Returns the elements in '{element, ...}' notation.
+	@Override
+	public String toString() {
+		final StringJoiner result = new StringJoiner(", ", "{", "}");
+		internalValue.forEach(element -> result.add(element.toString()));
+		return result.toString();
+	}
+
+	@Override
+	public String stringValue() {
+		return toString();
+	}
+}
@@ -41,7 +41,7 @@ public class ValueString extends ValueAbstract {
 	@Override
 	public Value dereference(SimpleNode node, Value v, int currChild, Parser p) {
 		final ValueString valueString = (ValueString) v;
-		final int index = (int) ((ValueInteger) p.doChild(node, currChild)).getRawValue();
+		final int index = p.executeIndex(node, currChild);
 		final String str = "" + valueString.stringValue().charAt(index);
 		return new ValueString(str);
 	}
@@ -68,7 +68,7 @@ public class ValueString extends ValueAbstract {
 	}
 
 	private Value length() {
-		return new ValueInteger(internalValue.length());
+		return ValueInteger.valueOf(internalValue.length());
 	}
 
 	@Override
@@ -87,6 +87,17 @@ public class ValueString extends ValueAbstract {
 		return internalValue.compareTo(v.stringValue());
 	}
 
+	@Override
+	public boolean equals(Object o) {
+		return o instanceof ValueString
+				&& internalValue.equals(((ValueString) o).internalValue);
+	}
+
+	@Override
+	public int hashCode() {
+		return internalValue.hashCode();
+	}
+
 	/** Add performs string concatenation. */
 	@Override
 	public Value add(Value v) {
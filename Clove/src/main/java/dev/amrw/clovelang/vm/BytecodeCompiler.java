@@ -0,0 +1,741 @@
+package dev.amrw.clovelang.vm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import dev.amrw.clovelang.interpreter.ExceptionSemantic;
+import dev.amrw.clovelang.interpreter.FunctionDefinition;
+import dev.amrw.clovelang.interpreter.Parser;
+import dev.amrw.clovelang.interpreter.SlotAddress;
+import dev.amrw.clovelang.parser.ast.*;
+import dev.amrw.clovelang.utils.NumberUtils;
+import dev.amrw.clovelang.values.*;
+
+/**
+ * Compiles the main program or a function body of a resolved Clove program into
+ * a Chunk of bytecode for the VirtualMachine.
+ *
+ * Statements leave the operand stack as they found it, expressions leave
+ * exactly one value on it. The compiler keeps track of the stack depth to know
+ * how big the stack of the chunk has to be.
+ *
+ * @author amrwc
+ */
+final class BytecodeCompiler implements CloveVisitor {
+	private int[] code = new int[64];
+	private int length = 0;
+	private final ArrayList<Object> constants = new ArrayList<Object>();
+	private int depth = 0;
+	private int maxDepth = 0;
+
+	private BytecodeCompiler() {
+	}
+
+	/** Compile the main program. */
+	static Chunk compileProgram(ASTCode node) {
+		final BytecodeCompiler compiler = new BytecodeCompiler();
+		compiler.compileStatements(node);
+		compiler.emit(Opcode.NULL, 1);
+		compiler.emit(Opcode.RETURN, -1);
+		return compiler.toChunk();
+	}
+
+	/**
+	 * Compile the body of a function, followed by its return expression, if it
+	 * has one, and the cleanup of its definitions.
+	 */
+	static Chunk compileFunction(FunctionDefinition fndef) {
+		final BytecodeCompiler compiler = new BytecodeCompiler();
+		final SimpleNode body = fndef.getFunctionBody();
+		compiler.compileStatements(body);
+		if (fndef.hasReturn())
+			compiler.compileChild(fndef.getFunctionReturnExpression(), 0);
+		else
+			compiler.emit(Opcode.NULL, 1);
+		compiler.compileCleanup(body, null);
+		compiler.emit(Opcode.RETURN, -1);
+		return compiler.toChunk();
+	}
+
+	private Chunk toChunk() {
+		return new Chunk(Arrays.copyOf(code, length), constants.toArray(), maxDepth);
+	}
+
+	/**
+	 * Emit an instruction, and return its position.
+	 *
+	 * @param opcode      -- one of the Opcodes
+	 * @param stackEffect -- how many values it pushes, minus how many it pops
+	 * @param operands    -- operands of the instruction
+	 */
+	private int emit(int opcode, int stackEffect, int... operands) {
+		final int size = length + operands.length + 1;
+		if (size > code.length)
+			code = Arrays.copyOf(code, Math.max(code.length * 2, size));
+
+		final int position = length;
+		code[length++] = opcode;
+		for (final int operand : operands)
+			code[length++] = operand;
+
+		depth += stackEffect;
+		maxDepth = Math.max(maxDepth, depth);
+		return position;
+	}
+
+	// Add a value to the constant pool and return its index.
+	private int constant(Object value) {
+		constants.add(value);
+		return constants.size() - 1;
+	}
+
+	// Point the jump emitted at the given position to the next instruction.
+	private void patch(int jump) {
+		code[jump + 1] = length;
+	}
+
+	// Compile a given node.
+	private void compile(Node node) {
+		node.jjtAccept(this, null);
+	}
+
+	// Compile a given child of the given node.
+	private void compileChild(SimpleNode node, int childIndex) {
+		compile(node.jjtGetChild(childIndex));
+	}
+
+	// Compile a given node as a statement, discarding the value it may leave.
+	private void compileStatement(Node node) {
+		final int before = depth;
+		compile(node);
+		while (depth > before)
+			emit(Opcode.POP, -1);
+	}
+
+	// Compile all children of the given node as statements.
+	private void compileStatements(SimpleNode node) {
+		for (int i = 0; i < node.jjtGetNumChildren(); i++)
+			compileStatement(node.jjtGetChild(i));
+	}
+
+	/**
+	 * Compile the key of a dereference. An identifier is the name of an object's
+	 * key; anything else is evaluated.
+	 */
+	private void compileKey(SimpleNode node, int childIndex) {
+		if (node.jjtGetChild(childIndex) instanceof ASTIdentifier)
+			emit(Opcode.CONST, 1,
+					constant(new ValueString(Parser.getTokenOfChild(node, childIndex))));
+		else
+			compileChild(node, childIndex);
+	}
+
+	// Throw the given message when the instruction is reached.
+	private void compileThrow(String message, int stackEffect) {
+		emit(Opcode.THROW, stackEffect, constant(message));
+	}
+
+	// Jump over the code emitted next if the test on the stack is false.
+	private int compileTest(String statement) {
+		return emit(Opcode.JUMP_IF_FALSE, -1, -1,
+				constant("The test expression of " + statement + " must be boolean."));
+	}
+
+	/**
+	 * Remove the definitions of the given scope, the same ones as
+	 * Parser.removeDefinitions().
+	 */
+	private void compileCleanup(SimpleNode node, SimpleNode init) {
+		for (final SimpleNode definition : Parser.collectDefinitions(node, init)) {
+			if (definition instanceof ASTDefinition)
+				emit(Opcode.CLEAR, 0, definition.address.getDepth(),
+						definition.address.getSlot());
+			else
+				emit(Opcode.REMOVE_FUNCTION, 0,
+						constant(Parser.getTokenOfChild(definition, 0)));
+		}
+	}
+
+	// Compile a binary operation.
+	private void compileBinary(SimpleNode node, int opcode) {
+		compileChild(node, 0);
+		compileChild(node, 1);
+		emit(opcode, -1);
+	}
+
+	// Compile a unary operation.
+	private void compileUnary(SimpleNode node, int opcode) {
+		compileChild(node, 0);
+		emit(opcode, 0);
+	}
+
+	// Index of an operator in the constant pool, or -1 if there isn't one.
+	private int operator(String operator) {
+		return (operator != null) ? constant(operator) : -1;
+	}
+
+	@Override
+	public Object visit(SimpleNode node, Object data) {
+		throw new ExceptionSemantic(node + ": node is not supported by the VM.");
+	}
+
+	@Override
+	public Object visit(ASTCode node, Object data) {
+		compileStatements(node);
+		return data;
+	}
+
+	/**************
+	 * Statements *
+	 **************/
+
+	@Override
+	public Object visit(ASTStatement node, Object data) {
+		compileStatements(node);
+		return data;
+	}
+
+	@Override
+	public Object visit(ASTCall node, Object data) {
+		compileInvocation(node, false);
+		return data;
+	}
+
+	/**
+	 * Compile a function call or invocation. A dereferenced callee is either a
+	 * method of a ValueReflection or a ValueFunction, the latter evaluated a
+	 * second time the same way the Parser does it.
+	 */
+	private void compileInvocation(SimpleNode node, boolean needsReturn) {
+		final SimpleNode fnnameNode = (SimpleNode) node.jjtGetChild(0);
+		final SimpleNode argumentsNode = (SimpleNode) node.jjtGetChild(1);
+		final int argc = argumentsNode.jjtGetNumChildren();
+
+		int end = -1;
+		if (fnnameNode.jjtGetNumChildren() > 0) {
+			compile(fnnameNode);
+			final int notReflection = emit(Opcode.JUMP_IF_NOT_REFLECTION, 0, -1);
+			compileChildren(argumentsNode);
+			emit(Opcode.INVOKE_METHOD, -argc,
+					constant(Parser.getTokenOfChild(fnnameNode, 0)), argc);
+			end = emit(Opcode.JUMP, 0, -1);
+
+			// The reflection isn't on the stack if the jump is taken.
+			depth--;
+			patch(notReflection);
+			compile(fnnameNode);
+			emit(Opcode.TO_FUNCTION, 0);
+		} else
+			emit(Opcode.RESOLVE, 1, constant(new CallSite(fnnameNode.tokenValue,
+					fnnameNode.address, needsReturn)));
+
+		emit(Opcode.INVOCATION, 1);
+		for (int i = 0; i < argc; i++) {
+			compileChild(argumentsNode, i);
+			emit(Opcode.ARGUMENT, -1);
+		}
+		emit(Opcode.CALL, -1);
+
+		if (end != -1)
+			patch(end);
+	}
+
+	// Compile all children of the given node as expressions.
+	private void compileChildren(SimpleNode node) {
+		for (int i = 0; i < node.jjtGetNumChildren(); i++)
+			compileChild(node, i);
+	}
+
+	@Override
+	public Object visit(ASTDefinition node, Object data) {
+		emit(Opcode.DEFINE, 0, constant(node.address));
+		compileStatement(node.jjtGetChild(0));
+		return data;
+	}
+
+	@Override
+	public Object visit(ASTDeclaration node, Object data) {
+		final String name = Parser.getTokenOfChild(node, 0);
+		if (node.defType == "constant") {
+			compileThrow("Constants must be initialised. Change the \"const\" keyword"
+					+ " before \"" + name + "\" to \"let\".", 0);
+			return data;
+		}
+
+		emit(Opcode.DECLARE, 0, constant(node.address));
+		if (node.isArrayWithCap)
+			compileChild(node, 1);
+		else if (node.isArrayDeclaration)
+			emit(Opcode.CONST, 1, constant(ValueInteger.valueOf(0)));
+		else
+			return data;
+
+		emit(Opcode.NEW_ARRAY, 0);
+		emit(Opcode.STORE, -1, node.address.getDepth(), node.address.getSlot());
+		return data;
+	}
+
+	@Override
+	public Object visit(ASTAssignment node, Object data) {
+		final SlotAddress address = node.address;
+		final String name = Parser.getTokenOfChild(node, 0);
+		final int numChildren = node.jjtGetNumChildren();
+
+		compileChild(node, numChildren - 1);
+		if (address == null) {
+			compileThrow("Variable or constant \"" + name + "\" is undefined.", -1);
+			return data;
+		}
+
+		// Normal variable (1 child in L-value).
+		if (numChildren <= 2) {
+			if (address.isConstant())
+				compileThrow("\"" + name + "\" is a constant and cannot be reassigned.",
+						-1);
+			else
+				emit(Opcode.ASSIGN, -1, address.getDepth(), address.getSlot(),
+						constant(name), operator(node.shorthandOperator));
+			return data;
+		}
+
+		// Traverse through the dereference to find the parent of the rightmost
+		// value to the left of the assignment operator.
+		final int limit = numChildren - 2;
+		emit(Opcode.LOAD, 1, address.getDepth(), address.getSlot(), constant(name));
+		for (int currChild = 1; currChild < limit; currChild++) {
+			compileKey(node, currChild);
+			emit(Opcode.DEREF, -1);
+		}
+
+		if (node.shorthandOperator != null) {
+			emit(Opcode.DUP, 1);
+			compileKey(node, limit);
+			emit(Opcode.DEREF, -1);
+			emit(Opcode.SHORTHAND, -1, constant(node.shorthandOperator));
+		}
+
+		compileKey(node, limit);
+		emit(Opcode.STORE_ELEMENT, -3);
+		return data;
+	}
+
+	@Override
+	public Object visit(ASTFunctionDefinition node, Object data) {
+		emit(Opcode.DEFINE_FUNCTION, 0, constant(node));
+		return data;
+	}
+
+	@Override
+	public Object visit(ASTBlock node, Object data) {
+		compileStatements(node);
+		compileCleanup(node, null);
+		return data;
+	}
+
+	@Override
+	public Object visit(ASTIfStatement node, Object data) {
+		compileChild(node, 0);
+		final int elseBranch = compileTest("an if statement");
+		compileStatement(node.jjtGetChild(1));
+		if (node.ifHasElse) {
+			final int end = emit(Opcode.JUMP, 0, -1);
+			patch(elseBranch);
+			compileStatement(node.jjtGetChild(2));
+			patch(end);
+		} else
+			patch(elseBranch);
+
+		compileCleanup(node, null);
+		return data;
+	}
+
+	@Override
+	public Object visit(ASTForLoop node, Object data) {
+		compileStatement(node.jjtGetChild(0));
+		final int top = length;
+		compileChild(node, 1);
+		final int exit = compileTest("a for loop");
+		compileStatement(node.jjtGetChild(3));
+		compileCleanup(node, null);
+		compileStatement(node.jjtGetChild(2));
+		emit(Opcode.JUMP, 0, top);
+		patch(exit);
+		compileCleanup(node, (SimpleNode) node.jjtGetChild(0));
+		return data;
+	}
+
+	@Override
+	public Object visit(ASTWhileLoop node, Object data) {
+		final int top = length;
+		compileChild(node, 0);
+		final int exit = compileTest("a while loop");
+		compileStatement(node.jjtGetChild(1));
+		compileCleanup(node, null);
+		emit(Opcode.JUMP, 0, top);
+		patch(exit);
+		return data;
+	}
+
+	@Override
+	public Object visit(ASTLog node, Object data) {
+		compilePrint(node);
+		return data;
+	}
+
+	@Override
+	public Object visit(ASTQuit node, Object data) {
+		compilePrint(node);
+		emit(Opcode.EXIT, 0);
+		return data;
+	}
+
+	// Print all the children of the given node, followed by a new line.
+	private void compilePrint(SimpleNode node) {
+		for (int i = 0; i < node.jjtGetNumChildren(); i++) {
+			compileChild(node, i);
+			emit(Opcode.PRINT, -1);
+		}
+		emit(Opcode.PRINTLN, 0);
+	}
+
+	@Override
+	public Object visit(ASTProtoInvoke node, Object data) {
+		compileChildren(node);
+		final int argc = node.jjtGetNumChildren() - 1;
+		emit(Opcode.PROTO, -argc, constant(node.tokenValue), argc);
+		return data;
+	}
+
+	@Override
+	public Object visit(ASTIncrementDecrement node, Object data) {
+		final SlotAddress address = node.address;
+		final String name = Parser.getTokenOfChild(node, 0);
+		final int numChildren = node.jjtGetNumChildren();
+
+		if (address == null) {
+			compileThrow("Variable \"" + name + "\" is undefined.", 1);
+			return data;
+		}
+
+		// Normal variable.
+		if (numChildren == 1) {
+			emit(Opcode.INCDEC, 1, address.getDepth(), address.getSlot(), constant(name),
+					constant(node.shorthandOperator));
+			return data;
+		}
+
+		// Traverse through the dereference to find the parent of the rightmost
+		// value.
+		emit(Opcode.INCDEC_TARGET, 1, address.getDepth(), address.getSlot(),
+				constant(name));
+		for (int currChild = 1; currChild < numChildren - 1; currChild++) {
+			compileKey(node, currChild);
+			emit(Opcode.DEREF, -1);
+		}
+		compileKey(node, numChildren - 1);
+		emit(Opcode.INCDEC_ELEMENT, -1, constant(node.shorthandOperator));
+		return data;
+	}
+
+	@Override
+	public Object visit(ASTHttp node, Object data) {
+		compileChildren(node);
+		final int argc = node.jjtGetNumChildren();
+		emit(Opcode.HTTP, 1 - argc, argc);
+		return data;
+	}
+
+	@Override
+	public Object visit(ASTFile node, Object data) {
+		compileChildren(node);
+		emit(Opcode.FILE, -2);
+		return data;
+	}
+
+	/******************
+	 * Sub-statements *
+	 ******************/
+
+	@Override
+	public Object visit(ASTIdentifier node, Object data) {
+		emit(Opcode.NULL, 1);
+		return data;
+	}
+
+	@Override
+	public Object visit(ASTConstInit node, Object data) {
+		compileChild(node, 1);
+		emit(Opcode.CONST_INIT, -1, node.address.getDepth(), node.address.getSlot());
+		return data;
+	}
+
+	@Override
+	public Object visit(ASTArrayInit node, Object data) {
+		final int firstValue;
+		if (node.isArrayWithCap) {
+			compileChild(node, 1);
+			firstValue = 2;
+		} else {
+			emit(Opcode.CONST, 1,
+					constant(ValueInteger.valueOf(node.jjtGetNumChildren() - 1)));
+			firstValue = 1;
+		}
+
+		emit(Opcode.ARRAY_INIT, 0, constant(Parser.getTokenOfChild(node, 0)),
+				node.jjtGetNumChildren() - firstValue);
+		for (int i = firstValue; i < node.jjtGetNumChildren(); i++) {
+			compileChild(node, i);
+			emit(Opcode.ARRAY_APPEND, -1);
+		}
+		emit(Opcode.STORE, -1, node.address.getDepth(), node.address.getSlot());
+		return data;
+	}
+
+	@Override
+	public Object visit(ASTArgumentList node, Object data) {
+		compileChildren(node);
+		return data;
+	}
+
+	@Override
+	public Object visit(ASTParameterList node, Object data) {
+		return data;
+	}
+
+	@Override
+	public Object visit(ASTFunctionBody node, Object data) {
+		compileStatements(node);
+		return data;
+	}
+
+	@Override
+	public Object visit(ASTReturnExpression node, Object data) {
+		compileChild(node, 0);
+		return data;
+	}
+
+	/***************
+	 * Expressions *
+	 ***************/
+
+	@Override
+	public Object visit(ASTOr node, Object data) {
+		compileBinary(node, Opcode.OR);
+		return data;
+	}
+
+	@Override
+	public Object visit(ASTAnd node, Object data) {
+		compileBinary(node, Opcode.AND);
+		return data;
+	}
+
+	@Override
+	public Object visit(ASTCompEqual node, Object data) {
+		compileBinary(node, Opcode.EQ);
+		return data;
+	}
+
+	@Override
+	public Object visit(ASTCompNequal node, Object data) {
+		compileBinary(node, Opcode.NEQ);
+		return data;
+	}
+
+	@Override
+	public Object visit(ASTCompGTE node, Object data) {
+		compileBinary(node, Opcode.GTE);
+		return data;
+	}
+
+	@Override
+	public Object visit(ASTCompLTE node, Object data) {
+		compileBinary(node, Opcode.LTE);
+		return data;
+	}
+
+	@Override
+	public Object visit(ASTCompGT node, Object data) {
+		compileBinary(node, Opcode.GT);
+		return data;
+	}
+
+	@Override
+	public Object visit(ASTCompLT node, Object data) {
+		compileBinary(node, Opcode.LT);
+		return data;
+	}
+
+	@Override
+	public Object visit(ASTAdd node, Object data) {
+		compileBinary(node, Opcode.ADD);
+		return data;
+	}
+
+	@Override
+	public Object visit(ASTSubtract node, Object data) {
+		compileBinary(node, Opcode.SUBTRACT);
+		return data;
+	}
+
+	@Override
+	public Object visit(ASTTimes node, Object data) {
+		compileBinary(node, Opcode.MULT);
+		return data;
+	}
+
+	@Override
+	public Object visit(ASTDivide node, Object data) {
+		compileBinary(node, Opcode.DIV);
+		return data;
+	}
+
+	@Override
+	public Object visit(ASTModulo node, Object data) {
+		compileBinary(node, Opcode.MOD);
+		return data;
+	}
+
+	@Override
+	public Object visit(ASTUnaryNot node, Object data) {
+		compileUnary(node, Opcode.NOT);
+		return data;
+	}
+
+	@Override
+	public Object visit(ASTUnaryPlus node, Object data) {
+		compileUnary(node, Opcode.UNARY_PLUS);
+		return data;
+	}
+
+	@Override
+	public Object visit(ASTUnaryMinus node, Object data) {
+		compileUnary(node, Opcode.UNARY_MINUS);
+		return data;
+	}
+
+	@Override
+	public Object visit(ASTFunctionInvocation node, Object data) {
+		compileInvocation(node, true);
+		return data;
+	}
+
+	@Override
+	public Object visit(ASTDereference node, Object data) {
+		final SlotAddress address = node.address;
+		if (node.invariant != null) { // Loop invariant cached in the slot on the first read.
+			final int cached = emit(Opcode.LOAD_INVARIANT, 0, -1, address.getDepth(),
+					address.getSlot());
+			compile(node.invariant);
+			emit(Opcode.DUP, 1);
+			emit(Opcode.STORE, -1, address.getDepth(), address.getSlot());
+			patch(cached);
+			return data;
+		}
+		if (address == null) {
+			compileThrow("Variable or parameter \"" + node.tokenValue + "\" is undefined.",
+					1);
+			return data;
+		}
+
+		emit(Opcode.LOAD, 1, address.getDepth(), address.getSlot(),
+				constant(node.tokenValue));
+		for (int currChild = 0; currChild < node.jjtGetNumChildren(); currChild++) {
+			compileKey(node, currChild);
+			emit(Opcode.DEREF, -1);
+		}
+		return data;
+	}
+
+	@Override
+	public Object visit(ASTGetArgs node, Object data) {
+		emit(Opcode.ARGS, 1);
+		return data;
+	}
+
+	@Override
+	public Object visit(ASTRandom node, Object data) {
+		compileBinary(node, Opcode.RANDOM);
+		return data;
+	}
+
+	@Override
+	public Object visit(ASTReflect node, Object data) {
+		final int argc = node.jjtGetNumChildren();
+		if (argc > 2) {
+			compileChild(node, 0);
+			compileThrow("ValueReflection only accepts up to 2 arguments.", 0);
+			return data;
+		}
+
+		compileChildren(node);
+		emit(Opcode.REFLECT, 1 - argc, argc);
+		return data;
+	}
+
+	@Override
+	public Object visit(ASTValueReflectionCast node, Object data) {
+		compileBinary(node, Opcode.CAST);
+		return data;
+	}
+
+	/************
+	 * Literals *
+	 ************/
+
+	@Override
+	public Object visit(ASTInteger node, Object data) {
+		emit(Opcode.CONST, 1, constant(NumberUtils.tryInt(node.tokenValue)));
+		return data;
+	}
+
+	@Override
+	public Object visit(ASTCharacter node, Object data) {
+		emit(Opcode.CONST, 1, constant(ValueString.stripDelimited(node.tokenValue)));
+		return data;
+	}
+
+	@Override
+	public Object visit(ASTRational node, Object data) {
+		emit(Opcode.CONST, 1, constant(NumberUtils.tryFloat(node.tokenValue)));
+		return data;
+	}
+
+	@Override
+	public Object visit(ASTTrue node, Object data) {
+		emit(Opcode.CONST, 1, constant(ValueBoolean.TRUE));
+		return data;
+	}
+
+	@Override
+	public Object visit(ASTFalse node, Object data) {
+		emit(Opcode.CONST, 1, constant(ValueBoolean.FALSE));
+		return data;
+	}
+
+	@Override
+	public Object visit(ASTValueFunction node, Object data) {
+		emit(Opcode.VALUE_FUNCTION, 1, constant(node));
+		return data;
+	}
+
+	@Override
+	public Object visit(ASTValueObject node, Object data) {
+		emit(Opcode.NEW_OBJECT, 1);
+		for (int i = 0; i < node.jjtGetNumChildren(); i += 2) {
+			compileChild(node, i + 1);
+			emit(Opcode.OBJECT_ADD, -1, constant(Parser.getTokenOfChild(node, i)));
+		}
+		return data;
+	}
+
+	@Override
+	public Object visit(ASTValueList node, Object data) {
+		emit(Opcode.NEW_LIST, 1);
+		for (int i = 0; i < node.jjtGetNumChildren(); i++) {
+			compileChild(node, i);
+			emit(Opcode.LIST_APPEND, -1);
+		}
+		return data;
+	}
+}
@@ -0,0 +1,41 @@
+package dev.amrw.clovelang.vm;
+
+import dev.amrw.clovelang.interpreter.FunctionDefinition;
+import dev.amrw.clovelang.interpreter.FunctionInvocation;
+
+/**
+ * A suspended caller in the stackless mode of the VirtualMachine. It holds the
+ * state of the dispatch loop to resume once the callee returns, and what's
+ * needed to leave the callee's scope. The frames are linked from the callee to
+ * its caller, so the call stack lives on the heap instead of the Java stack.
+ *
+ * @author amrwc
+ */
+final class CallFrame {
+	final CallFrame caller;
+	final Chunk chunk;
+	final Object[] stack;
+	final int sp;
+	final int pc; // Instruction following the call.
+
+	// The callee, and the scope it replaced.
+	final FunctionDefinition function;
+	final FunctionInvocation invocation;
+	final FunctionInvocation oldContext;
+	final int oldLevel;
+
+	/** Ctor */
+	CallFrame(CallFrame caller, Chunk chunk, Object[] stack, int sp, int pc,
+			FunctionDefinition function, FunctionInvocation invocation,
+			FunctionInvocation oldContext, int oldLevel) {
+		this.caller = caller;
+		this.chunk = chunk;
+		this.stack = stack;
+		this.sp = sp;
+		this.pc = pc;
+		this.function = function;
+		this.invocation = invocation;
+		this.oldContext = oldContext;
+		this.oldLevel = oldLevel;
+	}
+}
@@ -0,0 +1,25 @@
+package dev.amrw.clovelang.vm;
+
+import dev.amrw.clovelang.interpreter.FunctionDefinition;
+import dev.amrw.clovelang.interpreter.SlotAddress;
+
+/**
+ * A call of a function by its name. The function is resolved on the first call
+ * and cached for the following ones, the same way the Parser caches it in the
+ * call's node.
+ *
+ * @author amrwc
+ */
+final class CallSite {
+	final String name;
+	final SlotAddress address;
+	final boolean needsReturn;
+	FunctionDefinition function = null;
+
+	/** Ctor */
+	CallSite(String name, SlotAddress address, boolean needsReturn) {
+		this.name = name;
+		this.address = address;
+		this.needsReturn = needsReturn;
+	}
+}
@@ -0,0 +1,19 @@
+package dev.amrw.clovelang.vm;
+
+/**
+ * Compiled bytecode of the main program or a function body.
+ *
+ * @author amrwc
+ */
+final class Chunk {
+	final int[] code;
+	final Object[] constants;
+	final int maxStack;
+
+	/** Ctor */
+	Chunk(int[] code, Object[] constants, int maxStack) {
+		this.code = code;
+		this.constants = constants;
+		this.maxStack = maxStack;
+	}
+}
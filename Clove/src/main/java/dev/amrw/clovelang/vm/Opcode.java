@@ -0,0 +1,176 @@
+package dev.amrw.clovelang.vm;
+
+/**
+ * Instruction set of the Clove VM. Each instruction is an opcode followed by
+ * its operands, all stored in one flat int[] stream. Variables are addressed
+ * directly by the depth and slot of their frame. Operands named k or operator
+ * are indices into the constant pool; the ones named target are absolute code
+ * positions.
+ *
+ * The comments show the effect on the operand stack.
+ *
+ * @author amrwc
+ */
+final class Opcode {
+	private Opcode() {
+	}
+
+	/***********************
+	 * Stack and constants *
+	 ***********************/
+
+	/** k -- [] -> [constant] */
+	static final int CONST = 0;
+	/** [] -> [null] */
+	static final int NULL = 1;
+	/** [a] -> [] */
+	static final int POP = 2;
+	/** [a] -> [a, a] */
+	static final int DUP = 3;
+	/** k -- throw ExceptionSemantic with the message in the constant pool. */
+	static final int THROW = 4;
+
+	/*************
+	 * Variables *
+	 *************/
+
+	/** depth, slot, k -- [] -> [value]; throw with the name in k if undefined. */
+	static final int LOAD = 5;
+	/** depth, slot -- [value] -> [] */
+	static final int STORE = 6;
+	/** depth, slot -- set the slot to null. */
+	static final int CLEAR = 7;
+	/** k -- throw if the variable or constant at the SlotAddress in k exists. */
+	static final int DEFINE = 8;
+	/** k -- throw if the variable at the SlotAddress in k exists. */
+	static final int DECLARE = 9;
+	/** depth, slot -- [value] -> []; throw if the value is null. */
+	static final int CONST_INIT = 10;
+	/** depth, slot, k, operator -- [value] -> []; operator is -1 or a k. */
+	static final int ASSIGN = 11;
+	/** operator -- [right, parent, old] -> [new right, parent] */
+	static final int SHORTHAND = 12;
+	/** [right, parent, key] -> [] */
+	static final int STORE_ELEMENT = 13;
+	/** depth, slot, k, operator -- [] -> [result] */
+	static final int INCDEC = 14;
+	/** depth, slot, k -- [] -> [value]; throw with the name in k if undefined. */
+	static final int INCDEC_TARGET = 15;
+	/** operator -- [parent, key] -> [result] */
+	static final int INCDEC_ELEMENT = 16;
+	/** [value, key] -> [dereferenced value] */
+	static final int DEREF = 17;
+
+	/***************
+	 * Expressions *
+	 ***************/
+
+	/** [left, right] -> [result] */
+	static final int OR = 18;
+	static final int AND = 19;
+	static final int EQ = 20;
+	static final int NEQ = 21;
+	static final int GTE = 22;
+	static final int LTE = 23;
+	static final int GT = 24;
+	static final int LT = 25;
+	static final int ADD = 26;
+	static final int SUBTRACT = 27;
+	static final int MULT = 28;
+	static final int DIV = 29;
+	static final int MOD = 30;
+	/** [value] -> [result] */
+	static final int NOT = 31;
+	static final int UNARY_PLUS = 32;
+	static final int UNARY_MINUS = 33;
+
+	/****************
+	 * Control flow *
+	 ****************/
+
+	/** target -- jump unconditionally. */
+	static final int JUMP = 34;
+	/** target, k -- [test] -> []; jump if false, throw the message if not boolean. */
+	static final int JUMP_IF_FALSE = 35;
+	/** [value] -> return the value to the caller. */
+	static final int RETURN = 36;
+
+	/*************
+	 * Functions *
+	 *************/
+
+	/** k -- define the ASTFunctionDefinition node in the constant pool. */
+	static final int DEFINE_FUNCTION = 37;
+	/** k -- [] -> [ValueFunction] of the ASTValueFunction node in the pool. */
+	static final int VALUE_FUNCTION = 38;
+	/** k -- remove the named function from the current level. */
+	static final int REMOVE_FUNCTION = 39;
+	/** k -- [] -> [FunctionDefinition] of the call site in the pool. */
+	static final int RESOLVE = 40;
+	/** target -- [value] -> [value] if it's a ValueReflection, otherwise [] and jump. */
+	static final int JUMP_IF_NOT_REFLECTION = 41;
+	/** k, argc -- [reflection, args...] -> [result] */
+	static final int INVOKE_METHOD = 42;
+	/** [value] -> [FunctionDefinition] of the ValueFunction. */
+	static final int TO_FUNCTION = 43;
+	/** [function] -> [function, invocation] */
+	static final int INVOCATION = 44;
+	/** [function, invocation, value] -> [function, invocation] */
+	static final int ARGUMENT = 45;
+	/** [function, invocation] -> [result] */
+	static final int CALL = 46;
+
+	/************
+	 * Builtins *
+	 ************/
+
+	/** [value] -> []; print without a new line. */
+	static final int PRINT = 47;
+	/** Print a new line. */
+	static final int PRINTLN = 48;
+	/** Exit the program. */
+	static final int EXIT = 49;
+	/** k, argc -- [value, args...] -> [result] */
+	static final int PROTO = 50;
+	/** argc -- [method, url, body?] -> [response] */
+	static final int HTTP = 51;
+	/** [option, path, content] -> [path] */
+	static final int FILE = 52;
+	/** [] -> [command-line arguments] */
+	static final int ARGS = 53;
+	/** [min, max] -> [random value] */
+	static final int RANDOM = 54;
+	/** argc -- [class name, constructor arguments?] -> [reflection] */
+	static final int REFLECT = 55;
+	/** [class name, value] -> [cast reflection] */
+	static final int CAST = 56;
+
+	/************
+	 * Literals *
+	 ************/
+
+	/** [capacity] -> [ValueArray] */
+	static final int NEW_ARRAY = 57;
+	/** k, count -- [capacity] -> [ValueArray]; throw if count exceeds capacity. */
+	static final int ARRAY_INIT = 58;
+	/** [array, value] -> [array] */
+	static final int ARRAY_APPEND = 59;
+	/** [] -> [ValueList] */
+	static final int NEW_LIST = 60;
+	/** [list, value] -> [list] */
+	static final int LIST_APPEND = 61;
+	/** [] -> [ValueObject] */
+	static final int NEW_OBJECT = 62;
+	/** k -- [object, value] -> [object] */
+	static final int OBJECT_ADD = 63;
+
+	/*******************
+	 * Loop invariants *
+	 *******************/
+
+	/**
+	 * target, depth, slot -- [] -> [value] and jump if the slot caches a value;
+	 * [] -> [] otherwise, to evaluate and cache it.
+	 */
+	static final int LOAD_INVARIANT = 64;
+}
@@ -0,0 +1,769 @@
+package dev.amrw.clovelang.vm;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+
+import dev.amrw.clovelang.interpreter.Builtins;
+import dev.amrw.clovelang.interpreter.CompiledNode;
+import dev.amrw.clovelang.interpreter.Display;
+import dev.amrw.clovelang.interpreter.ExceptionSemantic;
+import dev.amrw.clovelang.interpreter.FunctionDefinition;
+import dev.amrw.clovelang.interpreter.FunctionInvocation;
+import dev.amrw.clovelang.interpreter.Parser;
+import dev.amrw.clovelang.interpreter.SlotAddress;
+import dev.amrw.clovelang.parser.ast.*;
+import dev.amrw.clovelang.values.*;
+
+/**
+ * An alternative execution engine. The program is compiled by the
+ * BytecodeCompiler into a flat instruction stream, that's executed by a
+ * dispatch loop over an operand stack. Variables are read and written directly
+ * in the frames of the Display, addressed by their depth and slot.
+ *
+ * Function bodies are compiled on their first invocation.
+ *
+ * In the stackless mode, a call doesn't run the callee in a nested dispatch
+ * loop. The caller is suspended in a CallFrame on the heap, and the same loop
+ * carries on with the callee, so the depth of recursion is bounded by the
+ * memory rather than by the Java stack. It costs an allocation per call.
+ *
+ * @author amrwc
+ */
+public class VirtualMachine {
+	private static final ValueInteger ONE = ValueInteger.valueOf(1);
+
+	private final String[] argv;
+	private final boolean isStackless;
+	private Display scope;
+
+	// Compiled function bodies, shared by all FunctionDefinitions of the same node.
+	private final IdentityHashMap<SimpleNode, Chunk> functionChunks = new IdentityHashMap<SimpleNode, Chunk>();
+	private final IdentityHashMap<SimpleNode, CompiledNode> functionBodies = new IdentityHashMap<SimpleNode, CompiledNode>();
+
+	public VirtualMachine(String[] args) {
+		this(args, false);
+	}
+
+	public VirtualMachine(String[] args, boolean isStackless) {
+		argv = args;
+		this.isStackless = isStackless;
+	}
+
+	/** Compile and execute a resolved Clove program. */
+	public void execute(ASTCode code) {
+		scope = new Display(code.frameLayout);
+		run(BytecodeCompiler.compileProgram(code));
+	}
+
+	/**
+	 * Get the compiled body of the function, compiling it on the first
+	 * invocation.
+	 */
+	private CompiledNode getCompiledBody(FunctionDefinition fndef) {
+		CompiledNode body = fndef.getCompiledBody();
+		if (body != null)
+			return body;
+
+		final SimpleNode bodyNode = fndef.getFunctionBody();
+		body = functionBodies.get(bodyNode);
+		if (body == null) {
+			final Chunk chunk = getChunk(fndef);
+			body = () -> run(chunk);
+			functionBodies.put(bodyNode, body);
+		}
+
+		fndef.setCompiledBody(body);
+		return body;
+	}
+
+	/** Get the bytecode of the function, compiling it on the first invocation. */
+	private Chunk getChunk(FunctionDefinition fndef) {
+		final SimpleNode bodyNode = fndef.getFunctionBody();
+		Chunk chunk = functionChunks.get(bodyNode);
+		if (chunk == null) {
+			chunk = BytecodeCompiler.compileFunction(fndef);
+			functionChunks.put(bodyNode, chunk);
+		}
+		return chunk;
+	}
+
+	/** Execute a chunk of bytecode, and return the value it returns. */
+	private Value run(Chunk chunk) {
+		int[] code = chunk.code;
+		Object[] constants = chunk.constants;
+		Object[] stack = new Object[chunk.maxStack];
+		int sp = -1; // Top of the stack.
+		int pc = 0;
+		CallFrame caller = null; // Suspended callers in the stackless mode.
+
+		while (true) {
+			switch (code[pc]) {
+
+			/***********************
+			 * Stack and constants *
+			 ***********************/
+
+			case Opcode.CONST:
+				stack[++sp] = constants[code[pc + 1]];
+				pc += 2;
+				break;
+			case Opcode.NULL:
+				stack[++sp] = null;
+				pc += 1;
+				break;
+			case Opcode.POP:
+				stack[sp--] = null;
+				pc += 1;
+				break;
+			case Opcode.DUP:
+				stack[sp + 1] = stack[sp];
+				sp++;
+				pc += 1;
+				break;
+			case Opcode.THROW:
+				throw new ExceptionSemantic((String) constants[code[pc + 1]]);
+
+			/*************
+			 * Variables *
+			 *************/
+
+			case Opcode.LOAD: {
+				final Value value = scope.getValue(code[pc + 1], code[pc + 2]);
+				if (value == null)
+					throw new ExceptionSemantic("Variable or parameter \""
+							+ constants[code[pc + 3]] + "\" is undefined.");
+				stack[++sp] = value;
+				pc += 4;
+				break;
+			}
+			case Opcode.STORE:
+				scope.setValue(code[pc + 1], code[pc + 2], (Value) stack[sp]);
+				stack[sp--] = null;
+				pc += 3;
+				break;
+			case Opcode.CLEAR:
+				scope.setValue(code[pc + 1], code[pc + 2], null);
+				pc += 3;
+				break;
+			case Opcode.LOAD_INVARIANT: {
+				final Value value = scope.getValue(code[pc + 2], code[pc + 3]);
+				if (value != null) {
+					stack[++sp] = value;
+					pc = code[pc + 1];
+				} else
+					pc += 4;
+				break;
+			}
+			case Opcode.DEFINE: {
+				final SlotAddress address = (SlotAddress) constants[code[pc + 1]];
+				if (scope.exists(address))
+					throw new ExceptionSemantic(
+							"Variable or constant \"" + address.getName() + "\" already exists.");
+				scope.declare(address);
+				pc += 2;
+				break;
+			}
+			case Opcode.DECLARE: {
+				final SlotAddress address = (SlotAddress) constants[code[pc + 1]];
+				if (scope.exists(address))
+					throw new ExceptionSemantic(
+							"Variable \"" + address.getName() + "\" already exists.");
+				scope.declare(address);
+				pc += 2;
+				break;
+			}
+			case Opcode.CONST_INIT: {
+				final Value value = (Value) stack[sp];
+				if (value == null)
+					throw new ExceptionSemantic(
+							"Right value of the constant's initialisation cannot resolve to null.");
+				scope.setValue(code[pc + 1], code[pc + 2], value);
+				stack[sp--] = null;
+				pc += 3;
+				break;
+			}
+			case Opcode.ASSIGN: {
+				Value value = orEmpty((Value) stack[sp]);
+				stack[sp--] = null;
+				if (code[pc + 4] != -1) {
+					final Value old = scope.getValue(code[pc + 1], code[pc + 2]);
+					if (old == null)
+						throw new ExceptionSemantic("Variable or parameter \""
+								+ constants[code[pc + 3]] + "\" is undefined.");
+					value = Parser.doShorthand((String) constants[code[pc + 4]], old,
+							value);
+				}
+				if (!scope.isDefined(code[pc + 1], code[pc + 2]))
+					throw new ExceptionSemantic("Variable or constant \""
+							+ constants[code[pc + 3]] + "\" is undefined.");
+				scope.setValue(code[pc + 1], code[pc + 2], value);
+				pc += 5;
+				break;
+			}
+			case Opcode.SHORTHAND: {
+				final Value old = (Value) stack[sp];
+				final Value right = orEmpty((Value) stack[sp - 2]);
+				stack[sp - 2] = Parser.doShorthand((String) constants[code[pc + 1]], old,
+						right);
+				stack[sp--] = null;
+				pc += 2;
+				break;
+			}
+			case Opcode.STORE_ELEMENT:
+				storeElement((Value) stack[sp - 1], (Value) stack[sp],
+						orEmpty((Value) stack[sp - 2]));
+				stack[sp--] = null;
+				stack[sp--] = null;
+				stack[sp--] = null;
+				pc += 1;
+				break;
+			case Opcode.INCDEC: {
+				final int depth = code[pc + 1];
+				final int slot = code[pc + 2];
+				final Value value = scope.getValue(depth, slot);
+				if (value == null)
+					throw new ExceptionSemantic(
+							"Variable \"" + constants[code[pc + 3]] + "\" is undefined.");
+
+				final String operator = (String) constants[code[pc + 4]];
+				final Value result = isIncrement(operator, value) ? value.add(ONE)
+						: value.subtract(ONE);
+				scope.setValue(depth, slot, result);
+				stack[++sp] = isPrefix(operator) ? result : value;
+				pc += 5;
+				break;
+			}
+			case Opcode.INCDEC_TARGET: {
+				final Value value = scope.getValue(code[pc + 1], code[pc + 2]);
+				if (value == null)
+					throw new ExceptionSemantic(
+							"Variable \"" + constants[code[pc + 3]] + "\" is undefined.");
+				stack[++sp] = value;
+				pc += 4;
+				break;
+			}
+			case Opcode.INCDEC_ELEMENT: {
+				final Value parent = (Value) stack[sp - 1];
+				final Value key = (Value) stack[sp];
+				stack[sp--] = null;
+				stack[sp] = incDecElement(parent, key, (String) constants[code[pc + 1]]);
+				pc += 2;
+				break;
+			}
+			case Opcode.DEREF: {
+				final Value key = (Value) stack[sp];
+				stack[sp--] = null;
+				stack[sp] = dereference((Value) stack[sp], key);
+				pc += 1;
+				break;
+			}
+
+			/***************
+			 * Expressions *
+			 ***************/
+
+			case Opcode.OR:
+				stack[sp - 1] = ((Value) stack[sp - 1]).or((Value) stack[sp]);
+				stack[sp--] = null;
+				pc += 1;
+				break;
+			case Opcode.AND:
+				stack[sp - 1] = ((Value) stack[sp - 1]).and((Value) stack[sp]);
+				stack[sp--] = null;
+				pc += 1;
+				break;
+			case Opcode.EQ:
+				stack[sp - 1] = ((Value) stack[sp - 1]).eq((Value) stack[sp]);
+				stack[sp--] = null;
+				pc += 1;
+				break;
+			case Opcode.NEQ:
+				stack[sp - 1] = ((Value) stack[sp - 1]).neq((Value) stack[sp]);
+				stack[sp--] = null;
+				pc += 1;
+				break;
+			case Opcode.GTE:
+				stack[sp - 1] = ((Value) stack[sp - 1]).gte((Value) stack[sp]);
+				stack[sp--] = null;
+				pc += 1;
+				break;
+			case Opcode.LTE:
+				stack[sp - 1] = ((Value) stack[sp - 1]).lte((Value) stack[sp]);
+				stack[sp--] = null;
+				pc += 1;
+				break;
+			case Opcode.GT:
+				stack[sp - 1] = ((Value) stack[sp - 1]).gt((Value) stack[sp]);
+				stack[sp--] = null;
+				pc += 1;
+				break;
+			case Opcode.LT:
+				stack[sp - 1] = ((Value) stack[sp - 1]).lt((Value) stack[sp]);
+				stack[sp--] = null;
+				pc += 1;
+				break;
+			case Opcode.ADD:
+				stack[sp - 1] = ((Value) stack[sp - 1]).add((Value) stack[sp]);
+				stack[sp--] = null;
+				pc += 1;
+				break;
+			case Opcode.SUBTRACT:
+				stack[sp - 1] = ((Value) stack[sp - 1]).subtract((Value) stack[sp]);
+				stack[sp--] = null;
+				pc += 1;
+				break;
+			case Opcode.MULT:
+				stack[sp - 1] = ((Value) stack[sp - 1]).mult((Value) stack[sp]);
+				stack[sp--] = null;
+				pc += 1;
+				break;
+			case Opcode.DIV:
+				stack[sp - 1] = ((Value) stack[sp - 1]).div((Value) stack[sp]);
+				stack[sp--] = null;
+				pc += 1;
+				break;
+			case Opcode.MOD:
+				stack[sp - 1] = ((Value) stack[sp - 1]).mod((Value) stack[sp]);
+				stack[sp--] = null;
+				pc += 1;
+				break;
+			case Opcode.NOT:
+				stack[sp] = ((Value) stack[sp]).not();
+				pc += 1;
+				break;
+			case Opcode.UNARY_PLUS:
+				stack[sp] = ((Value) stack[sp]).unary_plus();
+				pc += 1;
+				break;
+			case Opcode.UNARY_MINUS:
+				stack[sp] = ((Value) stack[sp]).unary_minus();
+				pc += 1;
+				break;
+
+			/****************
+			 * Control flow *
+			 ****************/
+
+			case Opcode.JUMP:
+				pc = code[pc + 1];
+				break;
+			case Opcode.JUMP_IF_FALSE: {
+				final Object test = stack[sp];
+				stack[sp--] = null;
+				if (!(test instanceof ValueBoolean))
+					throw new ExceptionSemantic((String) constants[code[pc + 2]]);
+				pc = ((ValueBoolean) test).getRawValue() ? pc + 3 : code[pc + 1];
+				break;
+			}
+			case Opcode.RETURN: {
+				final Value returnValue = (Value) stack[sp];
+				if (caller == null)
+					return returnValue;
+
+				// Leave the callee, and resume its caller.
+				scope.leave(caller.invocation, caller.oldContext, caller.oldLevel);
+				caller.function.releaseInvocation(caller.invocation);
+				chunk = caller.chunk;
+				code = chunk.code;
+				constants = chunk.constants;
+				stack = caller.stack;
+				sp = caller.sp;
+				pc = caller.pc;
+				stack[sp] = returnValue;
+				caller = caller.caller;
+				break;
+			}
+
+			/*************
+			 * Functions *
+			 *************/
+
+			case Opcode.DEFINE_FUNCTION:
+				defineFunction((ASTFunctionDefinition) constants[code[pc + 1]]);
+				pc += 2;
+				break;
+			case Opcode.VALUE_FUNCTION:
+				stack[++sp] = valueFunction((ASTValueFunction) constants[code[pc + 1]]);
+				pc += 2;
+				break;
+			case Opcode.REMOVE_FUNCTION:
+				scope.removeFunction((String) constants[code[pc + 1]]);
+				pc += 2;
+				break;
+			case Opcode.RESOLVE:
+				stack[++sp] = resolve((CallSite) constants[code[pc + 1]]);
+				pc += 2;
+				break;
+			case Opcode.JUMP_IF_NOT_REFLECTION:
+				if (stack[sp] instanceof ValueReflection)
+					pc += 2;
+				else {
+					stack[sp--] = null;
+					pc = code[pc + 1];
+				}
+				break;
+			case Opcode.INVOKE_METHOD: {
+				final int argc = code[pc + 2];
+				final Value[] methodArgs = new Value[argc];
+				for (int i = argc - 1; i >= 0; i--) {
+					methodArgs[i] = (Value) stack[sp];
+					stack[sp--] = null;
+				}
+				stack[sp] = ((ValueReflection) stack[sp])
+						.invoke((String) constants[code[pc + 1]], methodArgs);
+				pc += 3;
+				break;
+			}
+			case Opcode.TO_FUNCTION:
+				stack[sp] = getValueFunction((Value) stack[sp]);
+				pc += 1;
+				break;
+			case Opcode.INVOCATION:
+				stack[sp + 1] = ((FunctionDefinition) stack[sp]).newInvocation();
+				sp++;
+				pc += 1;
+				break;
+			case Opcode.ARGUMENT:
+				((FunctionInvocation) stack[sp - 1]).setArgument((Value) stack[sp]);
+				stack[sp--] = null;
+				pc += 1;
+				break;
+			case Opcode.CALL: {
+				final FunctionInvocation invocation = (FunctionInvocation) stack[sp];
+				stack[sp--] = null;
+				invocation.checkArgumentCount();
+				final FunctionDefinition fndef = (FunctionDefinition) stack[sp];
+				if (!isStackless) {
+					stack[sp] = scope.execute(invocation, getCompiledBody(fndef));
+					fndef.releaseInvocation(invocation);
+					pc += 1;
+					break;
+				}
+
+				// Suspend the caller, and carry on with the callee. The function's
+				// slot of the stack receives the return value.
+				final int oldLevel = scope.getLevel();
+				caller = new CallFrame(caller, chunk, stack, sp, pc + 1, fndef, invocation,
+						scope.enter(invocation), oldLevel);
+				chunk = getChunk(fndef);
+				code = chunk.code;
+				constants = chunk.constants;
+				stack = new Object[chunk.maxStack];
+				sp = -1;
+				pc = 0;
+				break;
+			}
+
+			/************
+			 * Builtins *
+			 ************/
+
+			case Opcode.PRINT:
+				System.out.print(stack[sp]);
+				stack[sp--] = null;
+				pc += 1;
+				break;
+			case Opcode.PRINTLN:
+				System.out.println();
+				pc += 1;
+				break;
+			case Opcode.EXIT:
+				System.exit(0);
+				break;
+			case Opcode.PROTO: {
+				final int argc = code[pc + 2];
+				ArrayList<Value> protoArgs = null;
+				if (argc > 0) {
+					protoArgs = new ArrayList<Value>(argc);
+					for (int i = sp - argc + 1; i <= sp; i++)
+						protoArgs.add((Value) stack[i]);
+				}
+				for (int i = 0; i < argc; i++)
+					stack[sp--] = null;
+				stack[sp] = ((Value) stack[sp])
+						.execProto((String) constants[code[pc + 1]], protoArgs);
+				pc += 3;
+				break;
+			}
+			case Opcode.HTTP: {
+				Value body = null;
+				if (code[pc + 1] > 2) {
+					body = (Value) stack[sp];
+					stack[sp--] = null;
+				}
+				final String method = stack[sp - 1].toString().toUpperCase();
+				final String url = stack[sp].toString();
+				stack[sp--] = null;
+				stack[sp] = Builtins.http(method, url,
+						(method.equals("POST") || method.equals("PUT")) ? body : null);
+				pc += 2;
+				break;
+			}
+			case Opcode.FILE: {
+				final Value content = (Value) stack[sp--];
+				final String pathStr = stack[sp--].toString();
+				stack[sp] = Builtins.file(stack[sp].toString(), pathStr, content);
+				stack[sp + 1] = null;
+				stack[sp + 2] = null;
+				pc += 1;
+				break;
+			}
+			case Opcode.ARGS:
+				stack[++sp] = Builtins.args(argv);
+				pc += 1;
+				break;
+			case Opcode.RANDOM:
+				stack[sp - 1] = Builtins.random((Value) stack[sp - 1], (Value) stack[sp]);
+				stack[sp--] = null;
+				pc += 1;
+				break;
+			case Opcode.REFLECT: {
+				ValueList ctorArgs = null;
+				if (code[pc + 1] == 2) {
+					ctorArgs = (ValueList) stack[sp];
+					stack[sp--] = null;
+				}
+				stack[sp] = Builtins.reflect(((Value) stack[sp]).stringValue(), ctorArgs);
+				pc += 2;
+				break;
+			}
+			case Opcode.CAST:
+				stack[sp - 1] = Builtins.cast(((Value) stack[sp - 1]).stringValue(),
+						(Value) stack[sp]);
+				stack[sp--] = null;
+				pc += 1;
+				break;
+
+			/************
+			 * Literals *
+			 ************/
+
+			case Opcode.NEW_ARRAY:
+				stack[sp] = new ValueArray((int) ((Value) stack[sp]).getRawValue());
+				pc += 1;
+				break;
+			case Opcode.ARRAY_INIT: {
+				final int capacity = (int) ((Value) stack[sp]).getRawValue();
+				final int count = code[pc + 2];
+				if (count > capacity)
+					throw new ExceptionSemantic("There is more initial values for \""
+							+ constants[code[pc + 1]] + "\" array (" + count
+							+ ") than its capacity (" + capacity + ").");
+				stack[sp] = new ValueArray(capacity);
+				pc += 3;
+				break;
+			}
+			case Opcode.ARRAY_APPEND:
+				((ValueArray) stack[sp - 1]).append((Value) stack[sp]);
+				stack[sp--] = null;
+				pc += 1;
+				break;
+			case Opcode.NEW_LIST:
+				stack[++sp] = new ValueList();
+				pc += 1;
+				break;
+			case Opcode.LIST_APPEND:
+				((ValueList) stack[sp - 1]).append((Value) stack[sp]);
+				stack[sp--] = null;
+				pc += 1;
+				break;
+			case Opcode.NEW_OBJECT:
+				stack[++sp] = new ValueObject();
+				pc += 1;
+				break;
+			case Opcode.OBJECT_ADD:
+				((ValueObject) stack[sp - 1]).add((String) constants[code[pc + 1]],
+						(Value) stack[sp]);
+				stack[sp--] = null;
+				pc += 2;
+				break;
+
+			default:
+				throw new ExceptionSemantic("Unknown opcode " + code[pc] + ".");
+			}
+		}
+	}
+
+	// Fake the null object with an empty String.
+	private static Value orEmpty(Value value) {
+		return (value != null) ? value : new ValueString("");
+	}
+
+	private static boolean isIncrement(String operator, Value value) {
+		switch (operator) {
+		case "pre++":
+		case "post++":
+			return true;
+		case "pre--":
+		case "post--":
+			return false;
+		default:
+			throw new ExceptionSemantic("Operator \"" + operator + "\" cannot be used on "
+					+ value + " and " + ONE + ".");
+		}
+	}
+
+	private static boolean isPrefix(String operator) {
+		return operator.startsWith("pre");
+	}
+
+	/**
+	 * Dereference a value with an already evaluated key, the same way the
+	 * dereference() of the Value types does it.
+	 */
+	private static Value dereference(Value value, Value key) {
+		if (value instanceof ValueReflection)
+			return value;
+		if (value instanceof ValueObject)
+			return ((ValueObject) value).get(key.toString());
+		if (value instanceof ValueList)
+			return ((ValueList) value).get(((ValueInteger) key).getRawValue());
+		if (value instanceof ValueArray)
+			return ((ValueArray) value).get(((ValueInteger) key).getRawValue());
+		if (value instanceof ValueMap)
+			return ((ValueMap) value).get(key);
+		if (value instanceof ValuePersistentObject)
+			return ((ValuePersistentObject) value).get(key.toString());
+		if (value instanceof ValuePersistentList)
+			return ((ValuePersistentList) value).get(((ValueInteger) key).getRawValue());
+		if (value instanceof ValueString)
+			return new ValueString(
+					"" + value.stringValue().charAt(((ValueInteger) key).getRawValue()));
+		throw new ExceptionSemantic("Value type '" + value.getName() + "' doesn't support"
+				+ " custom dereferencing.");
+	}
+
+	// Reassign the value of the list, array, object or map's key.
+	private static void storeElement(Value parent, Value key, Value value) {
+		if (parent instanceof ValueList)
+			((ValueList) parent).set(((ValueInteger) key).getRawValue(), value);
+		else if (parent instanceof ValueArray)
+			((ValueArray) parent).set(((ValueInteger) key).getRawValue(), value);
+		else if (parent instanceof ValueObject)
+			((ValueObject) parent).set(key.toString(), value);
+		else if (parent instanceof ValueMap)
+			((ValueMap) parent).set(key, value);
+		else
+			Parser.checkNotPersistent(parent);
+	}
+
+	/**
+	 * Increment/decrement the value of the list, array, object or map's key. Return
+	 * the new or old value depending on the pre/post-fix operator.
+	 */
+	private static Value incDecElement(Value parent, Value key, String operator) {
+		final boolean isIncrement = isIncrement(operator, parent);
+		Value old;
+		Value result;
+		if (parent instanceof ValueList) {
+			final ValueList list = (ValueList) parent;
+			final int index = ((ValueInteger) key).getRawValue();
+			old = list.get(index);
+			list.set(index, isIncrement ? old.add(ONE) : old.subtract(ONE));
+			result = list.get(index);
+		} else if (parent instanceof ValueArray) {
+			final ValueArray array = (ValueArray) parent;
+			final int index = ((ValueInteger) key).getRawValue();
+			old = array.get(index);
+			array.set(index, isIncrement ? old.add(ONE) : old.subtract(ONE));
+			result = array.get(index);
+		} else if (parent instanceof ValueObject) {
+			final ValueObject object = (ValueObject) parent;
+			final String keyName = key.toString();
+			old = object.get(keyName);
+			object.set(keyName, isIncrement ? old.add(ONE) : old.subtract(ONE));
+			result = object.get(keyName);
+		} else if (parent instanceof ValueMap) {
+			final ValueMap map = (ValueMap) parent;
+			old = map.get(key);
+			map.set(key, isIncrement ? old.add(ONE) : old.subtract(ONE));
+			result = map.get(key);
+		} else {
+			Parser.checkNotPersistent(parent);
+			return null;
+		}
+
+		return isPrefix(operator) ? result : old;
+	}
+
+	/**
+	 * Define a function. Like in the Parser, a definition is only processed the
+	 * first time it's reached.
+	 */
+	private void defineFunction(ASTFunctionDefinition node) {
+		if (node.optimised != null)
+			return;
+
+		final String fnname = Parser.getTokenOfChild(node, 0);
+		if (scope.findFunctionInCurrentLevel(fnname) != null)
+			throw new ExceptionSemantic("Function " + fnname + " already exists.");
+
+		final FunctionDefinition fndef = new FunctionDefinition(fnname,
+				scope.getLevel() + 1, node.frameLayout);
+		defineParameters((SimpleNode) node.jjtGetChild(1), fndef);
+		scope.addFunction(fndef);
+		fndef.setFunctionBody((SimpleNode) node.jjtGetChild(2));
+		if (node.fnHasReturn)
+			fndef.setFunctionReturnExpression((SimpleNode) node.jjtGetChild(3));
+		node.optimised = fndef;
+	}
+
+	/** Anonymous function declaration. */
+	private ValueFunction valueFunction(ASTValueFunction node) {
+		final FunctionDefinition fndef = new FunctionDefinition(scope.getLevel() + 1,
+				node.frameLayout);
+		defineParameters((SimpleNode) node.jjtGetChild(0), fndef);
+		fndef.setFunctionBody((SimpleNode) node.jjtGetChild(1));
+		if (node.fnHasReturn)
+			fndef.setFunctionReturnExpression((SimpleNode) node.jjtGetChild(2));
+		return new ValueFunction(fndef);
+	}
+
+	private static void defineParameters(SimpleNode parameters,
+			FunctionDefinition fndef) {
+		for (int i = 0; i < parameters.jjtGetNumChildren(); i++)
+			fndef.defineParameter(Parser.getTokenOfChild(parameters, i));
+	}
+
+	/**
+	 * Resolve the function called by its name, caching it in the call site.
+	 */
+	private FunctionDefinition resolve(CallSite site) {
+		if (site.function != null)
+			return site.function;
+
+		FunctionDefinition fndef = scope.findFunction(site.name);
+		if (fndef == null) {
+			// Try finding the ValueFunction inside the scope.
+			final Value value = (site.address != null) ? scope.getValue(site.address)
+					: null;
+			if (value == null)
+				throw new ExceptionSemantic("Function " + site.name + " is undefined.");
+			fndef = ((ValueFunction) value).get();
+		}
+
+		if (site.needsReturn && !fndef.hasReturn())
+			throw new ExceptionSemantic("Function " + site.name + " is being"
+					+ " invoked in an expression but does not have a return value.");
+
+		site.function = fndef;
+		return fndef;
+	}
+
+	/**
+	 * Extract the FunctionDefinition from a dereferenced ValueFunction.
+	 */
+	private static FunctionDefinition getValueFunction(Value value) {
+		final ValueFunction valueFunction = (ValueFunction) value;
+		if (valueFunction == null)
+			throw new ExceptionSemantic(
+					"The value function you are trying" + " to invoke is undefined.");
+
+		final FunctionDefinition fndef = valueFunction.get();
+		if (fndef == null)
+			throw new ExceptionSemantic(
+					"Function " + valueFunction.getName() + " is undefined.");
+
+		return fndef;
+	}
+}
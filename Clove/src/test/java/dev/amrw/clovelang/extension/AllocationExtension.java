@@ -0,0 +1,47 @@
+package dev.amrw.clovelang.extension;
+
+import com.sun.management.ThreadMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.logging.Logger;
+import org.junit.jupiter.api.extension.AfterTestExecutionCallback;
+import org.junit.jupiter.api.extension.BeforeTestExecutionCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.junit.jupiter.api.extension.ExtensionContext.Namespace;
+import org.junit.jupiter.api.extension.ExtensionContext.Store;
+
+/**
+ * Logs the number of bytes allocated by the thread executing the test, like {@link TimingExtension}
+ * logs the time it took.
+ */
+public class AllocationExtension implements BeforeTestExecutionCallback,
+    AfterTestExecutionCallback {
+
+  private static final Logger logger = Logger.getLogger(AllocationExtension.class.getName());
+  private static final String ALLOCATED_BYTES = "allocated bytes";
+  private static final ThreadMXBean threadMXBean =
+      (ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+  @Override
+  public void beforeTestExecution(final ExtensionContext context) {
+    getStore(context).put(ALLOCATED_BYTES, allocatedBytes());
+  }
+
+  @Override
+  public void afterTestExecution(final ExtensionContext context) {
+    final var testMethod = context.getRequiredTestMethod();
+    final var allocatedBefore = getStore(context).remove(ALLOCATED_BYTES, long.class);
+    final var allocated = allocatedBytes() - allocatedBefore;
+
+    logger.info(() ->
+        String.format("Method [%s] allocated %s bytes.", testMethod.getName(), allocated));
+  }
+
+  private static long allocatedBytes() {
+    return threadMXBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+  private Store getStore(final ExtensionContext context) {
+    final var namespace = Namespace.create(getClass(), context.getRequiredTestMethod());
+    return context.getStore(namespace);
+  }
+}
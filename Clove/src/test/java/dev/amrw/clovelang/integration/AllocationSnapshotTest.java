@@ -0,0 +1,29 @@
+package dev.amrw.clovelang.integration;
+
+import dev.amrw.clovelang.extension.AllocationExtension;
+import dev.amrw.clovelang.tag.IntegrationTest;
+import java.io.IOException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+/**
+ * Allocation benchmark of the loop snapshots. Every iteration compares and increments small
+ * integers, which come from the caches of <code>ValueBoolean</code> and <code>ValueInteger</code>
+ * instead of being allocated. The logged number of bytes can be compared between revisions.
+ */
+@IntegrationTest
+@ExtendWith(AllocationExtension.class)
+class AllocationSnapshotTest implements SnapshotTest {
+
+  @DisplayName("Allocation of loops")
+  @ParameterizedTest(name = "[{index}] {0}")
+  @CsvSource({
+      "for.clove",
+      "while.clove",
+  })
+  void loopAllocation(final String filePath) throws IOException {
+    snapshotTest("integration/loops/" + filePath);
+  }
+}
@@ -6,9 +6,11 @@ import dev.amrw.clovelang.tag.IntegrationTest;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.stream.Stream;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
 import org.junit.jupiter.params.provider.ValueSource;
 
 @IntegrationTest
@@ -16,38 +18,61 @@ class FastSnapshotTest implements SnapshotTest {
 
   @DisplayName("Fast tests")
   @ParameterizedTest(name = "[{index}] {0}")
-  @ValueSource(strings = {
-      "builtins/random.clove",
-      "expressions/assignment-operator.clove",
-      "expressions/binary-operator.clove",
-      "expressions/logical-operator.clove",
-      "expressions/unary-operator.clove",
-      "functions/arrow-function.clove",
-      "functions/function-definition.clove",
-      "functions/nested-function-definition.clove",
-      "functions/function-expression.clove",
-      "literals/anonymous-object.clove",
-      "literals/list.clove",
-      "loops/for.clove",
-      "loops/while.clove",
-      "miscellaneous/block-statement.clove",
-      "miscellaneous/constant-reassignment.clove",
-      "miscellaneous/if-statement.clove",
-      "miscellaneous/recursion.clove",
-      "scope/block-const.clove",
-      "scope/block-function.clove",
-      "scope/block-let-declaration.clove",
-      "scope/block-let-definition.clove",
-      "scope/block-var-declaration.clove",
-      "scope/block-var-definition.clove",
-      "scope/function-definition.clove",
-      "scope/function-expression.clove",
-      "statements/declarations.clove",
-  })
+  @MethodSource("fastTestFiles")
   void fastTests(final String filePath) throws IOException {
     snapshotTest("integration/" + filePath);
   }
 
+  static Stream<String> fastTestFiles() {
+    return Stream.of(
+        "builtins/random.clove",
+        "builtins/reflect-list.clove",
+        "expressions/assignment-operator.clove",
+        "expressions/binary-operator.clove",
+        "expressions/constant-folding.clove",
+        "expressions/logical-operator.clove",
+        "expressions/number-overflow.clove",
+        "expressions/unary-operator.clove",
+        "functions/arrow-function.clove",
+        "functions/function-definition.clove",
+        "functions/nested-function-definition.clove",
+        "functions/inlining.clove",
+        "functions/function-expression.clove",
+        "literals/anonymous-object.clove",
+        "literals/object-shapes.clove",
+        "literals/list.clove",
+        "literals/list-strategies.clove",
+        "literals/copy-on-write.clove",
+        "literals/list-deque.clove",
+        "literals/list-index.clove",
+        "literals/persistent.clove",
+        "literals/persistent-index.clove",
+        "literals/persistent-negative-index.clove",
+        "literals/map-set.clove",
+        "loops/for.clove",
+        "loops/counted-for.clove",
+        "loops/loop-invariant.clove",
+        "loops/while.clove",
+        "miscellaneous/block-statement.clove",
+        "miscellaneous/constant-reassignment.clove",
+        "miscellaneous/if-statement.clove",
+        "miscellaneous/recursion.clove",
+        "scope/assignment-before-definition.clove",
+        "scope/block-const.clove",
+        "scope/block-function.clove",
+        "scope/block-let-declaration.clove",
+        "scope/block-let-definition.clove",
+        "scope/block-var-declaration.clove",
+        "scope/block-var-definition.clove",
+        "scope/function-definition.clove",
+        "scope/function-expression.clove",
+        "scope/function-lexical-scope.clove",
+        "scope/redeclaration.clove",
+        "scope/redefinition.clove",
+        "statements/declarations.clove"
+    );
+  }
+
   @Test
   @DisplayName("File test (builtins/file.clove)")
   void fileTest() throws IOException {
@@ -0,0 +1,30 @@
+package dev.amrw.clovelang.integration;
+
+import java.util.ArrayList;
+import java.util.Collections;
+
+/**
+ * Java class that changes the lists passed into it, reflected by the snapshot test of Clove lists
+ * changed through the Reflection API.
+ */
+public class ListMutator {
+
+  public ListMutator() {
+  }
+
+  public ListMutator(final ArrayList<Object> list) {
+    list.add(list.size());
+  }
+
+  public void reverse(final ArrayList<Object> list) {
+    Collections.reverse(list);
+  }
+
+  public Object removeFirst(final ArrayList<Object> list) {
+    return list.remove(0);
+  }
+
+  public void addName(final ArrayList<Object> list) {
+    list.add("Java");
+  }
+}
@@ -31,8 +31,55 @@ class SlowSnapshotTest implements SnapshotTest {
   @CsvSource({
       "fibonacci.clove",
       "long-loop.clove",
+      "tail-recursion.clove",
   })
   void slowTests(final String filePath) throws IOException {
     snapshotTest("integration/slow/" + filePath);
   }
+
+  @DisplayName("Slow tests (JIT)")
+  @ParameterizedTest(name = "[{index}] {0}")
+  @CsvSource({
+      "fibonacci.clove",
+      "long-loop.clove",
+      "tail-recursion.clove",
+  })
+  void slowTestsWithJit(final String filePath) throws IOException {
+    snapshotTest("integration/slow/" + filePath, "--engine=jit");
+  }
+
+  @DisplayName("Slow tests (closure engine)")
+  @ParameterizedTest(name = "[{index}] {0}")
+  @CsvSource({
+      "fibonacci.clove",
+      "long-loop.clove",
+  })
+  void slowTestsWithClosures(final String filePath) throws IOException {
+    snapshotTest("integration/slow/" + filePath, "--engine=closure");
+  }
+
+  /**
+   * The stackless mode is timed against this VM in {@link StacklessBenchmarkTest}.
+   */
+  @DisplayName("Slow tests (VM)")
+  @ParameterizedTest(name = "[{index}] {0}")
+  @CsvSource({
+      "fibonacci.clove",
+      "long-loop.clove",
+  })
+  void slowTestsWithVm(final String filePath) throws IOException {
+    snapshotTest("integration/slow/" + filePath, "--engine=vm");
+  }
+
+  @DisplayName("Slow tests (stackless VM)")
+  @ParameterizedTest(name = "[{index}] {0}")
+  @CsvSource({
+      "fibonacci.clove",
+      "long-loop.clove",
+      "deep-recursion.clove",
+      "tail-recursion.clove",
+  })
+  void slowTestsWithStacklessVm(final String filePath) throws IOException {
+    snapshotTest("integration/slow/" + filePath, "--engine=stackless");
+  }
 }
@@ -14,13 +14,13 @@ import org.junit.jupiter.api.DisplayName;
 @DisplayName("Snapshot tests")
 public interface SnapshotTest {
 
-  default void snapshotTest(final String resourcePath) throws IOException {
-    final var result = executeClove(resourcePath);
+  default void snapshotTest(final String resourcePath, final String... args) throws IOException {
+    final var result = executeClove(resourcePath, args);
     final var expectedOutput = getResourceAsString(resourcePath + ".snapshot");
     assertThat(result).isEqualTo(expectedOutput);
   }
 
-  private String executeClove(final String filePath) throws IOException {
+  private String executeClove(final String filePath, final String[] args) throws IOException {
     final var stdin = System.in;
     final var stdout = System.out;
     try (
@@ -30,7 +30,7 @@ public interface SnapshotTest {
     ) {
       System.setIn(fileStream);
       System.setOut(printStream);
-      Interpreter.main(new String[]{});
+      Interpreter.main(args);
       System.setIn(stdin);
       System.setOut(stdout);
       return outputStream.toString();
@@ -0,0 +1,59 @@
+package dev.amrw.clovelang.integration;
+
+import dev.amrw.clovelang.extension.TimingExtension;
+import dev.amrw.clovelang.tag.BenchmarkTest;
+import java.io.IOException;
+import java.util.logging.Logger;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+/**
+ * Benchmark of the stackless VM against the recursive VM it's built on. The stackless mode
+ * allocates a frame on the heap for every call, in exchange for recursion that isn't bounded by
+ * the Java stack. Every program runs on both engines, in turns, and the fastest time of each is
+ * logged, so that the cost of the frames can be compared between revisions.
+ * <p>
+ * <code>fibonacci.clove</code> measures the throughput of shallow calls, and
+ * <code>recursion-depth.clove</code> recurses 500 calls deep, which the Java stack of the recursive
+ * VM still allows, over and over.
+ * <p>
+ * It runs every program several times, so it's left out of the integration tests. Run it with
+ * <code>./gradlew benchmarkTest</code>.
+ */
+@Timeout(240)
+@BenchmarkTest
+@ExtendWith(TimingExtension.class)
+class StacklessBenchmarkTest implements SnapshotTest {
+
+  private static final Logger logger = Logger.getLogger(StacklessBenchmarkTest.class.getName());
+  private static final int ROUNDS = 2;
+
+  @DisplayName("Recursive VM against stackless VM")
+  @ParameterizedTest(name = "[{index}] {0}")
+  @CsvSource({
+      "slow/fibonacci.clove",
+      "benchmark/recursion-depth.clove",
+  })
+  void compareVms(final String filePath) throws IOException {
+    var vmTime = Long.MAX_VALUE;
+    var stacklessTime = Long.MAX_VALUE;
+    for (var round = 0; round < ROUNDS; round++) {
+      vmTime = Math.min(vmTime, timedSnapshotTest(filePath, "--engine=vm"));
+      stacklessTime = Math.min(stacklessTime, timedSnapshotTest(filePath, "--engine=stackless"));
+    }
+
+    final var vm = vmTime;
+    final var stackless = stacklessTime;
+    logger.info(() -> String.format("[%s] VM took %s ms, stackless VM took %s ms (%.2fx).",
+        filePath, vm, stackless, (double) stackless / vm));
+  }
+
+  private long timedSnapshotTest(final String filePath, final String engine) throws IOException {
+    final var startTime = System.currentTimeMillis();
+    snapshotTest("integration/" + filePath, engine);
+    return System.currentTimeMillis() - startTime;
+  }
+}
@@ -0,0 +1,22 @@
+package dev.amrw.clovelang.integration;
+
+import dev.amrw.clovelang.tag.IntegrationTest;
+import java.io.IOException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+/**
+ * Runs the fast snapshot tests with the bytecode VM, that must produce the same output as the
+ * tree-walking Parser.
+ */
+@IntegrationTest
+class VmEngineSnapshotTest implements SnapshotTest {
+
+  @DisplayName("Fast tests (VM engine)")
+  @ParameterizedTest(name = "[{index}] {0}")
+  @MethodSource("dev.amrw.clovelang.integration.FastSnapshotTest#fastTestFiles")
+  void fastTests(final String filePath) throws IOException {
+    snapshotTest("integration/" + filePath, "--engine=vm");
+  }
+}
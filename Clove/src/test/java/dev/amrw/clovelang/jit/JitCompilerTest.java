@@ -0,0 +1,63 @@
+package dev.amrw.clovelang.jit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import dev.amrw.clovelang.interpreter.FunctionDefinition;
+import dev.amrw.clovelang.interpreter.Optimiser;
+import dev.amrw.clovelang.interpreter.Parser;
+import dev.amrw.clovelang.interpreter.Resolver;
+import dev.amrw.clovelang.parser.ast.ASTCode;
+import dev.amrw.clovelang.parser.ast.Clove;
+import dev.amrw.clovelang.parser.ast.ParseException;
+import dev.amrw.clovelang.parser.ast.SimpleNode;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("JIT compiler")
+class JitCompilerTest {
+
+  private static final String FIBONACCI = """
+      let result = 0
+      function fib(n) {
+        if (n == 0 || n == 1) {
+          result = n
+        } else {
+          result = fib(n - 1) + fib(n - 2)
+        }
+        return result
+      }
+      """;
+
+  @Test
+  @DisplayName("Interprets a function invoked fewer than THRESHOLD times")
+  void interpretsColdFunction() throws ParseException {
+    final var fib = runFibonacci(JitCompiler.THRESHOLD - 1);
+    assertThat(fib.getCompiledBody()).isNull();
+  }
+
+  @Test
+  @DisplayName("Compiles a function invoked THRESHOLD times")
+  void compilesHotFunction() throws ParseException {
+    final var fib = runFibonacci(JitCompiler.THRESHOLD);
+    assertThat(fib.getCompiledBody()).isInstanceOf(JitCode.class);
+  }
+
+  /**
+   * Invoke <code>fib(1)</code>, which doesn't recurse, the given number of times with the JIT
+   * enabled, and return the definition of <code>fib</code>.
+   */
+  private static FunctionDefinition runFibonacci(final int invocations) throws ParseException {
+    final var source = FIBONACCI
+        + "for (let i = 0; i < " + invocations + "; i = i + 1) fib(1)\n";
+    final ASTCode code = new Clove(
+        new ByteArrayInputStream(source.getBytes(StandardCharsets.UTF_8))).code();
+    new Resolver().resolve(code);
+    new Optimiser().optimise(code);
+    code.jjtAccept(new Parser(new String[0], true), null);
+
+    // Statement 1 is the definition of fib, which the Parser keeps on the node.
+    return (FunctionDefinition) ((SimpleNode) code.jjtGetChild(1).jjtGetChild(0)).optimised;
+  }
+}
@@ -0,0 +1,18 @@
+package dev.amrw.clovelang.tag;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import org.junit.jupiter.api.Tag;
+
+/**
+ * Test class or method that times Clove programs over several runs. It's too slow to run with the
+ * rest of the integration tests.
+ */
+@Tag("benchmark-test")
+@Target({ElementType.TYPE, ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface BenchmarkTest {
+
+}